@@ -4,6 +4,7 @@ package com.coy.l2cache;
 import com.coy.l2cache.load.LoadFunction;
 import com.coy.l2cache.content.NullValue;
 
+import java.time.Duration;
 import java.util.concurrent.Callable;
 
 /**
@@ -68,11 +69,39 @@ public interface Cache {
      */
     <T> T get(Object key, Callable<T> valueLoader);
 
+    /**
+     * 获取指定key的缓存项，如果缓存项不存在则通过{@code valueLoader}获取值，并为加载的缓存项打上标签
+     * 注：默认忽略标签
+     *
+     * @see #evictByTag(String)
+     */
+    default <T> T get(Object key, Callable<T> valueLoader, String... tags) {
+        return get(key, valueLoader);
+    }
+
     /**
      * 设置指定key的缓存项
      */
     void put(Object key, Object value);
 
+    /**
+     * 设置指定key的缓存项，并打上标签，用于按标签批量删除
+     * 注：默认忽略标签
+     *
+     * @see #evictByTag(String)
+     */
+    default void put(Object key, Object value, String... tags) {
+        put(key, value);
+    }
+
+    /**
+     * 设置指定key的缓存项，并指定其过期时间，用于同一个缓存中不同缓存项的存活时间不同的场景
+     * 注：默认忽略过期时间
+     */
+    default void put(Object key, Object value, Duration ttl) {
+        put(key, value);
+    }
+
     /**
      * 如果指定的key不存在，则设置缓存项，如果存在，则返回存在的值
      *
@@ -120,4 +149,14 @@ public interface Cache {
      */
     void clear();
 
+    /**
+     * 删除指定标签的所有缓存项
+     * 注：不支持标签的缓存抛出 UnsupportedOperationException，开启 tagEnabled 时在加载配置时校验缓存类型
+     *
+     * @see CacheConfig#isTagEnabled()
+     */
+    default void evictByTag(String tag) {
+        throw new UnsupportedOperationException("cache not support tag, cacheType=" + getCacheType() + ", cacheName=" + getCacheName());
+    }
+
 }
@@ -1,20 +1,31 @@
 package com.coy.l2cache;
 
+import com.coy.l2cache.cache.expire.CacheRemovalCause;
 import com.coy.l2cache.consts.CacheSyncPolicyType;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.consts.WeigherType;
+import com.coy.l2cache.content.CustomRedisSpec;
+import com.coy.l2cache.content.RedissonSupport;
 import com.coy.l2cache.util.RandomUtil;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author chenck
@@ -47,15 +58,213 @@ public class CacheConfig {
      */
     private String cacheType = CacheType.COMPOSITE.name();
 
+    /**
+     * 是否使用标签（按标签批量删除），默认false
+     * 开启时加载配置时校验缓存类型是否支持标签，不支持时启动失败，而不是在运行时调用标签相关方法时抛出异常
+     */
+    private boolean tagEnabled = false;
+
+    /**
+     * 按缓存名称覆盖缓存类型、二级缓存配置及是否同步，未配置的缓存名称使用全局配置
+     * 注：一级缓存的容量、过期时间等通过 caffeine.specs 按缓存名称配置
+     * <key,value>=<cacheName, CacheSpec>
+     */
+    private Map<String, CacheSpec> cacheSpecs = new HashMap<>();
+
     private final Composite composite = new Composite();
     private final Caffeine caffeine = new Caffeine();
     private final Guava guava = new Guava();
+    private final OffHeap offHeap = new OffHeap();
     private final Redis redis = new Redis();
+    private final Disk disk = new Disk();
+    private final Budget budget = new Budget();
+    private final Removal removal = new Removal();
+    private final Trace trace = new Trace();
+    private final Warmup warmup = new Warmup();
     private final CacheSyncPolicy cacheSyncPolicy = new CacheSyncPolicy();
 
     public interface Config {
     }
 
+    /**
+     * 获取缓存名称的配置，未配置时返回null
+     */
+    public CacheSpec getCacheSpec(String cacheName) {
+        return cacheSpecs.get(cacheName);
+    }
+
+    /**
+     * 获取缓存名称的缓存类型
+     */
+    public String getCacheType(String cacheName) {
+        CacheSpec spec = this.getCacheSpec(cacheName);
+        if (null == spec || !StringUtils.hasText(spec.getCacheType())) {
+            return cacheType;
+        }
+        return spec.getCacheType();
+    }
+
+    /**
+     * 获取缓存名称的redis配置，有覆盖配置时返回全局配置的副本
+     * 注：依次应用 redis.specs 和 cacheSpecs 中的配置，后者优先
+     */
+    public Redis getRedis(String cacheName) {
+        String redisSpec = redis.getSpecs().get(cacheName);
+        CacheSpec spec = this.getCacheSpec(cacheName);
+        boolean override = null != spec && spec.hasRedisOverride();
+        if (!StringUtils.hasText(redisSpec) && !override) {
+            return redis;
+        }
+        Redis copy = new Redis();
+        BeanUtils.copyProperties(redis, copy);
+        if (StringUtils.hasText(redisSpec)) {
+            CustomRedisSpec.parse(redisSpec).apply(copy);
+        }
+        if (!override) {
+            return copy;
+        }
+        if (null != spec.getRedisExpireTime()) {
+            copy.setExpireTime(spec.getRedisExpireTime());
+        }
+        if (null != spec.getRedisMaxIdleTime()) {
+            copy.setMaxIdleTime(spec.getRedisMaxIdleTime());
+        }
+        if (null != spec.getRedisMaxSize()) {
+            copy.setMaxSize(spec.getRedisMaxSize());
+        }
+        if (StringUtils.hasText(spec.getRedisCodec())) {
+            copy.setCodec(spec.getRedisCodec());
+        }
+        return copy;
+    }
+
+    /**
+     * 缓存名称是否通过缓存同步策略通知其他节点
+     */
+    public boolean isSyncEnabled(String cacheName) {
+        CacheSpec spec = this.getCacheSpec(cacheName);
+        return null == spec || null == spec.getSync() || spec.getSync();
+    }
+
+    /**
+     * 校验配置，不合法时抛出 IllegalArgumentException
+     * 注：在创建缓存管理器时调用
+     */
+    public void validate() {
+        // 全局及按缓存名称覆盖的编解码器
+        RedissonSupport.getCodec(redis.getCodec());
+        for (String cacheName : cacheSpecs.keySet()) {
+            this.checkCodec(cacheName);
+        }
+        if (this.isDiskUsed() && !StringUtils.hasText(disk.getDataDir())) {
+            throw new IllegalArgumentException("disk cache need an explicit disk.dataDir, which must be persistent and not shared by other processes");
+        }
+        if (tagEnabled) {
+            this.checkTagSupported(cacheType, null);
+            for (Map.Entry<String, CacheSpec> entry : cacheSpecs.entrySet()) {
+                if (StringUtils.hasText(entry.getValue().getCacheType())) {
+                    this.checkTagSupported(entry.getValue().getCacheType(), entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * 全局或按缓存名称覆盖的缓存类型中是否使用了磁盘缓存（包括组合缓存的各级缓存）
+     */
+    private boolean isDiskUsed() {
+        List<String> types = new ArrayList<>();
+        types.add(cacheType);
+        for (CacheSpec spec : cacheSpecs.values()) {
+            types.add(spec.getCacheType());
+        }
+        types.add(composite.getL1CacheType());
+        types.add(composite.getL2CacheType());
+        types.addAll(composite.getMiddleCacheTypes());
+        for (String type : types) {
+            if (StringUtils.hasText(type) && CacheType.DISK == CacheType.getCacheType(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkCodec(String cacheName) {
+        try {
+            RedissonSupport.getCodec(this.getRedis(cacheName).getCodec());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + ", cacheName=" + cacheName, e);
+        }
+    }
+
+    /**
+     * 校验缓存类型是否支持标签
+     * 支持：caffeine（本地标签索引）、redis（二级缓存标签索引）、none；
+     * 组合缓存的二级缓存为 redis，或二级缓存为 none 且一级缓存为 caffeine（没有二级缓存时由一级缓存的标签索引解析需要清理的key）
+     */
+    private void checkTagSupported(String type, String cacheName) {
+        CacheType cacheType = CacheType.getCacheType(type);
+        boolean supported;
+        if (CacheType.COMPOSITE == cacheType) {
+            CacheType l1CacheType = CacheType.getCacheType(composite.getL1CacheType());
+            CacheType l2CacheType = CacheType.getCacheType(composite.getL2CacheType());
+            supported = CacheType.REDIS == l2CacheType || CacheType.NONE == l2CacheType && CacheType.CAFFEINE == l1CacheType;
+        } else {
+            supported = CacheType.CAFFEINE == cacheType || CacheType.REDIS == cacheType || CacheType.NONE == cacheType;
+        }
+        if (!supported) {
+            throw new IllegalArgumentException("cache type not support tag, please disable tagEnabled or change cache type, cacheType=" + type
+                    + (CacheType.COMPOSITE == cacheType ? ", l1CacheType=" + composite.getL1CacheType() + ", l2CacheType="
+                    + composite.getL2CacheType() : "") + (null == cacheName ? "" : ", cacheName=" + cacheName));
+        }
+    }
+
+    /**
+     * 按缓存名称覆盖的配置，为空的属性使用全局配置
+     * 如：很少变更的小型字典缓存配置为 caffeine（只用一级缓存，无需访问redis），数据量大的用户维度缓存配置为 redis（不占用堆内存）
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class CacheSpec implements Config {
+        /**
+         * 缓存类型，如：caffeine(只用一级缓存)、redis(只用二级缓存)、composite(组合缓存)
+         *
+         * @see CacheType
+         */
+        private String cacheType;
+
+        /**
+         * 二级缓存过期时间(ms)
+         */
+        private Long redisExpireTime;
+
+        /**
+         * 二级缓存最大空闲时间(ms)
+         */
+        private Long redisMaxIdleTime;
+
+        /**
+         * 二级缓存最大缓存数
+         */
+        private Integer redisMaxSize;
+
+        /**
+         * 二级缓存的编解码器
+         * 注：需能编解码任意对象，不支持 StringCodec 等，加载配置时校验
+         */
+        private String redisCodec;
+
+        /**
+         * 是否通过缓存同步策略通知其他节点，如：只在本节点使用的一级缓存可配置为false
+         */
+        private Boolean sync;
+
+        private boolean hasRedisOverride() {
+            return null != redisExpireTime || null != redisMaxIdleTime || null != redisMaxSize || StringUtils.hasText(redisCodec);
+        }
+    }
+
     /**
      * 组合缓存配置
      */
@@ -71,6 +280,36 @@ public class CacheConfig {
          * 二级缓存类型
          */
         private String l2CacheType = CacheType.REDIS.name();
+
+        /**
+         * 一级缓存与二级缓存之间的本地缓存类型，按从上到下的顺序排列，默认为空
+         * 如：l1CacheType=caffeine，middleCacheTypes=[offheap]，l2CacheType=redis，组成 堆内 -> 堆外 -> 远程 的三级缓存
+         */
+        private List<String> middleCacheTypes = new ArrayList<>();
+
+        /**
+         * 下层缓存命中时，是否将缓存项提升到上层的中间各级本地缓存，默认true
+         * 注：一级缓存始终会写入命中的缓存项
+         */
+        private boolean promoteOnHit = true;
+
+        /**
+         * 上层本地缓存因容量淘汰缓存项时，是否将其降级写入到下一级本地缓存，默认true
+         * 注：仅在配置了 middleCacheTypes 时生效，避免堆内缓存淘汰后再次访问时直接穿透到远程缓存
+         */
+        private boolean demoteOnEviction = true;
+
+        /**
+         * 配置了批量加载器时，合并并发未命中的等待时长(微秒)
+         *
+         * @see com.coy.l2cache.load.BatchLoader
+         */
+        private long batchLoadWindowMicros = 1000;
+
+        /**
+         * 配置了批量加载器时，每批最多加载的key数量
+         */
+        private int batchLoadMaxSize = 200;
     }
 
     /**
@@ -111,11 +350,145 @@ public class CacheConfig {
         /**
          * The spec to use to create caches. See CaffeineSpec for more details on the spec format.
          * <key,value>=<cacheName, spec>
+         * 注：运行时可通过 CaffeineCache.updateSpec 修改
          */
-        private Map<String, String> specs = new HashMap<>();
+        private Map<String, String> specs = new ConcurrentHashMap<>();
+
+        /**
+         * 权重计算器类型，spec 中配置了 maximumWeight 时使用，默认按序列化后的字节数计算
+         *
+         * @see WeigherType
+         */
+        private String weigher = WeigherType.SERIALIZED.name();
+
+        /**
+         * 是否按加载耗时调整权重，加载耗时越长权重越小、越不容易被淘汰，默认false
+         * 注：需在 spec 中配置 maximumWeight
+         *
+         * @see com.coy.l2cache.cache.weigher.LoadCostWeigher
+         */
+        private boolean costAware = false;
+
+        /**
+         * 按加载耗时调整权重时，权重的最大缩放倍数
+         */
+        private double costScaleLimit = 10;
+
+        /**
+         * 概率提前刷新系数，小于等于0表示不开启（默认），建议值为1，值越大越提前刷新
+         * 注：读取时根据剩余存活时间和加载耗时计算是否提前刷新，命中后异步刷新并返回旧值，需在 spec 中配置 expireAfterWrite
+         *
+         * @see com.coy.l2cache.load.EarlyRefreshPolicy
+         */
+        private double earlyRefreshBeta = 0;
+
+        /**
+         * 过期时间的随机抖动比例，如：0.1 表示 expireAfterWrite 在 [0.9, 1.1] 倍之间随机，小于等于0表示不抖动（默认）
+         * 注：开启后 expireAfterWrite 由 caffeine 的可变过期时间实现
+         */
+        private double expireJitterRatio = 0;
+
+        /**
+         * 是否开启可变过期时间，默认false
+         * 注：开启后支持 put(key, value, ttl) 指定缓存项的过期时间及通过 CacheExpiry 按缓存项计算过期时间，不能与 expireAfterAccess 同时使用
+         *
+         * @see com.coy.l2cache.cache.expire.CaffeineVariableExpiry
+         */
+        private boolean variableExpiry = false;
+
+        /**
+         * 是否按代清除，默认false
+         * 注：开启后 clear 时直接替换为新的 caffeine 实例，旧实例中的缓存项由GC回收，避免逐个 invalidate 整个缓存
+         */
+        private boolean generationClear = false;
+
+        /**
+         * 获取缓存名称的 spec，未单独配置时使用 defaultSpec
+         */
+        public String getSpec(String cacheName) {
+            if (!StringUtils.hasText(cacheName)) {
+                return defaultSpec;
+            }
+            String spec = specs.get(cacheName);
+            if (!StringUtils.hasText(spec)) {
+                return defaultSpec;
+            }
+            return spec;
+        }
 
     }
 
+    /**
+     * 一级缓存全局预算配置
+     * 注：仅对 caffeine 一级缓存生效，由 L2CacheCacheManager 在各个缓存之间分配并定期再平衡，会覆盖 spec 中的 maximumSize/maximumWeight
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class Budget implements Config {
+        /**
+         * 所有一级缓存的总预算，小于等于0表示不启用（默认）
+         * 注：weighted=false 时为缓存项数量，weighted=true 时为权重（如按序列化后的字节数计算权重时为字节数）
+         */
+        private long maximum;
+
+        /**
+         * 预算是否为权重，需与 spec 中配置的 maximumSize(false)/maximumWeight(true) 一致，不一致的缓存不参与分配
+         */
+        private boolean weighted = false;
+
+        /**
+         * 每个缓存至少分配的预算
+         */
+        private long minimumPerCache = 100;
+
+        /**
+         * 未发生淘汰的缓存保留的空余比例，如0.2表示收缩到当前使用量的1.2倍
+         */
+        private double headroomRatio = 0.2;
+
+        /**
+         * 再平衡的频率(秒)
+         */
+        private Long rebalancePeriod = 60L;
+    }
+
+    /**
+     * 一级缓存（caffeine、guava）移除事件配置
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class Removal implements Config {
+        /**
+         * 回调 CacheExpiredListener 的移除原因，默认只回调被动移除（过期、容量淘汰、被垃圾回收）的缓存项
+         *
+         * @see CacheRemovalCause
+         */
+        private List<String> causes = new ArrayList<>(Arrays.asList(CacheRemovalCause.EXPIRED.name(),
+                CacheRemovalCause.SIZE.name(), CacheRemovalCause.COLLECTED.name()));
+
+        /**
+         * 是否异步批量回调，默认false（在缓存的维护线程中同步回调）
+         */
+        private boolean async = false;
+
+        /**
+         * 异步时缓冲区的大小，缓冲区满时丢弃移除事件
+         */
+        private int bufferSize = 4096;
+
+        /**
+         * 异步时每批回调的最大事件数
+         */
+        private int batchSize = 100;
+
+        /**
+         * 异步时凑批的最大等待时间(ms)
+         */
+        private long maxWaitMillis = 200;
+    }
+
     /**
      * guava specific cache properties.
      */
@@ -148,6 +521,211 @@ public class CacheConfig {
          * <key,value>=<cacheName, spec>
          */
         private Map<String, String> specs = new HashMap<>();
+
+        /**
+         * 权重计算器类型，spec 中配置了 maximumWeight 时使用，默认按序列化后的字节数计算
+         *
+         * @see WeigherType
+         */
+        private String weigher = WeigherType.SERIALIZED.name();
+    }
+
+    /**
+     * 堆外缓存配置
+     * 注：值序列化后存储在堆外内存中，适用于工作集较大、放在堆内会带来较长GC停顿的场景，需保证缓存值实现了 Serializable
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class OffHeap implements Config {
+        /**
+         * 每个缓存名称可使用的最大堆外内存字节数，默认64MB
+         * 注：受JVM参数 -XX:MaxDirectMemorySize 限制
+         */
+        private long maximumBytes = 64 * 1024 * 1024L;
+
+        /**
+         * 段数量（会向上取整为2的幂），每个段一把锁
+         * 注：单个段的大小不能超过2GB，如 maximumBytes=20GB 时段数量至少为16
+         */
+        private int segments = 16;
+
+        /**
+         * 块大小(字节)，缓存值按块分配堆外内存
+         * 注：块越小内存利用率越高，但索引占用的堆内存越多
+         */
+        private int blockSize = 256;
+
+        /**
+         * 写入后过期时间(ms)，小于等于0表示不过期
+         */
+        private long expireTime;
+
+        /**
+         * 是否自动刷新过期缓存 true 表示是，false 表示否(默认)
+         */
+        private boolean autoRefreshExpireCache = false;
+
+        /**
+         * 缓存刷新调度线程池的大小
+         */
+        private Integer refreshPoolSize = 3;
+
+        /**
+         * 缓存刷新的频率(秒)
+         */
+        private Long refreshPeriod = 5L;
+    }
+
+    /**
+     * 访问追踪配置
+     * 注：开启后按key采样记录组合缓存的访问到二进制文件中，通过 TraceSimulator 离线回放评估不同的缓存配置
+     *
+     * @see com.coy.l2cache.trace.TraceRecorder
+     * @see com.coy.l2cache.trace.TraceSimulator
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class Trace implements Config {
+        /**
+         * 是否开启访问追踪，默认false
+         */
+        private boolean enabled = false;
+
+        /**
+         * 追踪文件路径，默认为临时目录下按进程号区分的文件，避免同一主机上的多个进程写入同一个文件
+         * 注：临时目录可能被操作系统清理，需要保留的追踪文件应指定路径
+         */
+        private String file = System.getProperty("java.io.tmpdir") + File.separator + "l2cache" + File.separator + "trace-"
+                + ManagementFactory.getRuntimeMXBean().getName().split("@")[0] + ".bin";
+
+        /**
+         * 采样率(0, 1]，按key的hash采样，同一个key的访问要么全部记录要么全部不记录
+         */
+        private double sampleRate = 0.1;
+
+        /**
+         * 追踪文件的最大字节数，默认256MB，达到后停止记录
+         */
+        private long maxBytes = 256 * 1024 * 1024L;
+
+        /**
+         * 缓冲区大小，缓冲区满时丢弃记录
+         */
+        private int bufferSize = 65536;
+    }
+
+    /**
+     * 一级缓存预热配置
+     * 注：仅对一级缓存为本地缓存、二级缓存为 redis 的组合缓存生效
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class Warmup implements Config {
+        /**
+         * 是否在启动时预热，默认false
+         */
+        private boolean enabled = false;
+
+        /**
+         * 启动时预热的缓存名称
+         */
+        private List<String> cacheNames = new ArrayList<>();
+
+        /**
+         * 预热的key来源：SCAN 通过 HSCAN 遍历二级缓存（默认），HOT_KEYS 使用定期记录的一级缓存热点key
+         *
+         * @see com.coy.l2cache.load.CacheWarmer.Source
+         */
+        private String source = "SCAN";
+
+        /**
+         * 每批扫描及批量获取的key数量
+         */
+        private int batchSize = 500;
+
+        /**
+         * 并行加载的线程数
+         */
+        private int parallelism = 4;
+
+        /**
+         * 每个缓存最多预热的key数量，应不超过一级缓存的容量
+         */
+        private int maxKeysPerCache = 10000;
+
+        /**
+         * 记录一级缓存热点key的周期(秒)，source 为 HOT_KEYS 时生效
+         */
+        private long hotKeysRecordPeriod = 300;
+
+        /**
+         * 启动时是否等待预热完成后才接收请求，默认false
+         * 注：等待期间 web 容器尚未启动，就绪探针不可用
+         */
+        private boolean waitForReady = false;
+
+        /**
+         * 等待预热完成的比例，达到后即视为就绪
+         */
+        private double readyPercent = 0.9;
+
+        /**
+         * 等待预热完成的超时时间(毫秒)，超时后不再等待，预热在后台继续进行
+         */
+        private long timeoutMillis = 30000;
+    }
+
+    /**
+     * 磁盘缓存配置
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class Disk implements Config {
+        /**
+         * 数据目录，每个缓存名称对应其下的一个子目录，使用磁盘缓存时必须配置
+         * 注：应为重启后保留的持久目录（不要使用会被清理的临时目录），且不能与其他进程共用，打开时对目录加锁
+         */
+        private String dataDir;
+
+        /**
+         * 单个段文件的字节数，默认64MB
+         * 注：单个缓存项（key + value 序列化后）不能超过该值
+         */
+        private int segmentBytes = 64 * 1024 * 1024;
+
+        /**
+         * 每个缓存名称可使用的最大磁盘字节数，默认1GB，超过时删除最旧的段文件
+         */
+        private long maximumBytes = 1024 * 1024 * 1024L;
+
+        /**
+         * 写入后过期时间(ms)，小于等于0表示不过期
+         */
+        private long expireTime;
+
+        /**
+         * 段文件中垃圾数据的比例达到该值时进行压缩，默认0.5
+         */
+        private double compactionThreshold = 0.5;
+
+        /**
+         * 压缩的频率(秒)
+         */
+        private Long compactionPeriod = 60L;
+
+        /**
+         * 缓存刷新调度线程池的大小（压缩任务在该线程池中执行）
+         */
+        private Integer refreshPoolSize = 3;
+
+        /**
+         * 是否每次写入后都刷盘，默认false（由操作系统异步刷盘，压缩时和关闭时刷盘）
+         */
+        private boolean syncOnWrite = false;
     }
 
     /**
@@ -174,6 +752,15 @@ public class CacheConfig {
          */
         private long expireTime;
 
+        /**
+         * 按缓存名称覆盖 expireTime、maxIdleTime、maxSize，格式与 caffeine spec 一致
+         * 如：expireTime=30s,maxIdleTime=10s,maxSize=10000
+         * <key,value>=<cacheName, spec>
+         *
+         * @see CustomRedisSpec
+         */
+        private Map<String, String> specs = new HashMap<>();
+
         /**
          * 缓存最大空闲时间(ms)
          * 注：在 Redisson 中 缓存过期被淘汰的时间 取符合条件的 expireTime 和 maxIdleTime 中间小的值。
@@ -187,6 +774,52 @@ public class CacheConfig {
          */
         private int maxSize;
 
+        /**
+         * 是否合并并发的单key读取为一次批量读取（HMGET），默认false
+         * 注：开启后每次读取最多增加 batchWindowMicros 的延迟，适用于高并发读取不同key的场景
+         */
+        private boolean batchGet = false;
+
+        /**
+         * 合批的等待时长(微秒)
+         */
+        private long batchWindowMicros = 200;
+
+        /**
+         * 每批最多的key数量
+         */
+        private int batchMaxSize = 100;
+
+        /**
+         * 概率提前刷新系数，小于等于0表示不开启（默认），建议值为1，值越大越提前刷新
+         * 注：开启后缓存值与过期时间、加载耗时一起存储，开启或关闭前后写入的缓存项可相互兼容读取
+         *
+         * @see com.coy.l2cache.load.EarlyRefreshPolicy
+         */
+        private double earlyRefreshBeta = 0;
+
+        /**
+         * 过期时间的随机抖动比例，如：0.1 表示 expireTime 在 [0.9, 1.1] 倍之间随机，小于等于0表示不抖动（默认）
+         */
+        private double expireJitterRatio = 0;
+
+        /**
+         * 是否按代清除，默认false
+         * 注：开启后 clear 只递增redis中的代号并切换到新的hash，旧hash通过 UNLINK 在redis后台释放，避免阻塞的 DEL
+         */
+        private boolean generationClear = false;
+
+        /**
+         * 按代清除时，其他节点获取代号的周期(ms)，即其他节点感知到清除的最大延迟
+         */
+        private long generationCheckPeriod = 1000;
+
+        /**
+         * 编解码器的类名（org.redisson.client.codec.Codec 的实现，需有无参构造函数），为空时使用 Redisson 的默认编解码器
+         * 注：需能编解码任意对象（如：JsonJacksonCodec），不支持 StringCodec、LongCodec 等，加载配置时校验
+         */
+        private String codec;
+
         /**
          * Redisson 的yaml配置文件
          */
@@ -244,14 +877,80 @@ public class CacheConfig {
 
         /**
          * 是否支持异步发送消息
+         * 注：kafka 同步策略异步发送；redis 同步策略放入缓冲队列后由后台线程批量发送
          */
         private boolean isAsync;
 
+        /**
+         * kafka 同步策略处理消息的工作线程数，按分区分配，同一个分区的消息由同一个线程按顺序处理
+         * 注：超过 topic 的分区数时多余的线程空闲
+         *
+         * @see com.coy.l2cache.sync.KafkaCacheSyncPolicy
+         */
+        private int consumerThreads = 4;
+
         /**
          * 具体的属性配置
          * 定义一个通用的属性字段，不同的MQ可配置各自的属性即可。
          * 如:kafka 的属性配置则完全与原生的配置保持一致
          */
         private Properties props = new Properties();
+
+        /**
+         * 是否只通知可能缓存了该key的节点，默认false（广播给所有节点）
+         * 注：目前仅 redis 同步策略支持，各节点定期通告其本地缓存key集合的布隆过滤器，无法确定时回退为广播
+         *
+         * @see com.coy.l2cache.sync.InterestRegistry
+         */
+        private boolean interestScoped = false;
+
+        /**
+         * 通告本地缓存key集合的频率(秒)
+         */
+        private long interestPeriod = 5;
+
+        /**
+         * 布隆过滤器的误判率
+         */
+        private double interestFpp = 0.01;
+
+        /**
+         * redis stream 同步策略中 stream 的最大长度，写入时近似裁剪（MAXLEN ~）
+         * 注：节点落后超过该长度时，未读取的消息被裁剪，该节点清除所有一级缓存
+         *
+         * @see com.coy.l2cache.sync.RedisStreamCacheSyncPolicy
+         */
+        private int streamMaxLen = 100000;
+
+        /**
+         * redis stream 同步策略每次读取的最大消息数
+         */
+        private int streamBatchSize = 100;
+
+        /**
+         * redis stream 同步策略每次读取时阻塞等待的时长(ms)
+         */
+        private long streamBlockMillis = 1000;
+
+        /**
+         * 异步发送消息时缓冲队列的大小
+         * 注：目前 redis 同步策略在 isAsync=true 时，消息先放入缓冲队列，由后台线程批量通过管道发送
+         *
+         * @see com.coy.l2cache.sync.AsyncMessagePublisher
+         */
+        private int asyncBufferSize = 8192;
+
+        /**
+         * 异步发送消息时每批发送的最大消息数
+         */
+        private int asyncBatchSize = 100;
+
+        /**
+         * 异步发送消息时缓冲队列满的处理策略，BLOCK 阻塞直到队列有空位（默认，与同步发送一样不丢失消息），
+         * DROP 丢弃消息并计数，之后向其他节点发送被丢弃消息所属缓存的清除消息（清除整个一级缓存）
+         *
+         * @see com.coy.l2cache.sync.AsyncMessagePublisher.OverflowPolicy
+         */
+        private String asyncOverflowPolicy = "BLOCK";
     }
 }
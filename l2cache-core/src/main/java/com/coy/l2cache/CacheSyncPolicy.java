@@ -56,6 +56,13 @@ public interface CacheSyncPolicy {
      */
     void publish(CacheMessage message);
 
+    /**
+     * 本节点的本地缓存写入了key
+     * 注：按关注范围同步时，用于立即通知其他节点本节点缓存了该key
+     */
+    default void interest(String cacheName, Object key) {
+    }
+
     /**
      * 断开连接
      */
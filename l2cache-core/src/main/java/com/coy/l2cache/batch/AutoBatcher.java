@@ -0,0 +1,134 @@
+package com.coy.l2cache.batch;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 跨线程自动合批
+ * <p>
+ * 多个线程并发获取不同的key时，合并为一次批量操作：
+ * 1、第一个到达的线程成为leader，创建一个批次并等待 window 时长（或批次满 maxBatchSize 个key）
+ * 2、等待期间到达的线程（follower）将key加入该批次，并等待批次的执行结果
+ * 3、leader 关闭批次后执行一次批量操作，将结果分发给批次中的每个key
+ * <p>
+ * 没有额外的调度线程，无并发时只增加 window 时长的延迟。
+ *
+ * @author chenck
+ * @date 2020/7/20 10:12
+ */
+public class AutoBatcher<K, V> {
+
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+    /**
+     * 当前正在收集key的批次
+     */
+    private Batch<K, V> current;
+
+    /**
+     * @param batchFunction 批量操作，返回结果中不存在的key视为null
+     * @param windowMicros  合批的等待时长(微秒)
+     * @param maxBatchSize  每批最多的key数量
+     */
+    public AutoBatcher(Function<Set<K>, Map<K, V>> batchFunction, long windowMicros, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be greater than 0");
+        }
+        this.batchFunction = batchFunction;
+        this.windowNanos = windowMicros * 1000;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 获取指定key的结果，与其他线程并发的请求合并为一次批量操作
+     */
+    public V get(K key) {
+        Batch<K, V> batch;
+        CompletableFuture<V> future;
+        boolean leader = false;
+        synchronized (lock) {
+            if (null == current) {
+                current = new Batch<>(Thread.currentThread());
+                leader = true;
+            }
+            batch = current;
+            future = batch.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (batch.futures.size() >= maxBatchSize) {
+                // 批次已满，唤醒leader立即执行
+                current = null;
+                batch.sealed = true;
+                if (!leader) {
+                    LockSupport.unpark(batch.leader);
+                }
+            }
+        }
+        if (leader) {
+            this.awaitAndExecute(batch);
+        }
+        return join(future);
+    }
+
+    private void awaitAndExecute(Batch<K, V> batch) {
+        long deadline = System.nanoTime() + windowNanos;
+        long remaining;
+        while (!batch.sealed && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        synchronized (lock) {
+            if (current == batch) {
+                current = null;
+            }
+            batch.sealed = true;
+        }
+        Map<K, CompletableFuture<V>> futures = batch.futures;
+        try {
+            Map<K, V> result = batchFunction.apply(new LinkedHashSet<>(futures.keySet()));
+            for (Map.Entry<K, CompletableFuture<V>> entry : futures.entrySet()) {
+                entry.getValue().complete(null == result ? null : result.get(entry.getKey()));
+            }
+        } catch (Throwable e) {
+            for (CompletableFuture<V> future : futures.values()) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 批次
+     */
+    private static final class Batch<K, V> {
+        private final Thread leader;
+        /**
+         * 批次关闭后不再修改，leader 在关闭后读取
+         */
+        private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        private volatile boolean sealed;
+
+        private Batch(Thread leader) {
+            this.leader = leader;
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package com.coy.l2cache.builder;
 
 import com.coy.l2cache.cache.expire.CacheExpiredListener;
+import com.coy.l2cache.cache.expire.CacheRemovalCause;
+import com.coy.l2cache.cache.expire.CacheRemovalHandler;
+import com.coy.l2cache.cache.expire.CaffeineVariableExpiry;
 import com.coy.l2cache.consts.CacheType;
 import com.coy.l2cache.load.CacheLoader;
+import com.coy.l2cache.load.EarlyRefreshPolicy;
+import com.coy.l2cache.load.LoadCost;
+import com.coy.l2cache.schedule.RefreshSupport;
 import com.coy.l2cache.cache.CaffeineCache;
+import com.coy.l2cache.cache.CaffeineCacheOptions;
+import com.coy.l2cache.cache.DemotionHandler;
+import com.coy.l2cache.cache.TagIndex;
+import com.coy.l2cache.cache.weigher.CacheWeigher;
+import com.coy.l2cache.cache.weigher.LoadCostWeigher;
+import com.coy.l2cache.consts.WeigherType;
 import com.coy.l2cache.load.CustomCacheLoader;
 import com.coy.l2cache.CacheConfig;
 import com.coy.l2cache.content.CustomCaffeineSpec;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
@@ -23,8 +36,6 @@ public class CaffeineCacheBuilder extends AbstractCacheBuilder<CaffeineCache> {
 
     private static final Logger logger = LoggerFactory.getLogger(CaffeineCacheBuilder.class);
 
-    private static Caffeine<Object, Object> defaultCacheBuilder = Caffeine.newBuilder();
-
     @Override
     public CaffeineCache build(String cacheName) {
         // 创建CustomCacheLoader
@@ -33,28 +44,112 @@ public class CaffeineCacheBuilder extends AbstractCacheBuilder<CaffeineCache> {
                 CacheType.CAFFEINE.name().toLowerCase(), cacheName);
         customCacheLoader.setCacheSyncPolicy(this.getCacheSyncPolicy());
 
+        // 降级处理器，在多级组合缓存中由 CompositeCache 设置下一级缓存
+        DemotionHandler demotionHandler = new DemotionHandler();
+
+        // 概率提前刷新及过期时间抖动
+        CacheConfig.Caffeine caffeine = this.getCacheConfig().getCaffeine();
+        EarlyRefreshPolicy earlyRefreshPolicy = new EarlyRefreshPolicy(cacheName, caffeine.getEarlyRefreshBeta(),
+                caffeine.getExpireJitterRatio(), RefreshSupport.getInstance(caffeine.getRefreshPoolSize()));
+
+        // 标签索引，缓存项被淘汰或删除后从索引中移除
+        TagIndex tagIndex = new TagIndex();
+
+        // 可变过期时间，按代清除创建的新实例共用当前的可变过期时间，运行时修改 spec 重建实例时按新的 spec 重新创建
+        CaffeineCacheOptions options = new CaffeineCacheOptions()
+                .setDemotionHandler(demotionHandler)
+                .setEarlyRefreshPolicy(earlyRefreshPolicy)
+                .setTagIndex(tagIndex)
+                .setVariableExpiry(this.createVariableExpiry(cacheName, this.getCacheConfig(), earlyRefreshPolicy));
+
         Cache<Object, Object> cache = this.buildActualCache(cacheName, this.getCacheConfig(), customCacheLoader,
-                this.getExpiredListener());
+                this.getExpiredListener(), options);
 
-        return new CaffeineCache(cacheName, this.getCacheConfig(), customCacheLoader, this.getCacheSyncPolicy(), cache);
+        // 按代清除及重建实例时以当前的配置创建新的实例
+        options.setCacheFactory(expiry -> this.buildActualCache(cacheName, this.getCacheConfig(), customCacheLoader,
+                this.getExpiredListener(), options.withVariableExpiry(expiry)))
+                .setVariableExpiryFactory(() -> this.createVariableExpiry(cacheName, this.getCacheConfig(), earlyRefreshPolicy));
+        return new CaffeineCache(cacheName, this.getCacheConfig(), customCacheLoader, this.getCacheSyncPolicy(), cache, options);
+    }
+
+    /**
+     * 创建可变过期时间，开启了过期时间抖动（需在 spec 中仅配置 expireAfterWrite）或 variableExpiry 时创建，否则返回null
+     */
+    protected CaffeineVariableExpiry createVariableExpiry(String cacheName, CacheConfig cacheConfig, EarlyRefreshPolicy earlyRefreshPolicy) {
+        CustomCaffeineSpec customCaffeineSpec = this.getCaffeineSpec(cacheName, cacheConfig.getCaffeine());
+        boolean variable = cacheConfig.getCaffeine().isVariableExpiry();
+        if (null != customCaffeineSpec && null != customCaffeineSpec.getExpireAfterAccessTimeUnit()) {
+            if (variable) {
+                logger.warn("caffeine cache variableExpiry can't be used with expireAfterAccess, ignore, cacheName={}", cacheName);
+            }
+            return null;
+        }
+        boolean jitter = null != earlyRefreshPolicy && earlyRefreshPolicy.isJitterEnabled()
+                && null != customCaffeineSpec && customCaffeineSpec.isOnlyExpireAfterWriteSet();
+        if (!jitter && !variable) {
+            return null;
+        }
+        long expireNanos = Long.MAX_VALUE;
+        if (null != customCaffeineSpec && null != customCaffeineSpec.getExpireAfterWriteTimeUnit()) {
+            expireNanos = customCaffeineSpec.getExpireAfterWriteTimeUnit().toNanos(customCaffeineSpec.getExpireAfterWriteDuration());
+        }
+        return new CaffeineVariableExpiry(expireNanos, jitter ? earlyRefreshPolicy : null);
     }
 
     /**
      * 构建实际缓存对象
+     *
+     * @param options 可选组件，使用其中的降级处理器、概率提前刷新策略、标签索引及可变过期时间，未设置时不开启对应的功能
      */
     protected Cache<Object, Object> buildActualCache(String cacheName, CacheConfig cacheConfig, CacheLoader cacheLoader,
-                                                     CacheExpiredListener listener) {
+                                                     CacheExpiredListener listener, CaffeineCacheOptions options) {
+        DemotionHandler demotionHandler = options.getDemotionHandler();
+        EarlyRefreshPolicy earlyRefreshPolicy = options.getEarlyRefreshPolicy();
+        TagIndex tagIndex = options.getTagIndex();
+        CaffeineVariableExpiry variableExpiry = options.getVariableExpiry();
+
         // 解析spec
         CustomCaffeineSpec customCaffeineSpec = this.getCaffeineSpec(cacheName, cacheConfig.getCaffeine());
 
-        Caffeine<Object, Object> cacheBuilder = defaultCacheBuilder;
+        // 注：每次都新建builder，removalListener只能设置一次，共享builder会导致构建第二个缓存时抛出异常
+        Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder();
+        boolean recordLoadCost = false;
         if (null != customCaffeineSpec) {
-            cacheBuilder = customCaffeineSpec.toBuilder();
+            cacheBuilder = customCaffeineSpec.toBuilder(null != variableExpiry);
+            if (customCaffeineSpec.isMaximumWeightSet()) {
+                // 按权重淘汰，需设置权重计算器
+                CacheWeigher baseWeigher = CacheWeigher.of(WeigherType.getWeigherType(cacheConfig.getCaffeine().getWeigher()));
+                // 按加载耗时缩放权重
+                recordLoadCost = cacheConfig.getCaffeine().isCostAware();
+                CacheWeigher weigher = recordLoadCost
+                        ? new LoadCostWeigher(baseWeigher, cacheConfig.getCaffeine().getCostScaleLimit()) : baseWeigher;
+                cacheBuilder.weigher((key, value) -> weigher.weigh(key, value));
+                logger.info("caffeine cache use weigher, cacheName={}, weigher={}", cacheName, weigher.getClass().getSimpleName());
+            } else if (cacheConfig.getCaffeine().isCostAware()) {
+                logger.warn("caffeine cache costAware need maximumWeight in spec, ignore, cacheName={}", cacheName);
+            }
+        }
+        if (null != variableExpiry) {
+            // 可变过期时间：写入时按指定的过期时间或在 expireAfterWrite 的基础上随机抖动，读取时不改变剩余存活时间
+            cacheBuilder.expireAfter(variableExpiry);
+            logger.info("caffeine cache use variable expiry, cacheName={}, expireAfterWrite={}ns", cacheName, variableExpiry.getExpireNanos());
         }
 
-        if (null != listener) {
+        if (null != listener || null != demotionHandler || null != tagIndex) {
+            CacheRemovalHandler removalHandler = null == listener ? null
+                    : new CacheRemovalHandler(cacheName, listener, cacheConfig.getRemoval());
             cacheBuilder.removalListener((key, value, cause) -> {
-                listener.onExpired(key, value);
+                if (null != removalHandler) {
+                    removalHandler.onRemoval(key, value, CacheRemovalCause.valueOf(cause.name()));
+                }
+                // 因容量被淘汰的缓存项降级到下一级本地缓存
+                if (null != demotionHandler && cause == RemovalCause.SIZE) {
+                    demotionHandler.demote(key, value);
+                }
+                // 值被替换时缓存项仍然存在，保留其标签；异步通知时缓存项可能已被重新写入，由标签索引确认
+                if (null != tagIndex && cause != RemovalCause.REPLACED) {
+                    tagIndex.removeIfAbsent(key);
+                }
             });
         }
         if (null == cacheLoader) {
@@ -63,28 +158,36 @@ public class CaffeineCacheBuilder extends AbstractCacheBuilder<CaffeineCache> {
         }
 
         logger.info("create a native Caffeine LoadingCache instance, cacheName={}", cacheName);
-        return cacheBuilder.build(key -> cacheLoader.load(key));
-    }
-
-    /**
-     * 获取 spec
-     */
-    private String getSpec(String cacheName, CacheConfig.Caffeine caffeine) {
-        if (!StringUtils.hasText(cacheName)) {
-            return caffeine.getDefaultSpec();
-        }
-        String spec = caffeine.getSpecs().get(cacheName);
-        if (!StringUtils.hasText(spec)) {
-            return caffeine.getDefaultSpec();
+        boolean recordLoadTime = null != earlyRefreshPolicy && earlyRefreshPolicy.isEarlyRefreshEnabled();
+        boolean recordCost = recordLoadCost;
+        if (!recordLoadTime && !recordCost) {
+            return cacheBuilder.build(key -> cacheLoader.load(key));
         }
-        return spec;
+        // 记录加载耗时，用于计算提前刷新的概率及按加载耗时计算权重
+        return cacheBuilder.build(key -> {
+            long start = System.nanoTime();
+            Object value = null;
+            try {
+                value = cacheLoader.load(key);
+                return value;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                if (recordLoadTime) {
+                    earlyRefreshPolicy.recordLoadTime(nanos);
+                }
+                // 写入加载结果时权重计算器在同一线程中取出，加载结果为null时不写入缓存，不记录
+                if (recordCost && null != value) {
+                    LoadCost.record(key, nanos);
+                }
+            }
+        });
     }
 
     /**
      * 获取自定义的CaffeineSpec
      */
     private CustomCaffeineSpec getCaffeineSpec(String cacheName, CacheConfig.Caffeine caffeine) {
-        String spec = this.getSpec(cacheName, caffeine);
+        String spec = caffeine.getSpec(cacheName);
         if (!StringUtils.hasText(spec)) {
             return null;
         }
@@ -11,6 +11,9 @@ import com.coy.l2cache.content.CacheSupport;
 import com.coy.l2cache.spi.ServiceLoader;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author chenck
  * @date 2020/7/2 9:37
@@ -52,7 +55,30 @@ public class CompositeCacheBuilder extends AbstractCacheBuilder<CompositeCache>
             throw new IllegalArgumentException("level2Cache must be implements Level2Cache, l2CacheType=" + l2CacheType);
         }
 
-        return this.buildActualCache(cacheName, this.getCacheConfig(), (Level1Cache) level1Cache, (Level2Cache) level2Cache);
+        // 构建中间的各级本地缓存
+        List<Level1Cache> middleCaches = new ArrayList<>();
+        for (String middleCacheType : this.getCacheConfig().getComposite().getMiddleCacheTypes()) {
+            if (StringUtils.isEmpty(middleCacheType)) {
+                continue;
+            }
+            if (middleCacheType.equalsIgnoreCase(CacheType.COMPOSITE.name())) {
+                throw new IllegalArgumentException("middleCacheType can't be the CompositeCache, " +
+                        "Otherwise, loop building CompositeCache causes java.lang.StackOverflowError");
+            }
+            if (middleCacheType.equalsIgnoreCase(l1CacheType) || middleCacheType.equalsIgnoreCase(l2CacheType)) {
+                throw new IllegalArgumentException("middleCacheType can't be the same value as l1CacheType or l2CacheType " + middleCacheType);
+            }
+            Cache middleCache = this.getCacheInstance(middleCacheType, cacheName);
+            if (!(middleCache instanceof Level1Cache)) {
+                throw new IllegalArgumentException("middleCache must be implements Level1Cache, middleCacheType=" + middleCacheType);
+            }
+            if (middleCaches.contains(middleCache)) {
+                throw new IllegalArgumentException("middleCacheTypes can't contain the same value " + middleCacheType);
+            }
+            middleCaches.add((Level1Cache) middleCache);
+        }
+
+        return this.buildActualCache(cacheName, this.getCacheConfig(), (Level1Cache) level1Cache, middleCaches, (Level2Cache) level2Cache);
     }
 
     /**
@@ -62,6 +88,17 @@ public class CompositeCacheBuilder extends AbstractCacheBuilder<CompositeCache>
         return new CompositeCache(cacheName, cacheConfig, level1Cache, level2Cache);
     }
 
+    /**
+     * 构建多级组合缓存，middleCaches 为一级缓存和二级缓存之间的各级本地缓存，按从上到下的顺序排列
+     */
+    protected CompositeCache buildActualCache(String cacheName, CacheConfig cacheConfig, Level1Cache level1Cache,
+                                              List<Level1Cache> middleCaches, Level2Cache level2Cache) {
+        if (middleCaches.isEmpty()) {
+            return this.buildActualCache(cacheName, cacheConfig, level1Cache, level2Cache);
+        }
+        return new CompositeCache(cacheName, cacheConfig, level1Cache, middleCaches, level2Cache);
+    }
+
     /**
      * 获取缓存实例
      */
@@ -0,0 +1,48 @@
+package com.coy.l2cache.builder;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.DiskCache;
+import com.coy.l2cache.cache.disk.DiskStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+
+/**
+ * Disk Cache Builder
+ *
+ * @author chenck
+ * @date 2020/7/16 11:30
+ */
+public class DiskCacheBuilder extends AbstractCacheBuilder<DiskCache> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCacheBuilder.class);
+
+    @Override
+    public DiskCache build(String cacheName) {
+        DiskStore diskStore = this.buildActualCache(cacheName, this.getCacheConfig());
+
+        return new DiskCache(cacheName, this.getCacheConfig(), diskStore);
+    }
+
+    /**
+     * 构建实际缓存对象
+     * 注：每个缓存名称对应数据目录下的一个子目录，数据目录需显式配置
+     */
+    protected DiskStore buildActualCache(String cacheName, CacheConfig cacheConfig) {
+        CacheConfig.Disk disk = cacheConfig.getDisk();
+        if (!StringUtils.hasText(disk.getDataDir())) {
+            throw new IllegalArgumentException("disk cache need an explicit disk.dataDir, cacheName=" + cacheName);
+        }
+        File dir = new File(disk.getDataDir(), cacheName);
+        logger.info("create a DiskStore instance, cacheName={}, dir={}, segmentBytes={}, maximumBytes={}, expireTime={}",
+                cacheName, dir.getAbsolutePath(), disk.getSegmentBytes(), disk.getMaximumBytes(), disk.getExpireTime());
+        DiskStore diskStore = new DiskStore(dir, disk.getSegmentBytes(), disk.getMaximumBytes(), disk.getExpireTime(),
+                disk.getCompactionThreshold(), disk.isSyncOnWrite());
+
+        // 应用关闭时刷盘
+        Runtime.getRuntime().addShutdownHook(new Thread(diskStore::close, "l2cache-disk-close-" + cacheName));
+        return diskStore;
+    }
+}
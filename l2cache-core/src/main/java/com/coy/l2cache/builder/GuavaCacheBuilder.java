@@ -3,7 +3,11 @@ package com.coy.l2cache.builder;
 import com.coy.l2cache.CacheConfig;
 import com.coy.l2cache.cache.GuavaCache;
 import com.coy.l2cache.cache.expire.CacheExpiredListener;
+import com.coy.l2cache.cache.expire.CacheRemovalCause;
+import com.coy.l2cache.cache.expire.CacheRemovalHandler;
+import com.coy.l2cache.cache.weigher.CacheWeigher;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.consts.WeigherType;
 import com.coy.l2cache.load.CacheLoader;
 import com.coy.l2cache.load.CustomCacheLoader;
 import com.google.common.cache.Cache;
@@ -46,10 +50,18 @@ public class GuavaCacheBuilder extends AbstractCacheBuilder<GuavaCache> {
         String spec = this.getSpec(cacheName, cacheConfig.getGuava());
 
         CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.from(spec);
+        if (isWeighted(spec)) {
+            // 按权重淘汰，需设置权重计算器
+            CacheWeigher weigher = CacheWeigher.of(WeigherType.getWeigherType(cacheConfig.getGuava().getWeigher()));
+            cacheBuilder.weigher((key, value) -> weigher.weigh(key, value));
+            logger.info("guava cache use weigher, cacheName={}, weigher={}", cacheName, weigher.getClass().getSimpleName());
+        }
 
         if (null != listener) {
+            CacheRemovalHandler removalHandler = new CacheRemovalHandler(cacheName, listener, cacheConfig.getRemoval());
             cacheBuilder.removalListener(notification -> {
-                listener.onExpired(notification.getKey(), notification.getValue());
+                removalHandler.onRemoval(notification.getKey(), notification.getValue(),
+                        CacheRemovalCause.valueOf(notification.getCause().name()));
             });
         }
         if (null == cacheLoader) {
@@ -66,6 +78,23 @@ public class GuavaCacheBuilder extends AbstractCacheBuilder<GuavaCache> {
         });
     }
 
+    /**
+     * 是否配置了 maximumWeight，配置了则需要设置权重计算器
+     * 注：与 CacheBuilderSpec 相同，按逗号拆分配置项，按等号拆分配置项的key和value
+     */
+    private static boolean isWeighted(String spec) {
+        if (!StringUtils.hasText(spec)) {
+            return false;
+        }
+        for (String option : spec.split(",")) {
+            String key = option.split("=", 2)[0].trim();
+            if ("maximumWeight".equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 获取 spec
      */
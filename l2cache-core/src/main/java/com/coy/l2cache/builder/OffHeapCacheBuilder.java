@@ -0,0 +1,44 @@
+package com.coy.l2cache.builder;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.OffHeapCache;
+import com.coy.l2cache.cache.offheap.OffHeapStore;
+import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.load.CacheLoader;
+import com.coy.l2cache.load.CustomCacheLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OffHeap Cache Builder
+ *
+ * @author chenck
+ * @date 2020/7/14 11:40
+ */
+public class OffHeapCacheBuilder extends AbstractCacheBuilder<OffHeapCache> {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapCacheBuilder.class);
+
+    @Override
+    public OffHeapCache build(String cacheName) {
+        // 创建CustomCacheLoader
+        // 保证一个OffHeapCache对应一个CacheLoader，也就是cacheName维度进行隔离
+        CacheLoader customCacheLoader = CustomCacheLoader.newInstance(this.getCacheConfig().getInstanceId(),
+                CacheType.OFFHEAP.name().toLowerCase(), cacheName);
+        customCacheLoader.setCacheSyncPolicy(this.getCacheSyncPolicy());
+
+        OffHeapStore offHeapStore = this.buildActualCache(cacheName, this.getCacheConfig());
+
+        return new OffHeapCache(cacheName, this.getCacheConfig(), customCacheLoader, this.getCacheSyncPolicy(), offHeapStore);
+    }
+
+    /**
+     * 构建实际缓存对象
+     */
+    protected OffHeapStore buildActualCache(String cacheName, CacheConfig cacheConfig) {
+        CacheConfig.OffHeap offHeap = cacheConfig.getOffHeap();
+        logger.info("create a OffHeapStore instance, cacheName={}, maximumBytes={}, segments={}, blockSize={}, expireTime={}",
+                cacheName, offHeap.getMaximumBytes(), offHeap.getSegments(), offHeap.getBlockSize(), offHeap.getExpireTime());
+        return new OffHeapStore(offHeap.getMaximumBytes(), offHeap.getSegments(), offHeap.getBlockSize(), offHeap.getExpireTime());
+    }
+}
@@ -6,6 +6,7 @@ import com.coy.l2cache.content.RedissonSupport;
 import org.redisson.api.RMap;
 import org.redisson.api.RMapCache;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,16 +43,17 @@ public class RedisCacheBuilder extends AbstractCacheBuilder<RedissonCache> {
 
 
     protected RedissonCache buildActualCache(String cacheName, CacheConfig cacheConfig, RedissonClient redissonClient) {
-        CacheConfig.Redis redis = this.getCacheConfig().getRedis();
+        CacheConfig.Redis redis = cacheConfig.getRedis(cacheName);
+        Codec codec = RedissonSupport.getCodec(redis.getCodec());
         if (redis.getMaxIdleTime() == 0 && redis.getExpireTime() == 0 && redis.getMaxSize() == 0) {
-            RMap<Object, Object> map = redissonClient.getMap(cacheName);
+            RMap<Object, Object> map = null == codec ? redissonClient.getMap(cacheName) : redissonClient.getMap(cacheName, codec);
             logger.info("create a Redisson RMap instance, cacheName={}", cacheName);
-            return new RedissonCache(cacheName, cacheConfig, map);
+            return new RedissonCache(cacheName, cacheConfig, map, redissonClient);
         }
 
-        RMapCache<Object, Object> mapCache = redissonClient.getMapCache(cacheName);
+        RMapCache<Object, Object> mapCache = null == codec ? redissonClient.getMapCache(cacheName) : redissonClient.getMapCache(cacheName, codec);
         mapCache.setMaxSize(redis.getMaxSize());
         logger.info("create a Redisson RMapCache instance, cacheName={}", cacheName);
-        return new RedissonCache(cacheName, cacheConfig, mapCache);
+        return new RedissonCache(cacheName, cacheConfig, mapCache, redissonClient);
     }
 }
@@ -2,23 +2,47 @@ package com.coy.l2cache.cache;
 
 import com.coy.l2cache.CacheConfig;
 import com.coy.l2cache.CacheSyncPolicy;
+import com.coy.l2cache.cache.expire.CacheExpiry;
+import com.coy.l2cache.cache.expire.CaffeineVariableExpiry;
 import com.coy.l2cache.consts.CacheConsts;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.content.CustomCaffeineSpec;
 import com.coy.l2cache.load.CacheLoader;
+import com.coy.l2cache.load.EarlyRefreshPolicy;
+import com.coy.l2cache.load.LoadCost;
 import com.coy.l2cache.load.LoadFunction;
 import com.coy.l2cache.schedule.RefreshExpiredCacheTask;
 import com.coy.l2cache.schedule.RefreshSupport;
 import com.coy.l2cache.sync.CacheMessage;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Caffeine Cache
+ * <p>
+ * 开启按代清除（generationClear）时，clear 直接替换为新的 caffeine 实例，旧实例不再可见，其中的缓存项由GC回收，
+ * 而不是通过 invalidateAll() 逐个删除并通知 removalListener。
  *
  * @author chenck
  * @date 2020/6/29 16:37
@@ -27,6 +51,11 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
 
     private static final Logger logger = LoggerFactory.getLogger(CaffeineCache.class);
 
+    /**
+     * 当前线程调用 get(key, callable) 时传入的 valueLoader，未命中时由 valueLoaderFunction 取出并加载数据
+     */
+    private static final ThreadLocal<Callable<?>> VALUE_LOADER = new ThreadLocal<>();
+
     /**
      * caffeine config
      */
@@ -40,17 +69,79 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
      */
     private final CacheSyncPolicy cacheSyncPolicy;
     /**
-     * L1 Caffeine Cache
+     * L1 Caffeine Cache，开启按代清除时 clear 后替换为新的实例
+     */
+    private volatile Cache<Object, Object> caffeineCache;
+    /**
+     * 按当前 spec 及给定的可变过期时间创建新的 caffeine 实例，用于按代清除及运行时修改 spec 后重建实例
+     */
+    private final Function<CaffeineVariableExpiry, Cache<Object, Object>> cacheFactory;
+    /**
+     * 按当前 spec 创建可变过期时间，spec 未开启过期时间抖动及可变过期时间时返回null；为null时重建实例沿用当前的可变过期时间
+     */
+    private final Supplier<CaffeineVariableExpiry> variableExpiryFactory;
+    /**
+     * 重建实例与清除操作互斥：重建时迁移及替换实例持有写锁，清除持有读锁，避免迁移把已清除的缓存项重新写入新实例
+     */
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    /**
+     * 清除次数，清除前递增
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+    /**
+     * 当前生效的 spec
+     */
+    private volatile String spec;
+    /**
+     * 降级处理器
+     */
+    private final DemotionHandler demotionHandler;
+    /**
+     * 概率提前刷新策略
+     */
+    private final EarlyRefreshPolicy earlyRefreshPolicy;
+    /**
+     * 标签索引
+     */
+    private final TagIndex tagIndex;
+    /**
+     * 可变过期时间，未开启时为null；运行时修改 spec 重建实例后替换为按新 spec 创建的实例
      */
-    private final Cache<Object, Object> caffeineCache;
+    private volatile CaffeineVariableExpiry variableExpiry;
+    /**
+     * 按缓存项计算过期时间的函数，重建实例后设置到新的可变过期时间上
+     */
+    private volatile CacheExpiry<Object, Object> expiry;
+    /**
+     * 是否已提示未开启可变过期时间时忽略了指定的过期时间，只提示一次
+     */
+    private final AtomicBoolean ttlIgnoredWarned = new AtomicBoolean(false);
+    /**
+     * get(key, callable) 未命中时的加载函数，每个实例只创建一次，命中路径上不创建加载函数
+     */
+    private final Function<Object, Object> valueLoaderFunction = this::loadByValueLoader;
 
+    /**
+     * @param options 可选组件，未设置的组件不开启对应的功能
+     */
     public CaffeineCache(String cacheName, CacheConfig cacheConfig, CacheLoader cacheLoader, CacheSyncPolicy cacheSyncPolicy,
-                         Cache<Object, Object> caffeineCache) {
+                         Cache<Object, Object> caffeineCache, CaffeineCacheOptions options) {
         super(cacheName, cacheConfig);
         this.caffeine = cacheConfig.getCaffeine();
         this.cacheLoader = cacheLoader;
         this.cacheSyncPolicy = cacheSyncPolicy;
         this.caffeineCache = caffeineCache;
+        this.demotionHandler = options.getDemotionHandler();
+        this.earlyRefreshPolicy = options.getEarlyRefreshPolicy();
+        this.cacheFactory = options.getCacheFactory();
+        this.spec = this.caffeine.getSpec(cacheName);
+        this.tagIndex = options.getTagIndex();
+        this.variableExpiry = options.getVariableExpiry();
+        this.variableExpiryFactory = options.getVariableExpiryFactory();
+        if (null != tagIndex) {
+            // 按代清除或重建实例后，旧实例的淘汰通知不影响新实例中的缓存项
+            tagIndex.setPresence(key -> this.caffeineCache.asMap().containsKey(key));
+        }
 
         if (this.caffeine.isAutoRefreshExpireCache()) {
             // 定期刷新过期的缓存
@@ -80,6 +171,16 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
         return this.cacheLoader;
     }
 
+    @Override
+    public DemotionHandler getDemotionHandler() {
+        return this.demotionHandler;
+    }
+
+    @Override
+    public TagIndex getTagIndex() {
+        return this.tagIndex;
+    }
+
     @Override
     public boolean isLoadingCache() {
         return this.caffeineCache instanceof LoadingCache && null != this.cacheLoader;
@@ -90,7 +191,14 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
         if (isLoadingCache()) {
             // 如果是refreshAfterWrite策略，则只会阻塞加载数据的线程，其他线程返回旧值（如果是异步加载，则所有线程都返回旧值）
             Object value = ((LoadingCache) this.caffeineCache).get(key);
-            logger.debug("[CaffeineCache] LoadingCache.get cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+            // 命中路径上不产生对象分配：日志参数超过2个时会创建可变参数数组，刷新任务的lambda也仅在开启提前刷新时创建
+            if (logger.isDebugEnabled()) {
+                logger.debug("[CaffeineCache] LoadingCache.get cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+            }
+            if (this.isEarlyRefreshEnabled()) {
+                // 提前刷新只在本节点加载，不发送缓存同步消息
+                this.earlyRefreshIfNecessary(key, () -> this.reload(key, this.cacheLoader::loadQuietly));
+            }
             return fromStoreValue(value);
         }
         return fromStoreValue(this.caffeineCache.getIfPresent(key));
@@ -100,31 +208,108 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
     public <T> T get(Object key, Callable<T> valueLoader) {
         if (isLoadingCache()) {
             // 将Callable设置到自定义CacheLoader中，以便在load()中执行具体的业务方法来加载数据
+            // 注：已存在时不会重复写入，命中时refreshAfterWrite的刷新仍需使用该valueLoader
             this.cacheLoader.addValueLoader(key, valueLoader);
 
             Object value = this.get(key);
             return (T) fromStoreValue(value);
         }
 
-        // 同步加载数据，仅一个线程加载数据，其他线程均阻塞
-        Object value = this.caffeineCache.get(key, new LoadFunction(this.getInstanceId(), this.getCacheType(), this.getCacheName(),
-                null, this.getCacheSyncPolicy(), valueLoader));
-        logger.debug("[CaffeineCache] Cache.get(key, callable) cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+        // 只查找一次：命中时由 caffeine 记录一次 hit，未命中时记录一次 miss 并同步加载数据，仅一个线程加载数据，其他线程均阻塞
+        // 注：valueLoader 通过线程变量传给加载函数，仅未命中时才创建 LoadFunction，避免命中路径上的对象分配
+        Object value;
+        VALUE_LOADER.set(valueLoader);
+        try {
+            value = this.caffeineCache.get(key, this.valueLoaderFunction);
+        } finally {
+            VALUE_LOADER.set(null);
+            LoadCost.clear();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("[CaffeineCache] Cache.get(key, callable) cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+        }
+        if (this.isEarlyRefreshEnabled()) {
+            this.earlyRefreshIfNecessary(key, () -> this.reload(key, this.newLoadFunction(valueLoader, null)));
+        }
         return (T) fromStoreValue(value);
     }
 
     @Override
     public void put(Object key, Object value) {
+        this.interest(key);
         caffeineCache.put(key, toStoreValue(value));
         if (null != cacheSyncPolicy) {
             cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_REFRESH));
         }
     }
 
+    /**
+     * 设置指定key的缓存项及其过期时间
+     * 未开启可变过期时间时无法指定过期时间，不在一级缓存中缓存该项（只清除旧值），避免其存活时间超过指定的过期时间及二级缓存；
+     * 其他节点收到的是清除消息而不是刷新消息，避免其他节点按默认的过期时间重新加载
+     */
+    @Override
+    public void put(Object key, Object value, Duration ttl) {
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = caffeineCache.policy().expireVariably();
+        if (!varExpiration.isPresent()) {
+            if (ttlIgnoredWarned.compareAndSet(false, true)) {
+                logger.warn("[CaffeineCache] variable expiry not enabled, entries put with ttl are not cached in L1, cacheName={}",
+                        this.getCacheName());
+            }
+            this.evict(key);
+            return;
+        }
+        this.interest(key);
+        varExpiration.get().put(key, toStoreValue(value), ttl.toNanos(), TimeUnit.NANOSECONDS);
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_CLEAR));
+        }
+    }
+
+    /**
+     * 设置按缓存项计算过期时间的函数，需开启可变过期时间
+     */
+    public void setExpiry(CacheExpiry<Object, Object> expiry) {
+        this.expiry = expiry;
+        CaffeineVariableExpiry variableExpiry = this.variableExpiry;
+        if (null == variableExpiry) {
+            logger.warn("[CaffeineCache] variable expiry not enabled, ignore expiry, cacheName={}", this.getCacheName());
+            return;
+        }
+        variableExpiry.setExpiry(expiry);
+    }
+
+    @Override
+    public Object getIfPresent(Object key) {
+        return fromStoreValue(this.caffeineCache.getIfPresent(key));
+    }
+
+    @Override
+    public Object getStoreValueIfPresent(Object key) {
+        return this.caffeineCache.getIfPresent(key);
+    }
+
+    @Override
+    public void putLocal(Object key, Object value) {
+        this.interest(key);
+        caffeineCache.put(key, toStoreValue(value));
+    }
+
+    @Override
+    public boolean putLocalIfAbsent(Object key, Object value) {
+        this.interest(key);
+        return null == caffeineCache.asMap().putIfAbsent(key, toStoreValue(value));
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
     @Override
     public void evict(Object key) {
         logger.debug("[CaffeineCache] evict cache, cacheName={}, key={}", this.getCacheName(), key);
-        caffeineCache.invalidate(key);
+        this.invalidate(key);
         if (null != cacheSyncPolicy) {
             cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_CLEAR));
         }
@@ -133,19 +318,44 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
     @Override
     public void clear() {
         logger.debug("[CaffeineCache] clear cache, cacheName={}", this.getCacheName());
-        caffeineCache.invalidateAll();
+        this.invalidateAll();
         if (null != cacheSyncPolicy) {
             cacheSyncPolicy.publish(createMessage(null, CacheConsts.CACHE_CLEAR));
         }
     }
 
+    @Override
+    public Collection<Object> localKeys() {
+        return caffeineCache.asMap().keySet();
+    }
+
     @Override
     public void clearLocalCache(Object key) {
         logger.info("[CaffeineCache] clear local cache, cacheName={}, key={}", this.getCacheName(), key);
         if (key == null) {
-            caffeineCache.invalidateAll();
+            this.invalidateAll();
         } else {
-            caffeineCache.invalidate(key);
+            this.invalidate(key);
+        }
+    }
+
+    @Override
+    public void clearLocalCacheByTag(String tag, Collection<Object> keys) {
+        if (null == tagIndex) {
+            Level1Cache.super.clearLocalCacheByTag(tag, keys);
+            return;
+        }
+        Set<Object> evictKeys = new HashSet<>(tagIndex.removeTag(tag));
+        if (null != keys) {
+            evictKeys.addAll(keys);
+        }
+        logger.info("[CaffeineCache] clear local cache by tag, cacheName={}, tag={}, keys={}", this.getCacheName(), tag, evictKeys.size());
+        invalidationCount.incrementAndGet();
+        rebuildLock.readLock().lock();
+        try {
+            caffeineCache.invalidateAll(evictKeys);
+        } finally {
+            rebuildLock.readLock().unlock();
         }
     }
 
@@ -189,6 +399,322 @@ public class CaffeineCache extends AbstractAdaptingCache implements Level1Cache
         }
     }
 
+    /**
+     * 修改 spec 并通知其他节点
+     *
+     * @see #applySpec(String)
+     */
+    public void updateSpec(String spec) {
+        this.applySpec(spec);
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.publish(createMessage(spec, CacheConsts.CACHE_SPEC));
+        }
+    }
+
+    /**
+     * 在本节点应用新的 spec
+     * 只修改了 maximumSize/maximumWeight、expireAfterWrite、expireAfterAccess 的值（或 initialCapacity）时，通过 caffeine 的 Policy 原地调整，
+     * 其他变更（如：新增或去掉某项配置、引用类型、refreshAfterWrite、recordStats）无法原地调整，按新的 spec 重建实例并迁移已有的缓存项
+     * 重建时按新的 spec 创建可变过期时间，迁移的缓存项保留其剩余存活时间，新实例无法指定单个缓存项的过期时间且剩余存活时间更短的缓存项不迁移，
+     * 避免一级缓存的存活时间超过二级缓存；迁移与清除操作互斥，迁移期间的清除在替换实例后作用于新实例
+     * 注：配置了全局预算时容量由再平衡任务管理，会在下个周期重新调整
+     *
+     * @return true 表示原地调整，false 表示重建了实例或未能应用
+     */
+    public synchronized boolean applySpec(String spec) {
+        if (Objects.equals(this.spec, spec)) {
+            return true;
+        }
+        CustomCaffeineSpec current = StringUtils.hasText(this.spec) ? CustomCaffeineSpec.parse(this.spec) : null;
+        CustomCaffeineSpec next = StringUtils.hasText(spec) ? CustomCaffeineSpec.parse(spec) : null;
+        String previous = this.spec;
+        this.putSpec(spec);
+        this.spec = spec;
+        if (null != current && null != next && current.isLiveApplicable(next)) {
+            this.updateVariableExpiry(next);
+            this.applyPolicy(next);
+            logger.info("[CaffeineCache] apply spec in place, cacheName={}, spec={}", this.getCacheName(), spec);
+            return true;
+        }
+        if (null == cacheFactory) {
+            logger.warn("[CaffeineCache] spec can't be applied in place and no cache factory to rebuild, cacheName={}, spec={}",
+                    this.getCacheName(), spec);
+            return false;
+        }
+        CaffeineVariableExpiry nextExpiry;
+        Cache<Object, Object> rebuilt;
+        try {
+            nextExpiry = null == variableExpiryFactory ? this.variableExpiry : variableExpiryFactory.get();
+            if (null != nextExpiry && null != expiry) {
+                nextExpiry.setExpiry(expiry);
+            }
+            rebuilt = cacheFactory.apply(nextExpiry);
+        } catch (RuntimeException e) {
+            // 新的 spec 无法构建（如：与可变过期时间冲突），恢复原来的 spec
+            this.putSpec(previous);
+            this.spec = previous;
+            logger.error("[CaffeineCache] rebuild with new spec error, keep current instance, cacheName={}, spec={}", this.getCacheName(), spec, e);
+            return false;
+        }
+        rebuildLock.writeLock().lock();
+        int migrated;
+        Cache<Object, Object> old = this.caffeineCache;
+        try {
+            this.variableExpiry = nextExpiry;
+            this.updateVariableExpiry(next);
+            migrated = this.migrate(old, rebuilt);
+            this.caffeineCache = rebuilt;
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+        if (null != tagIndex) {
+            // 未迁移的缓存项从标签索引中移除
+            for (Object key : old.asMap().keySet()) {
+                tagIndex.removeIfAbsent(key);
+            }
+        }
+        logger.info("[CaffeineCache] rebuild with new spec, cacheName={}, spec={}, migrated={}, dropped={}", this.getCacheName(), spec,
+                migrated, old.estimatedSize() - migrated);
+        return false;
+    }
+
+    /**
+     * 将旧实例中的缓存项按其剩余存活时间迁移到新实例
+     * 新实例开启了可变过期时间时按剩余存活时间写入；否则只迁移剩余存活时间不短于新实例过期时间的缓存项
+     *
+     * @return 迁移的缓存项数量
+     */
+    private int migrate(Cache<Object, Object> old, Cache<Object, Object> rebuilt) {
+        Policy<Object, Object> oldPolicy = old.policy();
+        Policy<Object, Object> newPolicy = rebuilt.policy();
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = newPolicy.expireVariably();
+        long fixedNanos = newPolicy.expireAfterWrite().map(expiration -> expiration.getExpiresAfter(TimeUnit.NANOSECONDS))
+                .orElseGet(() -> newPolicy.expireAfterAccess().map(expiration -> expiration.getExpiresAfter(TimeUnit.NANOSECONDS))
+                        .orElse(Long.MAX_VALUE));
+        int migrated = 0;
+        for (Map.Entry<Object, Object> entry : old.asMap().entrySet()) {
+            long remaining = this.remainingLifetimeNanos(oldPolicy, entry.getKey());
+            if (remaining <= 0) {
+                continue;
+            }
+            if (varExpiration.isPresent() && remaining != Long.MAX_VALUE) {
+                varExpiration.get().put(entry.getKey(), entry.getValue(), remaining, TimeUnit.NANOSECONDS);
+            } else if (varExpiration.isPresent() || remaining >= fixedNanos) {
+                rebuilt.put(entry.getKey(), entry.getValue());
+            } else {
+                continue;
+            }
+            migrated++;
+        }
+        return migrated;
+    }
+
+    /**
+     * 缓存项在指定实例中的剩余存活时间(纳秒)，取各过期策略中最短的，未配置过期时间时返回 Long.MAX_VALUE
+     */
+    private long remainingLifetimeNanos(Policy<Object, Object> policy, Object key) {
+        long remaining = Long.MAX_VALUE;
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = policy.expireVariably();
+        if (varExpiration.isPresent()) {
+            OptionalLong expiresAfter = varExpiration.get().getExpiresAfter(key, TimeUnit.NANOSECONDS);
+            if (expiresAfter.isPresent()) {
+                remaining = Math.min(remaining, expiresAfter.getAsLong());
+            }
+        }
+        for (Optional<Policy.Expiration<Object, Object>> expiration : Arrays.asList(policy.expireAfterWrite(), policy.expireAfterAccess())) {
+            if (!expiration.isPresent()) {
+                continue;
+            }
+            OptionalLong age = expiration.get().ageOf(key, TimeUnit.NANOSECONDS);
+            if (age.isPresent()) {
+                remaining = Math.min(remaining, expiration.get().getExpiresAfter(TimeUnit.NANOSECONDS) - age.getAsLong());
+            }
+        }
+        return remaining;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    /**
+     * 可变过期时间使用新的 expireAfterWrite
+     */
+    private void updateVariableExpiry(CustomCaffeineSpec next) {
+        CaffeineVariableExpiry variableExpiry = this.variableExpiry;
+        if (null == variableExpiry) {
+            return;
+        }
+        variableExpiry.setExpireNanos(null == next || null == next.getExpireAfterWriteTimeUnit() ? Long.MAX_VALUE
+                : next.getExpireAfterWriteTimeUnit().toNanos(next.getExpireAfterWriteDuration()));
+    }
+
+    private void applyPolicy(CustomCaffeineSpec next) {
+        Policy<Object, Object> policy = this.caffeineCache.policy();
+        policy.eviction().ifPresent(eviction -> eviction.setMaximum(next.isMaximumWeightSet() ? next.getMaximumWeight() : next.getMaximumSize()));
+        if (null != next.getExpireAfterWriteTimeUnit()) {
+            // 开启可变过期时间时没有 expireAfterWrite，已通过 variableExpiry 调整
+            policy.expireAfterWrite().ifPresent(expiration -> expiration.setExpiresAfter(next.getExpireAfterWriteDuration(),
+                    next.getExpireAfterWriteTimeUnit()));
+        }
+        if (null != next.getExpireAfterAccessTimeUnit()) {
+            policy.expireAfterAccess().ifPresent(expiration -> expiration.setExpiresAfter(next.getExpireAfterAccessDuration(),
+                    next.getExpireAfterAccessTimeUnit()));
+        }
+    }
+
+    /**
+     * 写入配置，以便重建实例及按代清除时使用新的 spec
+     */
+    private void putSpec(String spec) {
+        if (StringUtils.hasText(spec)) {
+            caffeine.getSpecs().put(this.getCacheName(), spec);
+        } else {
+            caffeine.getSpecs().remove(this.getCacheName());
+        }
+    }
+
+    /**
+     * 清除指定的缓存项，与重建实例互斥
+     */
+    private void invalidate(Object key) {
+        invalidationCount.incrementAndGet();
+        rebuildLock.readLock().lock();
+        try {
+            caffeineCache.invalidate(key);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 清除所有缓存项，开启按代清除时替换为新的 caffeine 实例，与重建实例互斥
+     */
+    private void invalidateAll() {
+        invalidationCount.incrementAndGet();
+        rebuildLock.readLock().lock();
+        try {
+            if (null != tagIndex) {
+                tagIndex.clear();
+            }
+            if (!caffeine.isGenerationClear() || null == cacheFactory) {
+                caffeineCache.invalidateAll();
+                return;
+            }
+            Cache<Object, Object> old = this.caffeineCache;
+            Cache<Object, Object> next = cacheFactory.apply(this.variableExpiry);
+            // 保留运行期调整过的容量（如：全局预算分配的容量）
+            old.policy().eviction().ifPresent(oldEviction -> next.policy().eviction()
+                    .ifPresent(eviction -> eviction.setMaximum(oldEviction.getMaximum())));
+            this.caffeineCache = next;
+            logger.debug("[CaffeineCache] replace caffeine instance, cacheName={}, oldSize={}", this.getCacheName(), old.estimatedSize());
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * get(key, callable) 未命中时，通过当前线程传入的 valueLoader 加载数据
+     * 注：先取出 valueLoader，加载过程中嵌套调用 get(key, callable) 会覆盖线程变量
+     */
+    private Object loadByValueLoader(Object key) {
+        LoadFunction loadFunction = this.newLoadFunction(VALUE_LOADER.get(), this.getCacheSyncPolicy());
+        return this.timedLoad(key, loadFunction);
+    }
+
+    /**
+     * 加载数据并记录加载耗时
+     * 注：开启 costAware 时将加载耗时记录到当前线程，写入加载结果时由权重计算器取出，调用方写入缓存后需清除
+     */
+    private Object timedLoad(Object key, Function<Object, Object> loadFunction) {
+        boolean recordLoadTime = this.isEarlyRefreshEnabled();
+        boolean recordLoadCost = this.isLoadCostAware();
+        if (!recordLoadTime && !recordLoadCost) {
+            return loadFunction.apply(key);
+        }
+        long start = System.nanoTime();
+        Object value = null;
+        try {
+            value = loadFunction.apply(key);
+            return value;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            if (recordLoadTime) {
+                earlyRefreshPolicy.recordLoadTime(nanos);
+            }
+            if (recordLoadCost && null != value) {
+                LoadCost.record(key, nanos);
+            }
+        }
+    }
+
+    /**
+     * 提前刷新：加载新值并写入本地缓存
+     */
+    private void reload(Object key, Function<Object, Object> loadFunction) {
+        try {
+            Object newValue = this.timedLoad(key, loadFunction);
+            if (null != newValue) {
+                this.caffeineCache.put(key, newValue);
+            }
+        } finally {
+            LoadCost.clear();
+        }
+    }
+
+    /**
+     * 是否按加载耗时计算权重：开启了 costAware 且按权重淘汰
+     */
+    private boolean isLoadCostAware() {
+        return caffeine.isCostAware() && this.caffeineCache.policy().eviction()
+                .map(Policy.Eviction::isWeighted).orElse(false);
+    }
+
+    /**
+     * @param cacheSyncPolicy 为null时加载数据后不发送缓存同步消息
+     */
+    private LoadFunction newLoadFunction(Callable<?> valueLoader, CacheSyncPolicy cacheSyncPolicy) {
+        return new LoadFunction(this.getInstanceId(), this.getCacheType(), this.getCacheName(), null,
+                cacheSyncPolicy, valueLoader);
+    }
+
+    private boolean isEarlyRefreshEnabled() {
+        return null != earlyRefreshPolicy && earlyRefreshPolicy.isEarlyRefreshEnabled();
+    }
+
+    /**
+     * 根据剩余存活时间和加载耗时，按概率提前异步刷新缓存项，当前线程仍返回旧值
+     */
+    private void earlyRefreshIfNecessary(Object key, Runnable refresher) {
+        if (!this.isEarlyRefreshEnabled()) {
+            return;
+        }
+        if (!earlyRefreshPolicy.shouldRefresh(this.remainingNanos(key))) {
+            return;
+        }
+        earlyRefreshPolicy.refreshAsync(key, refresher);
+    }
+
+    /**
+     * 缓存项的剩余存活时间(纳秒)，未配置过期时间或缓存项不存在时返回-1
+     */
+    private long remainingNanos(Object key) {
+        Policy<Object, Object> policy = this.caffeineCache.policy();
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = policy.expireVariably();
+        if (varExpiration.isPresent()) {
+            return varExpiration.get().getExpiresAfter(key, TimeUnit.NANOSECONDS).orElse(-1);
+        }
+        Optional<Policy.Expiration<Object, Object>> expiration = policy.expireAfterWrite();
+        if (!expiration.isPresent()) {
+            return -1;
+        }
+        OptionalLong age = expiration.get().ageOf(key, TimeUnit.NANOSECONDS);
+        if (!age.isPresent()) {
+            return -1;
+        }
+        return Math.max(0, expiration.get().getExpiresAfter(TimeUnit.NANOSECONDS) - age.getAsLong());
+    }
+
     private CacheMessage createMessage(Object key, String optType) {
         return new CacheMessage()
                 .setInstanceId(this.getInstanceId())
@@ -0,0 +1,69 @@
+package com.coy.l2cache.cache;
+
+import com.coy.l2cache.cache.expire.CaffeineVariableExpiry;
+import com.coy.l2cache.load.EarlyRefreshPolicy;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caffeine Cache 的可选组件，未设置的组件为null，表示不开启对应的功能
+ * <p>
+ * 新增可选组件时在此增加属性，而不是增加 CaffeineCache 的构造方法及 CaffeineCacheBuilder.buildActualCache 的重载
+ *
+ * @author chenck
+ * @date 2020/7/25 10:12
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class CaffeineCacheOptions {
+
+    /**
+     * 降级处理器，因容量被淘汰的缓存项降级到下一级本地缓存
+     */
+    private DemotionHandler demotionHandler;
+
+    /**
+     * 概率提前刷新策略
+     */
+    private EarlyRefreshPolicy earlyRefreshPolicy;
+
+    /**
+     * 标签索引
+     */
+    private TagIndex tagIndex;
+
+    /**
+     * 可变过期时间，为null时使用 spec 中配置的过期时间
+     */
+    private CaffeineVariableExpiry variableExpiry;
+
+    /**
+     * 按给定的可变过期时间创建新的 caffeine 实例，用于按代清除及运行时修改 spec 后重建实例；为null时不支持重建
+     */
+    private Function<CaffeineVariableExpiry, Cache<Object, Object>> cacheFactory;
+
+    /**
+     * 按当前 spec 创建可变过期时间，运行时修改 spec 重建实例时使用；为null时沿用当前的可变过期时间
+     */
+    private Supplier<CaffeineVariableExpiry> variableExpiryFactory;
+
+    /**
+     * 复制当前的可选组件，并替换可变过期时间，用于重建实例
+     */
+    public CaffeineCacheOptions withVariableExpiry(CaffeineVariableExpiry variableExpiry) {
+        return new CaffeineCacheOptions()
+                .setDemotionHandler(this.demotionHandler)
+                .setEarlyRefreshPolicy(this.earlyRefreshPolicy)
+                .setTagIndex(this.tagIndex)
+                .setVariableExpiry(variableExpiry)
+                .setCacheFactory(this.cacheFactory)
+                .setVariableExpiryFactory(this.variableExpiryFactory);
+    }
+
+}
@@ -2,14 +2,33 @@ package com.coy.l2cache.cache;
 
 import com.coy.l2cache.Cache;
 import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.CacheSyncPolicy;
+import com.coy.l2cache.batch.AutoBatcher;
+import com.coy.l2cache.cache.expire.CacheExpiry;
+import com.coy.l2cache.consts.CacheConsts;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.load.BatchLoader;
+import com.coy.l2cache.sync.CacheMessage;
+import com.coy.l2cache.trace.TraceOp;
+import com.coy.l2cache.trace.TraceRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 /**
  * 组合缓存器
+ * <p>
+ * 支持多级组合：一级缓存 -> 中间的各级本地缓存(可选) -> 二级缓存，如：caffeine -> offheap -> redis
  *
  * @author chenck
  * @date 2020/6/29 17:32
@@ -29,14 +48,78 @@ public class CompositeCache extends AbstractAdaptingCache implements Cache {
      */
     private final Level2Cache level2Cache;
 
+    /**
+     * 中间的各级本地缓存，按从上到下的顺序排列
+     */
+    private final List<Level1Cache> middleCaches;
+
+    /**
+     * 一级缓存下面的缓存链，未配置中间缓存时即为二级缓存
+     */
+    private final Level2Cache lowerCache;
+
+    /**
+     * 批量加载器，未设置时为null
+     */
+    private volatile BatchLoader<Object, Object> batchLoader;
+
+    /**
+     * 合并并发的未命中，设置了批量加载器时不为null
+     */
+    private volatile AutoBatcher<Object, Object> batchLoadBatcher;
+
+    /**
+     * 访问追踪记录器，未开启时为null
+     */
+    private final TraceRecorder traceRecorder;
+
     public CompositeCache(String cacheName, CacheConfig cacheConfig, Level1Cache level1Cache, Level2Cache level2Cache) {
+        this(cacheName, cacheConfig, level1Cache, Collections.emptyList(), level2Cache);
+    }
+
+    public CompositeCache(String cacheName, CacheConfig cacheConfig, Level1Cache level1Cache, List<Level1Cache> middleCaches,
+                          Level2Cache level2Cache) {
         super(cacheName, cacheConfig);
         this.composite = cacheConfig.getComposite();
         this.level1Cache = level1Cache;
         this.level2Cache = level2Cache;
+        this.middleCaches = Collections.unmodifiableList(new ArrayList<>(middleCaches));
+        this.traceRecorder = cacheConfig.getTrace().isEnabled() ? TraceRecorder.getInstance(cacheConfig.getTrace()) : null;
+        if (this.middleCaches.isEmpty()) {
+            this.lowerCache = level2Cache;
+        } else {
+            this.lowerCache = new TieredLevel2Cache(cacheName, cacheConfig, this.middleCaches, level2Cache);
+            for (Level1Cache middleCache : this.middleCaches) {
+                if (middleCache.isLoadingCache()) {
+                    // 中间缓存刷新时直接从level2Cache加载
+                    middleCache.getCacheLoader().setLevel2Cache(level2Cache);
+                }
+            }
+            if (this.composite.isDemoteOnEviction()) {
+                this.bindDemotion();
+            }
+        }
         if (level1Cache.isLoadingCache()) {
             // 设置level2Cache到CustomCacheLoader中，以便CacheLoader中直接操作level2Cache
-            level1Cache.getCacheLoader().setLevel2Cache(level2Cache);
+            level1Cache.getCacheLoader().setLevel2Cache(this.lowerCache);
+        }
+    }
+
+    /**
+     * 将每一级本地缓存的降级处理器指向下一级本地缓存
+     */
+    private void bindDemotion() {
+        List<Level1Cache> localCaches = new ArrayList<>();
+        localCaches.add(level1Cache);
+        localCaches.addAll(middleCaches);
+        for (int i = 0; i < localCaches.size() - 1; i++) {
+            DemotionHandler demotionHandler = localCaches.get(i).getDemotionHandler();
+            if (null == demotionHandler) {
+                logger.info("[CompositeCache] cache not support demotion, cacheName={}, cacheType={}", this.getCacheName(),
+                        localCaches.get(i).getCacheType());
+                continue;
+            }
+            demotionHandler.setNextLevelCache(localCaches.get(i + 1));
         }
     }
 
@@ -52,6 +135,15 @@ public class CompositeCache extends AbstractAdaptingCache implements Cache {
 
     @Override
     public Object get(Object key) {
+        Object value = this.doGet(key);
+        this.trace(key, TraceOp.GET, value);
+        return value;
+    }
+
+    private Object doGet(Object key) {
+        if (null != batchLoadBatcher) {
+            return this.getByBatchLoader(key);
+        }
         // L1为LoadingCache，则会在CacheLoader中对L2进行了存取操作，所以此处直接返回
         if (level1Cache.isLoadingCache()) {
             return level1Cache.get(key);
@@ -60,12 +152,15 @@ public class CompositeCache extends AbstractAdaptingCache implements Cache {
         // 从L1获取缓存
         Object value = level1Cache.get(key);
         if (value != null) {
-            logger.debug("level1Cache get cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+            // 命中路径上避免创建日志的可变参数数组
+            if (logger.isDebugEnabled()) {
+                logger.debug("level1Cache get cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+            }
             return value;
         }
 
-        // 从L2获取缓存
-        value = level2Cache.get(key);
+        // 从L2获取缓存（配置了中间缓存时，先逐级从中间缓存获取）
+        value = lowerCache.get(key);
         if (value != null) {
             logger.debug("level2Cache get cache and put in level1Cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
             level1Cache.put(key, value);
@@ -75,30 +170,236 @@ public class CompositeCache extends AbstractAdaptingCache implements Cache {
 
     @Override
     public <T> T get(Object key, Callable<T> valueLoader) {
-        // LoadFunction.apply()中封装了L2获取缓存的逻辑，所以此处只需要调用level1Cache.get(key, valueLoader)
-        return level1Cache.get(key, valueLoader);
+        T value;
+        if (null != batchLoadBatcher) {
+            // 设置了批量加载器时，优先使用批量加载器加载数据，批量加载器未加载到该key（L1中也没有缓存的空值）时，使用valueLoader加载
+            value = (T) this.getByBatchLoader(key);
+            if (null == value && null == level1Cache.getStoreValueIfPresent(key)) {
+                value = level1Cache.get(key, valueLoader);
+            }
+        } else {
+            // LoadFunction.apply()中封装了L2获取缓存的逻辑，所以此处只需要调用level1Cache.get(key, valueLoader)
+            value = level1Cache.get(key, valueLoader);
+        }
+        this.trace(key, TraceOp.GET, value);
+        return value;
+    }
+
+    /**
+     * 获取缓存项，通过{@code valueLoader}加载时为其打上标签
+     * 注：在 valueLoader 执行的线程中打标签，异步刷新时同样生效；
+     * 加载时缓存项尚未写入一级缓存，旧缓存项异步的淘汰通知可能移除刚打的标签，所以写入后在本线程中再打一次
+     */
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader, String... tags) {
+        if (null == valueLoader || null == tags || tags.length == 0) {
+            return this.get(key, valueLoader);
+        }
+        TagIndex tagIndex = level1Cache.getTagIndex();
+        boolean[] loaded = new boolean[1];
+        T result = this.get(key, () -> {
+            T value = valueLoader.call();
+            lowerCache.tag(key, tags);
+            if (null != tagIndex) {
+                tagIndex.add(key, tags);
+            }
+            loaded[0] = true;
+            return value;
+        });
+        if (loaded[0] && null != tagIndex) {
+            tagIndex.add(key, tags);
+        }
+        return result;
     }
 
     @Override
     public void put(Object key, Object value) {
-        level2Cache.put(key, value);
+        lowerCache.put(key, value);
         level1Cache.put(key, value);
+        this.trace(key, TraceOp.PUT, value);
+    }
+
+    @Override
+    public void put(Object key, Object value, String... tags) {
+        lowerCache.put(key, value, tags);
+        level1Cache.put(key, value, tags);
+        this.trace(key, TraceOp.PUT, value);
+    }
+
+    /**
+     * 设置缓存项及其过期时间，一级缓存与二级缓存使用相同的过期时间
+     */
+    @Override
+    public void put(Object key, Object value, Duration ttl) {
+        lowerCache.put(key, value, ttl);
+        level1Cache.put(key, value, ttl);
+        this.trace(key, TraceOp.PUT, value);
     }
 
     @Override
     public void evict(Object key) {
         logger.debug("[CompositeCache] evict cache, cacheName={}, key={}", this.getCacheName(), key);
         // 先清除L2中缓存数据，然后清除L1中的缓存，避免短时间内如果先清除L1缓存后其他请求会再从L2里加载到L1中
-        level2Cache.evict(key);
+        lowerCache.evict(key);
         level1Cache.evict(key);
+        this.trace(key, TraceOp.EVICT, null);
     }
 
     @Override
     public void clear() {
         logger.debug("[CompositeCache] clear all cache, cacheName={}", this.getCacheName());
         // 先清除L2中缓存数据，然后清除L1中的缓存，避免短时间内如果先清除L1缓存后其他请求会再从L2里加载到L1中
-        level2Cache.clear();
+        lowerCache.clear();
         level1Cache.clear();
+        this.trace(null, TraceOp.CLEAR, null);
+    }
+
+    /**
+     * 按标签删除：先从L2中删除该标签下的key，再清除L1中的缓存项，并将L2中删除的key随一条同步消息通知其他节点
+     */
+    @Override
+    public void evictByTag(String tag) {
+        logger.debug("[CompositeCache] evict cache by tag, cacheName={}, tag={}", this.getCacheName(), tag);
+        Set<Object> keys = lowerCache.removeByTag(tag);
+        level1Cache.evictByTag(tag, keys);
+        if (null != traceRecorder && null != keys) {
+            for (Object key : keys) {
+                this.trace(key, TraceOp.EVICT, null);
+            }
+        }
+    }
+
+    /**
+     * 批量获取缓存，未命中的key通过批量加载器一次加载
+     * 注：未设置批量加载器时，只返回缓存中存在的key
+     */
+    public Map<Object, Object> getAll(Collection<Object> keys) {
+        Map<Object, Object> result = new HashMap<>();
+        Set<Object> missKeys = new LinkedHashSet<>();
+        for (Object key : keys) {
+            // 缓存的空值同样视为命中
+            Object storeValue = level1Cache.getStoreValueIfPresent(key);
+            if (null != storeValue) {
+                result.put(key, fromStoreValue(storeValue));
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (!missKeys.isEmpty()) {
+            result.putAll(this.loadAll(missKeys));
+        }
+        if (null != traceRecorder) {
+            for (Object key : keys) {
+                this.trace(key, TraceOp.GET, result.get(key));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 设置批量加载器，设置后并发的未命中在短时间窗口内合并为一次 loadAll 调用
+     */
+    public void setBatchLoader(BatchLoader<Object, Object> batchLoader) {
+        this.batchLoader = batchLoader;
+        if (null == batchLoader) {
+            this.batchLoadBatcher = null;
+            return;
+        }
+        this.batchLoadBatcher = new AutoBatcher<>(this::loadAll, composite.getBatchLoadWindowMicros(), composite.getBatchLoadMaxSize());
+    }
+
+    /**
+     * 设置按缓存项计算过期时间的函数
+     * 注：一级缓存的过期时间不超过二级缓存，避免二级缓存过期后其他节点加载到新值，本节点的一级缓存仍是旧值；一级缓存需开启 caffeine 的可变过期时间
+     */
+    public void setExpiry(CacheExpiry<Object, Object> expiry) {
+        lowerCache.setExpiry(expiry);
+        if (!(level1Cache instanceof CaffeineCache)) {
+            return;
+        }
+        if (null == expiry) {
+            ((CaffeineCache) level1Cache).setExpiry(null);
+            return;
+        }
+        long l2ExpireTime = lowerCache.getExpireTime();
+        ((CaffeineCache) level1Cache).setExpiry((key, value, expireTime) ->
+                minExpireTime(expiry.expireAfterWrite(key, value, expireTime), expiry.expireAfterWrite(key, value, l2ExpireTime)));
+    }
+
+    /**
+     * 取较小的过期时间，小于等于0表示不过期
+     */
+    private static long minExpireTime(long expireTime1, long expireTime2) {
+        if (expireTime1 <= 0) {
+            return expireTime2;
+        }
+        if (expireTime2 <= 0) {
+            return expireTime1;
+        }
+        return Math.min(expireTime1, expireTime2);
+    }
+
+    private Object getByBatchLoader(Object key) {
+        // 缓存的空值同样视为命中，避免不存在的key每次都等待批量加载窗口并访问L2
+        Object storeValue = level1Cache.getStoreValueIfPresent(key);
+        if (null != storeValue) {
+            return fromStoreValue(storeValue);
+        }
+        return batchLoadBatcher.get(key);
+    }
+
+    /**
+     * 批量加载：先从L2批量获取，L2中不存在的key再通过批量加载器一次加载，加载结果批量写入L2后再写入L1
+     */
+    private Map<Object, Object> loadAll(Set<Object> keys) {
+        Map<Object, Object> result = new HashMap<>(lowerCache.batchGet(keys));
+        for (Map.Entry<Object, Object> entry : result.entrySet()) {
+            level1Cache.putLocal(entry.getKey(), entry.getValue());
+        }
+        BatchLoader<Object, Object> loader = this.batchLoader;
+        if (null == loader || result.size() == keys.size()) {
+            return result;
+        }
+        Set<Object> loadKeys = new LinkedHashSet<>(keys);
+        loadKeys.removeAll(result.keySet());
+        Map<Object, Object> loaded;
+        try {
+            loaded = loader.loadAll(loadKeys);
+        } catch (Exception ex) {
+            throw new org.springframework.cache.Cache.ValueRetrievalException(loadKeys, null, ex);
+        }
+        logger.debug("[CompositeCache] batch load, cacheName={}, keys={}, loaded={}", this.getCacheName(), loadKeys.size(),
+                null == loaded ? 0 : loaded.size());
+
+        Map<Object, Object> values = new HashMap<>();
+        for (Object key : loadKeys) {
+            Object value = null == loaded ? null : loaded.get(key);
+            // 不存在的key，允许存储空值时缓存空值，防止缓存穿透
+            if (null != value || this.isAllowNullValues()) {
+                values.put(key, value);
+            }
+        }
+        lowerCache.batchPut(values);
+        for (Map.Entry<Object, Object> entry : values.entrySet()) {
+            level1Cache.putLocal(entry.getKey(), entry.getValue());
+        }
+        // 整批只发送一条缓存同步消息，通知其他节点清理这些key
+        CacheSyncPolicy cacheSyncPolicy = level1Cache.getCacheSyncPolicy();
+        if (null != cacheSyncPolicy && !values.isEmpty()) {
+            cacheSyncPolicy.publish(new CacheMessage(this.getInstanceId(), level1Cache.getCacheType(), this.getCacheName(),
+                    null, CacheConsts.CACHE_CLEAR).setKeys(new ArrayList<>(values.keySet())));
+        }
+        result.putAll(values);
+        return result;
+    }
+
+    /**
+     * 记录访问追踪
+     */
+    private void trace(Object key, TraceOp op, Object value) {
+        if (null != traceRecorder) {
+            traceRecorder.record(this.getCacheName(), key, op, value);
+        }
     }
 
     public Level1Cache getLevel1Cache() {
@@ -108,4 +409,8 @@ public class CompositeCache extends AbstractAdaptingCache implements Cache {
     public Level2Cache getLevel2Cache() {
         return level2Cache;
     }
+
+    public List<Level1Cache> getMiddleCaches() {
+        return middleCaches;
+    }
 }
@@ -0,0 +1,51 @@
+package com.coy.l2cache.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 降级处理器
+ * <p>
+ * 本级缓存因容量淘汰缓存项时，将其写入到下一级本地缓存（如：caffeine -> offheap），避免再次访问时直接穿透到远程缓存。
+ * 注：在构建一级缓存时注册到其淘汰监听中，由 CompositeCache 在组装多级缓存时设置下一级缓存
+ *
+ * @author chenck
+ * @date 2020/7/15 10:12
+ */
+public class DemotionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DemotionHandler.class);
+
+    /**
+     * 下一级本地缓存
+     */
+    private volatile Level1Cache nextLevelCache;
+
+    public Level1Cache getNextLevelCache() {
+        return nextLevelCache;
+    }
+
+    public void setNextLevelCache(Level1Cache nextLevelCache) {
+        this.nextLevelCache = nextLevelCache;
+    }
+
+    /**
+     * 降级缓存项
+     *
+     * @param key        被淘汰的key
+     * @param storeValue 被淘汰的存储值
+     */
+    public void demote(Object key, Object storeValue) {
+        Level1Cache nextLevelCache = this.nextLevelCache;
+        if (null == nextLevelCache || null == key || null == storeValue) {
+            return;
+        }
+        try {
+            nextLevelCache.putLocal(key, storeValue);
+            logger.debug("[DemotionHandler] demote cache, cacheName={}, nextCacheType={}, key={}",
+                    nextLevelCache.getCacheName(), nextLevelCache.getCacheType(), key);
+        } catch (Exception e) {
+            logger.warn("[DemotionHandler] demote cache error, cacheName=" + nextLevelCache.getCacheName() + ", key=" + key, e);
+        }
+    }
+}
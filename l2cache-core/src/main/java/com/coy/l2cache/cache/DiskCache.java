@@ -0,0 +1,169 @@
+package com.coy.l2cache.cache;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.disk.DiskStore;
+import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.schedule.RefreshSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.SerializationUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 磁盘缓存
+ * <p>
+ * 基于内存映射的追加写段文件实现的本地持久化二级缓存，适用于没有redis的单节点部署，
+ * 一级缓存未命中时从本地磁盘获取，无网络IO，且应用重启后缓存仍然有效。
+ * <p>
+ * 注：数据仅保存在本节点，多节点部署时各节点的磁盘缓存相互独立
+ *
+ * @author chenck
+ * @date 2020/7/16 11:02
+ * @see DiskStore
+ */
+public class DiskCache extends AbstractAdaptingCache implements Level2Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+    /**
+     * disk config
+     */
+    private final CacheConfig.Disk disk;
+    /**
+     * 磁盘存储
+     */
+    private final DiskStore diskStore;
+    /**
+     * 正在加载的key，保证同一个key同一时刻只有一个线程加载数据，其他线程等待加载结果
+     */
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loadingFutures = new ConcurrentHashMap<>();
+
+    public DiskCache(String cacheName, CacheConfig cacheConfig, DiskStore diskStore) {
+        super(cacheName, cacheConfig);
+        this.disk = cacheConfig.getDisk();
+        this.diskStore = diskStore;
+
+        // 定期压缩段文件
+        RefreshSupport.getInstance(this.disk.getRefreshPoolSize())
+                .scheduleWithFixedDelay(this::compact, this.disk.getCompactionPeriod(),
+                        this.disk.getCompactionPeriod(), TimeUnit.SECONDS);
+    }
+
+    @Override
+    public long getExpireTime() {
+        return disk.getExpireTime();
+    }
+
+    @Override
+    public Object buildKey(Object key) {
+        return key;
+    }
+
+    @Override
+    public String getCacheType() {
+        return CacheType.DISK.name().toLowerCase();
+    }
+
+    @Override
+    public DiskStore getActualCache() {
+        return this.diskStore;
+    }
+
+    @Override
+    public Object get(Object key) {
+        byte[] bytes = diskStore.get(buildKey(key));
+        if (null == bytes) {
+            return null;
+        }
+        Object value = SerializationUtils.deserialize(bytes);
+        logger.debug("[DiskCache] get cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+        return fromStoreValue(value);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        byte[] bytes = diskStore.get(buildKey(key));
+        if (null != bytes) {
+            return (T) fromStoreValue(SerializationUtils.deserialize(bytes));
+        }
+        if (null == valueLoader) {
+            logger.debug("[DiskCache] get(key, callable) callable is null, return null, cacheName={}, key={}", this.getCacheName(), key);
+            return null;
+        }
+        // 同一个key同一时刻只有一个线程加载数据
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadingFutures.putIfAbsent(key, future);
+        if (null != loading) {
+            try {
+                return (T) fromStoreValue(loading.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            Object value = valueLoader.call();
+            logger.debug("[DiskCache] load data from target method, cacheName={}, key={}", this.getCacheName(), key);
+            this.put(key, value);
+            future.complete(toStoreValue(value));
+            return (T) value;
+        } catch (Exception ex) {
+            RuntimeException exception = new org.springframework.cache.Cache.ValueRetrievalException(key, valueLoader, ex);
+            future.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            loadingFutures.remove(key, future);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (!isAllowNullValues() && value == null) {
+            diskStore.remove(buildKey(key));
+            return;
+        }
+        Object storeValue = toStoreValue(value);
+        byte[] bytes;
+        try {
+            bytes = SerializationUtils.serialize(storeValue);
+        } catch (IllegalArgumentException e) {
+            logger.warn("[DiskCache] value can't be serialized, not cached, cacheName={}, key={}, valueClass={}",
+                    this.getCacheName(), key, storeValue.getClass().getName());
+            diskStore.remove(buildKey(key));
+            return;
+        }
+        if (!diskStore.put(buildKey(key), bytes)) {
+            logger.warn("[DiskCache] value is larger than segment file, not cached, cacheName={}, key={}, bytes={}",
+                    this.getCacheName(), key, bytes.length);
+            diskStore.remove(buildKey(key));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        logger.debug("[DiskCache] evict cache, cacheName={}, key={}", this.getCacheName(), key);
+        diskStore.remove(buildKey(key));
+    }
+
+    @Override
+    public void clear() {
+        logger.debug("[DiskCache] clear all cache, cacheName={}", this.getCacheName());
+        diskStore.clear();
+    }
+
+    private void compact() {
+        try {
+            diskStore.compact();
+        } catch (Exception e) {
+            logger.error("[DiskCache] compact error, cacheName={}", this.getCacheName(), e);
+        }
+    }
+}
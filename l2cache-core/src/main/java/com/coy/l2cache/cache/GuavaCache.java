@@ -14,9 +14,11 @@ import com.google.common.cache.LoadingCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Guava Cache
@@ -39,6 +41,10 @@ public class GuavaCache extends AbstractAdaptingCache implements Level1Cache {
      * 缓存同步策略
      */
     private final CacheSyncPolicy cacheSyncPolicy;
+    /**
+     * 清除次数，清除前递增
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
     /**
      * L1 Guava Cache
      */
@@ -126,15 +132,44 @@ public class GuavaCache extends AbstractAdaptingCache implements Level1Cache {
 
     @Override
     public void put(Object key, Object value) {
+        this.interest(key);
         guavaCache.put(key, toStoreValue(value));
         if (null != cacheSyncPolicy) {
             cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_REFRESH));
         }
     }
 
+    @Override
+    public Object getIfPresent(Object key) {
+        return fromStoreValue(this.guavaCache.getIfPresent(key));
+    }
+
+    @Override
+    public Object getStoreValueIfPresent(Object key) {
+        return this.guavaCache.getIfPresent(key);
+    }
+
+    @Override
+    public void putLocal(Object key, Object value) {
+        this.interest(key);
+        guavaCache.put(key, toStoreValue(value));
+    }
+
+    @Override
+    public boolean putLocalIfAbsent(Object key, Object value) {
+        this.interest(key);
+        return null == guavaCache.asMap().putIfAbsent(key, toStoreValue(value));
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
     @Override
     public void evict(Object key) {
         logger.debug("GuavaCache evict cache, cacheName={}, key={}", this.getCacheName(), key);
+        invalidationCount.incrementAndGet();
         guavaCache.invalidate(key);
         if (null != cacheSyncPolicy) {
             cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_CLEAR));
@@ -144,15 +179,22 @@ public class GuavaCache extends AbstractAdaptingCache implements Level1Cache {
     @Override
     public void clear() {
         logger.debug("GuavaCache clear cache, cacheName={}", this.getCacheName());
+        invalidationCount.incrementAndGet();
         guavaCache.invalidateAll();
         if (null != cacheSyncPolicy) {
             cacheSyncPolicy.publish(createMessage(null, CacheConsts.CACHE_CLEAR));
         }
     }
 
+    @Override
+    public Collection<Object> localKeys() {
+        return guavaCache.asMap().keySet();
+    }
+
     @Override
     public void clearLocalCache(Object key) {
         logger.info("GuavaCache clear local cache, cacheName={}, key={}", this.getCacheName(), key);
+        invalidationCount.incrementAndGet();
         if (key == null) {
             guavaCache.invalidateAll();
         } else {
@@ -4,6 +4,14 @@ import com.coy.l2cache.Cache;
 import com.coy.l2cache.load.CacheLoader;
 import com.coy.l2cache.load.LoadFunction;
 import com.coy.l2cache.CacheSyncPolicy;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.sync.CacheMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * 一级缓存
@@ -34,11 +42,148 @@ public interface Level1Cache extends Cache {
      */
     boolean isLoadingCache();
 
+    /**
+     * 获取本地已存在的缓存项，不触发加载
+     * 注：用于多级组合缓存中逐级查找本地缓存
+     */
+    Object getIfPresent(Object key);
+
+    /**
+     * 获取本地已存在的缓存项的存储值，不触发加载
+     * 注：缓存的空值返回 NullValue，用于区分未命中和缓存的空值
+     */
+    Object getStoreValueIfPresent(Object key);
+
+    /**
+     * 设置本地缓存项，不发送缓存同步消息
+     * 注：用于多级组合缓存中缓存项在各级缓存之间的提升和降级，缓存项本身未发生变更，无需通知其他节点
+     */
+    void putLocal(Object key, Object value);
+
+    /**
+     * key不存在时设置本地缓存项，不发送缓存同步消息
+     * 注：用于预热，不覆盖请求已写入的新值
+     *
+     * @return true 表示已写入
+     */
+    default boolean putLocalIfAbsent(Object key, Object value) {
+        if (null != this.getStoreValueIfPresent(key)) {
+            return false;
+        }
+        this.putLocal(key, value);
+        return true;
+    }
+
+    /**
+     * 本地缓存的清除次数（清除前递增），不支持时返回0
+     * 注：用于预热，获取二级缓存的值前后清除次数发生了变化时，写入的值可能是清除前的旧值
+     */
+    default long getInvalidationCount() {
+        return 0;
+    }
+
+    /**
+     * 获取降级处理器，不支持降级时返回null
+     * 注：多级组合缓存通过降级处理器，将本级缓存因容量淘汰的缓存项写入到下一级本地缓存
+     */
+    default DemotionHandler getDemotionHandler() {
+        return null;
+    }
+
+    /**
+     * 获取本地缓存中的所有key，不支持时返回null
+     * 注：用于缓存同步时向其他节点通告本节点缓存了哪些key
+     */
+    default Collection<Object> localKeys() {
+        return null;
+    }
+
+    /**
+     * 本地缓存写入了key，通知缓存同步策略
+     */
+    default void interest(Object key) {
+        CacheSyncPolicy cacheSyncPolicy = this.getCacheSyncPolicy();
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.interest(this.getCacheName(), key);
+        }
+    }
+
     /**
      * 清理本地缓存
      */
     void clearLocalCache(Object key);
 
+    /**
+     * 获取本地缓存的标签索引，不支持时返回null
+     */
+    default TagIndex getTagIndex() {
+        return null;
+    }
+
+    /**
+     * 注：先写入缓存项再打标签，避免旧缓存项异步的淘汰通知移除新的标签
+     */
+    @Override
+    default void put(Object key, Object value, String... tags) {
+        this.put(key, value);
+        TagIndex tagIndex = this.getTagIndex();
+        if (null != tagIndex) {
+            tagIndex.add(key, tags);
+        }
+    }
+
+    /**
+     * 设置指定key的缓存项及其过期时间
+     * 注：默认不支持单个缓存项的过期时间，不在本地缓存中缓存该项，只清除旧值并通知其他节点清除，避免本地缓存的存活时间超过指定的过期时间
+     */
+    @Override
+    default void put(Object key, Object value, Duration ttl) {
+        this.evict(key);
+    }
+
+    @Override
+    default void evictByTag(String tag) {
+        this.evictByTag(tag, null);
+    }
+
+    /**
+     * 删除指定标签的缓存项，并发送一条按标签清理的缓存同步消息
+     *
+     * @param keys 二级缓存中该标签下的key，随消息一起发送给其他节点，为null表示没有二级缓存
+     */
+    default void evictByTag(String tag, Collection<Object> keys) {
+        this.clearLocalCacheByTag(tag, keys);
+        CacheSyncPolicy cacheSyncPolicy = this.getCacheSyncPolicy();
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.publish(new CacheMessage(this.getInstanceId(), this.getCacheType(), this.getCacheName(), tag,
+                    CacheConsts.CACHE_EVICT_TAG).setKeys(null == keys ? null : new ArrayList<>(keys)));
+        }
+    }
+
+    /**
+     * 清理本地缓存中指定标签的缓存项：标签索引中的key及二级缓存中该标签下的key
+     * 注：既没有标签索引，也没有二级缓存的key时，无法确定需要清理的key，清理所有本地缓存
+     *
+     * @param keys 二级缓存中该标签下的key，为null表示没有二级缓存
+     */
+    default void clearLocalCacheByTag(String tag, Collection<Object> keys) {
+        TagIndex tagIndex = this.getTagIndex();
+        if (null == tagIndex && null == keys) {
+            this.clearLocalCache(null);
+            return;
+        }
+        Set<Object> evictKeys = new HashSet<>();
+        if (null != keys) {
+            evictKeys.addAll(keys);
+        }
+        if (null != tagIndex) {
+            evictKeys.addAll(tagIndex.removeTag(tag));
+        }
+        for (Object key : evictKeys) {
+            this.clearLocalCache(key);
+        }
+    }
+
     /**
      * 异步加载{@code key}的新值
      * 当新值加载时，get操作将继续返回原值（如果有），除非将其删除;如果新值加载成功，则替换缓存中的前一个值。
@@ -1,6 +1,13 @@
 package com.coy.l2cache.cache;
 
 import com.coy.l2cache.Cache;
+import com.coy.l2cache.cache.expire.CacheExpiry;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 二级缓存
@@ -19,4 +26,73 @@ public interface Level2Cache extends Cache {
      * 构建key
      */
     Object buildKey(Object key);
+
+    /**
+     * 批量获取缓存，返回结果中只包含存在的key（值为null表示缓存的是空值）
+     * 注：默认逐个获取，支持批量操作的二级缓存（如：redis）应覆盖该方法，一次网络交互完成
+     */
+    default Map<Object, Object> batchGet(Collection<Object> keys) {
+        Map<Object, Object> result = new HashMap<>();
+        for (Object key : keys) {
+            Object value = this.get(key);
+            if (null != value) {
+                result.put(key, value);
+            }
+            // 注：get 无法区分缓存的空值和不存在，缓存的空值也不会放入结果中
+        }
+        return result;
+    }
+
+    /**
+     * 分批遍历缓存中的key，返回null表示不支持
+     * 注：用于预热一级缓存，遍历过程中缓存项可能被修改，不保证一致的快照
+     *
+     * @param batchSize 每次从二级缓存获取的key数量
+     */
+    default Iterator<Object> scanKeys(int batchSize) {
+        return null;
+    }
+
+    /**
+     * 批量设置缓存
+     * 注：默认逐个设置，支持批量操作的二级缓存（如：redis）应覆盖该方法，一次网络交互完成
+     */
+    default void batchPut(Map<Object, Object> values) {
+        for (Map.Entry<Object, Object> entry : values.entrySet()) {
+            this.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    default void put(Object key, Object value, String... tags) {
+        this.put(key, value);
+        this.tag(key, tags);
+    }
+
+    /**
+     * 设置按缓存项计算过期时间的函数
+     * 注：默认忽略
+     */
+    default void setExpiry(CacheExpiry<Object, Object> expiry) {
+    }
+
+    /**
+     * 为已存在的缓存项打上标签，记录到二级缓存的标签索引中
+     */
+    default void tag(Object key, String... tags) {
+        throw new UnsupportedOperationException("cache not support tag, cacheType=" + getCacheType() + ", cacheName=" + getCacheName());
+    }
+
+    @Override
+    default void evictByTag(String tag) {
+        this.removeByTag(tag);
+    }
+
+    /**
+     * 删除指定标签的所有缓存项，并返回被删除的key，返回null表示没有二级缓存（如：none）
+     * 注：返回的key用于通知其他节点清除一级缓存中从二级缓存加载的缓存项
+     */
+    default Set<Object> removeByTag(String tag) {
+        throw new UnsupportedOperationException("cache not support tag, cacheType=" + getCacheType() + ", cacheName=" + getCacheName());
+    }
 }
@@ -5,6 +5,7 @@ import com.coy.l2cache.consts.CacheType;
 import com.coy.l2cache.load.CacheLoader;
 import com.coy.l2cache.CacheSyncPolicy;
 
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 /**
@@ -68,6 +69,31 @@ public class NoneCache implements Level1Cache, Level2Cache {
 
     }
 
+    @Override
+    public void put(Object key, Object value, String... tags) {
+
+    }
+
+    @Override
+    public void tag(Object key, String... tags) {
+
+    }
+
+    @Override
+    public Object getIfPresent(Object key) {
+        return null;
+    }
+
+    @Override
+    public Object getStoreValueIfPresent(Object key) {
+        return null;
+    }
+
+    @Override
+    public void putLocal(Object key, Object value) {
+
+    }
+
     @Override
     public void evict(Object key) {
 
@@ -78,6 +104,19 @@ public class NoneCache implements Level1Cache, Level2Cache {
 
     }
 
+    @Override
+    public void evictByTag(String tag) {
+
+    }
+
+    /**
+     * 作为二级缓存时表示没有二级缓存，返回null
+     */
+    @Override
+    public Set<Object> removeByTag(String tag) {
+        return null;
+    }
+
     @Override
     public void clearLocalCache(Object key) {
 
@@ -0,0 +1,321 @@
+package com.coy.l2cache.cache;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.CacheSyncPolicy;
+import com.coy.l2cache.cache.offheap.OffHeapStore;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.load.CacheLoader;
+import com.coy.l2cache.load.LoadFunction;
+import com.coy.l2cache.schedule.RefreshExpiredCacheTask;
+import com.coy.l2cache.schedule.RefreshSupport;
+import com.coy.l2cache.sync.CacheMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.SerializationUtils;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 堆外缓存
+ * <p>
+ * 缓存值序列化后存储在堆外内存中，可作为一级缓存，也可作为组合缓存中堆内缓存（如：caffeine）与远程缓存（如：redis）之间的本地缓存层。
+ *
+ * @author chenck
+ * @date 2020/7/14 11:05
+ * @see OffHeapStore
+ */
+public class OffHeapCache extends AbstractAdaptingCache implements Level1Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapCache.class);
+
+    /**
+     * offHeap config
+     */
+    private final CacheConfig.OffHeap offHeap;
+    /**
+     * 缓存加载器
+     */
+    private final CacheLoader cacheLoader;
+    /**
+     * 缓存同步策略
+     */
+    private final CacheSyncPolicy cacheSyncPolicy;
+    /**
+     * 堆外存储
+     */
+    private final OffHeapStore offHeapStore;
+    /**
+     * 正在加载的key，保证同一个key同一时刻只有一个线程加载数据，其他线程等待加载结果
+     */
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loadingFutures = new ConcurrentHashMap<>();
+
+    public OffHeapCache(String cacheName, CacheConfig cacheConfig, CacheLoader cacheLoader, CacheSyncPolicy cacheSyncPolicy,
+                        OffHeapStore offHeapStore) {
+        super(cacheName, cacheConfig);
+        this.offHeap = cacheConfig.getOffHeap();
+        this.cacheLoader = cacheLoader;
+        this.cacheSyncPolicy = cacheSyncPolicy;
+        this.offHeapStore = offHeapStore;
+
+        if (this.offHeap.isAutoRefreshExpireCache()) {
+            // 定期刷新过期的缓存
+            RefreshSupport.getInstance(this.offHeap.getRefreshPoolSize())
+                    .scheduleWithFixedDelay(new RefreshExpiredCacheTask(this), 5,
+                            this.offHeap.getRefreshPeriod(), TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public String getCacheType() {
+        return CacheType.OFFHEAP.name().toLowerCase();
+    }
+
+    @Override
+    public OffHeapStore getActualCache() {
+        return this.offHeapStore;
+    }
+
+    @Override
+    public CacheSyncPolicy getCacheSyncPolicy() {
+        return this.cacheSyncPolicy;
+    }
+
+    @Override
+    public CacheLoader getCacheLoader() {
+        return this.cacheLoader;
+    }
+
+    @Override
+    public boolean isLoadingCache() {
+        return null != this.cacheLoader;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = this.getStoreValue(key);
+        if (null != value || !isLoadingCache()) {
+            return fromStoreValue(value);
+        }
+        // 未命中，通过CacheLoader加载（先从L2获取，L2无缓存再执行目标方法）
+        value = this.load(key, this::loadByCacheLoader);
+        logger.debug("[OffHeapCache] load cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+        return fromStoreValue(value);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (isLoadingCache()) {
+            // 将Callable设置到自定义CacheLoader中，以便在load()中执行具体的业务方法来加载数据
+            this.cacheLoader.addValueLoader(key, valueLoader);
+
+            Object value = this.get(key);
+            return (T) fromStoreValue(value);
+        }
+
+        Object value = this.getStoreValue(key);
+        if (null != value) {
+            return (T) fromStoreValue(value);
+        }
+        value = this.load(key, new LoadFunction(this.getInstanceId(), this.getCacheType(), this.getCacheName(),
+                null, this.getCacheSyncPolicy(), valueLoader));
+        logger.debug("[OffHeapCache] Cache.get(key, callable) cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public Object getIfPresent(Object key) {
+        return fromStoreValue(this.getStoreValue(key));
+    }
+
+    @Override
+    public Object getStoreValueIfPresent(Object key) {
+        return this.getStoreValue(key);
+    }
+
+    @Override
+    public void putLocal(Object key, Object value) {
+        this.interest(key);
+        this.putStoreValue(key, toStoreValue(value));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        this.interest(key);
+        this.putStoreValue(key, toStoreValue(value));
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_REFRESH));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        logger.debug("[OffHeapCache] evict cache, cacheName={}, key={}", this.getCacheName(), key);
+        offHeapStore.remove(key);
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.publish(createMessage(key, CacheConsts.CACHE_CLEAR));
+        }
+    }
+
+    @Override
+    public void clear() {
+        logger.debug("[OffHeapCache] clear cache, cacheName={}", this.getCacheName());
+        offHeapStore.clear();
+        if (null != cacheSyncPolicy) {
+            cacheSyncPolicy.publish(createMessage(null, CacheConsts.CACHE_CLEAR));
+        }
+    }
+
+    @Override
+    public Collection<Object> localKeys() {
+        return offHeapStore.keys();
+    }
+
+    @Override
+    public void clearLocalCache(Object key) {
+        logger.info("[OffHeapCache] clear local cache, cacheName={}, key={}", this.getCacheName(), key);
+        if (key == null) {
+            offHeapStore.clear();
+        } else {
+            offHeapStore.remove(key);
+        }
+    }
+
+    @Override
+    public void refresh(Object key) {
+        if (isLoadingCache()) {
+            logger.debug("[OffHeapCache] refresh cache, cacheName={}, key={}", this.getCacheName(), key);
+            this.reload(key);
+        }
+    }
+
+    @Override
+    public void refreshAll() {
+        if (isLoadingCache()) {
+            for (Object key : offHeapStore.keys()) {
+                logger.debug("[OffHeapCache] refreshAll cache, cacheName={}, key={}", this.getCacheName(), key);
+                this.reload(key);
+            }
+        }
+    }
+
+    @Override
+    public void refreshExpireCache(Object key) {
+        if (isLoadingCache() && offHeapStore.isExpired(key)) {
+            logger.debug("[OffHeapCache] refreshExpireCache, cacheName={}, key={}", this.getCacheName(), key);
+            this.reload(key);
+        }
+    }
+
+    @Override
+    public void refreshAllExpireCache() {
+        if (isLoadingCache()) {
+            for (Object key : offHeapStore.keys()) {
+                if (offHeapStore.isExpired(key)) {
+                    logger.debug("[OffHeapCache] refreshAllExpireCache, cacheName={}, key={}", this.getCacheName(), key);
+                    this.reload(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 从堆外获取存储值，未命中返回null
+     */
+    private Object getStoreValue(Object key) {
+        byte[] bytes = offHeapStore.get(key);
+        if (null == bytes) {
+            return null;
+        }
+        return SerializationUtils.deserialize(bytes);
+    }
+
+    /**
+     * 写入堆外，不发送缓存同步消息
+     */
+    private void putStoreValue(Object key, Object storeValue) {
+        byte[] bytes;
+        try {
+            bytes = SerializationUtils.serialize(storeValue);
+        } catch (IllegalArgumentException e) {
+            logger.warn("[OffHeapCache] value can't be serialized, not cached, cacheName={}, key={}, valueClass={}",
+                    this.getCacheName(), key, storeValue.getClass().getName());
+            offHeapStore.remove(key);
+            return;
+        }
+        if (!offHeapStore.put(key, bytes)) {
+            logger.warn("[OffHeapCache] value is larger than segment capacity, not cached, cacheName={}, key={}, bytes={}",
+                    this.getCacheName(), key, bytes.length);
+            offHeapStore.remove(key);
+        }
+    }
+
+    /**
+     * 加载数据并写入堆外，同一个key同一时刻只有一个线程执行加载
+     */
+    private Object load(Object key, Function<Object, Object> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadingFutures.putIfAbsent(key, future);
+        if (null != loading) {
+            try {
+                return loading.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            Object value = loader.apply(key);
+            if (null != value) {
+                this.putStoreValue(key, toStoreValue(value));
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingFutures.remove(key, future);
+        }
+    }
+
+    /**
+     * 重新加载数据，加载结果为null时删除缓存项
+     */
+    private void reload(Object key) {
+        Object value = this.loadByCacheLoader(key);
+        if (null == value) {
+            offHeapStore.remove(key);
+            return;
+        }
+        this.putStoreValue(key, toStoreValue(value));
+    }
+
+    private Object loadByCacheLoader(Object key) {
+        try {
+            return this.cacheLoader.load(key);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("[OffHeapCache] load cache error, cacheName=" + this.getCacheName() + ", key=" + key, e);
+        }
+    }
+
+    private CacheMessage createMessage(Object key, String optType) {
+        return new CacheMessage()
+                .setInstanceId(this.getInstanceId())
+                .setCacheType(this.getCacheType())
+                .setCacheName(this.getCacheName())
+                .setKey(key)
+                .setOptType(optType);
+    }
+}
@@ -1,16 +1,38 @@
 package com.coy.l2cache.cache;
 
 import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.batch.AutoBatcher;
+import com.coy.l2cache.cache.expire.CacheExpiry;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.load.EarlyRefreshPolicy;
+import com.coy.l2cache.load.ExpiringValue;
+import com.coy.l2cache.schedule.RefreshSupport;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RFuture;
 import org.redisson.api.RLock;
 import org.redisson.api.RMap;
 import org.redisson.api.RMapCache;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Redisson Cache
@@ -24,6 +46,14 @@ import java.util.concurrent.TimeUnit;
  * 一旦该次清理数量少于上次清理数量，时间间隔将增加1.5倍。
  * <p>
  * 如果应用被关掉，则redis中的数据一直存在，不会被redis淘汰汰。
+ * <p>
+ * 开启按代清除（generationClear）时，每个缓存在redis中维护一个代号，第N代的缓存项存储在名为 cacheName:gN 的hash中（第0代为 cacheName），
+ * clear 时只递增代号并切换到新的hash，旧hash通过 UNLINK 由redis在后台线程中释放，避免对大hash执行阻塞的 DEL/HDEL。
+ * 其他节点定期获取代号，发现变更后切换到新的hash，并再次 UNLINK 旧hash，清除切换前写入旧hash的缓存项。
+ * <p>
+ * 标签索引：每个标签对应一个set（hash名称:tag:标签）记录该标签下的key，hash名称:tags 记录所有的标签，用于 clear 时一起删除；
+ * 设置了过期时间时，标签索引在最近一次打标签后 2 * 最大过期时间 过期，最大过期时间取 expireTime 与写入过的缓存项的过期时间
+ * （CacheExpiry、put 时指定的过期时间）中的最大值，写入过不过期的缓存项时标签索引不过期。
  *
  * @author chenck
  * @date 2020/7/3 13:59
@@ -32,29 +62,91 @@ public class RedissonCache extends AbstractAdaptingCache implements Level2Cache
 
     private static final Logger logger = LoggerFactory.getLogger(RedissonCache.class);
 
+    /**
+     * 按标签删除时，每批从标签索引中取出的key数量
+     */
+    private static final int TAG_BATCH_SIZE = 500;
+
     /**
      * redis config
      */
     private final CacheConfig.Redis redis;
 
     /**
-     * L2 Redisson MapCache 含元素淘汰功能
-     * 注：保留元素的插入顺序
+     * L2 Redisson Map，为 RMapCache 时含元素淘汰功能
+     * 注：保留元素的插入顺序；开启按代清除时为当前代的hash
      */
-    private RMapCache<Object, Object> mapCache;
+    private volatile RMap<Object, Object> map;
 
     /**
-     * L2 Redisson Map 无元素淘汰功能
-     * 注：保留元素的插入顺序
+     * 用于创建各代的hash及标签索引，为null时不支持按代清除和标签
      */
-    private final RMap<Object, Object> map;
+    private final RedissonClient redissonClient;
+
+    /**
+     * 缓存的代号，未开启按代清除时为null
+     */
+    private final RAtomicLong generation;
+
+    /**
+     * 本节点当前使用的代号
+     */
+    private volatile long currentGeneration;
+
+    /**
+     * 合并并发的单key读取，未开启时为null
+     */
+    private final AutoBatcher<Object, Object> getBatcher;
+
+    /**
+     * 概率提前刷新策略
+     */
+    private final EarlyRefreshPolicy earlyRefreshPolicy;
+
+    /**
+     * 按缓存项计算过期时间，为null时使用配置的过期时间
+     */
+    private volatile CacheExpiry<Object, Object> expiry;
+
+    /**
+     * 写入过的缓存项的最大过期时间(ms)，用于计算标签索引的过期时间，小于0表示写入过不过期的缓存项
+     */
+    private final AtomicLong maxEntryExpireTime = new AtomicLong();
 
     public RedissonCache(String cacheName, CacheConfig cacheConfig, RMap<Object, Object> map) {
+        this(cacheName, cacheConfig, map, null);
+    }
+
+    /**
+     * @param map            第0代的hash
+     * @param redissonClient 用于创建各代的hash及标签索引，为null时不支持按代清除和标签
+     */
+    public RedissonCache(String cacheName, CacheConfig cacheConfig, RMap<Object, Object> map, RedissonClient redissonClient) {
         super(cacheName, cacheConfig);
-        this.redis = cacheConfig.getRedis();
+        this.redis = cacheConfig.getRedis(cacheName);
         this.map = map;
-        if (map instanceof RMapCache) {
-            this.mapCache = (RMapCache<Object, Object>) map;
+        if (this.redis.isBatchGet()) {
+            this.getBatcher = new AutoBatcher<>(keys -> this.map.getAll(keys), this.redis.getBatchWindowMicros(), this.redis.getBatchMaxSize());
+        } else {
+            this.getBatcher = null;
+        }
+        this.earlyRefreshPolicy = new EarlyRefreshPolicy(cacheName, this.redis.getEarlyRefreshBeta(), this.redis.getExpireJitterRatio(),
+                RefreshSupport.getInstance(cacheConfig.getCaffeine().getRefreshPoolSize()));
+        this.redissonClient = redissonClient;
+
+        if (this.redis.isGenerationClear() && null != redissonClient) {
+            this.generation = redissonClient.getAtomicLong(cacheName + ":generation");
+            this.currentGeneration = this.generation.get();
+            if (this.currentGeneration != 0) {
+                this.map = this.createMap(this.currentGeneration);
+            }
+            // 定期获取代号，感知其他节点的清除
+            RefreshSupport.getInstance(cacheConfig.getCaffeine().getRefreshPoolSize())
+                    .scheduleWithFixedDelay(this::refreshGeneration, this.redis.getGenerationCheckPeriod(),
+                            this.redis.getGenerationCheckPeriod(), TimeUnit.MILLISECONDS);
+            logger.info("[RedisCache] generation clear enabled, cacheName={}, generation={}", cacheName, this.currentGeneration);
+        } else {
+            this.generation = null;
         }
     }
 
@@ -78,13 +170,68 @@ public class RedissonCache extends AbstractAdaptingCache implements Level2Cache
         return this.map;
     }
 
+    /**
+     * 本节点当前使用的代号，未开启按代清除时为0
+     */
+    public long getCurrentGeneration() {
+        return currentGeneration;
+    }
+
+    /**
+     * 含元素淘汰功能时返回 RMapCache，否则返回null
+     */
+    private RMapCache<Object, Object> mapCache(RMap<Object, Object> map) {
+        return map instanceof RMapCache ? (RMapCache<Object, Object>) map : null;
+    }
+
     @Override
     public Object get(Object key) {
-        Object value = map.get(buildKey(key));
+        Object value = this.getStoreValue(key);
         logger.debug("[RedisCache] get cache, cacheName={}, key={}, value={}", this.getCacheName(), key, value);
         return fromStoreValue(value);
     }
 
+    /**
+     * 获取存储值，开启概率提前刷新时为 ExpiringValue
+     */
+    private Object getStoreValue(Object key) {
+        return null == getBatcher ? map.get(buildKey(key)) : getBatcher.get(buildKey(key));
+    }
+
+    @Override
+    public Object fromStoreValue(Object storeValue) {
+        if (storeValue instanceof ExpiringValue) {
+            storeValue = ((ExpiringValue) storeValue).getValue();
+        }
+        return Level2Cache.super.fromStoreValue(storeValue);
+    }
+
+    @Override
+    public Map<Object, Object> batchGet(Collection<Object> keys) {
+        Set<Object> cacheKeys = new LinkedHashSet<>();
+        for (Object key : keys) {
+            cacheKeys.add(buildKey(key));
+        }
+        Map<Object, Object> values = map.getAll(cacheKeys);
+        logger.debug("[RedisCache] batchGet cache, cacheName={}, keys={}, hits={}", this.getCacheName(), keys.size(), values.size());
+        Map<Object, Object> result = new HashMap<>();
+        for (Object key : keys) {
+            Object value = values.get(buildKey(key));
+            if (null != value) {
+                result.put(key, fromStoreValue(value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过 HSCAN 分批遍历key
+     */
+    @Override
+    public Iterator<Object> scanKeys(int batchSize) {
+        return map.keySet(batchSize).iterator();
+    }
+
     @Override
     public <T> T get(Object key, Class<T> type) {
         Object value = this.get(key);
@@ -99,23 +246,27 @@ public class RedissonCache extends AbstractAdaptingCache implements Level2Cache
 
     @Override
     public <T> T get(Object key, Callable<T> valueLoader) {
-        Object value = this.get(key);
-        if (value != null) {
-            return (T) value;
+        Object storeValue = this.getStoreValue(key);
+        if (storeValue != null) {
+            this.earlyRefreshIfNecessary(key, storeValue, valueLoader);
+            return (T) fromStoreValue(storeValue);
         }
+        Object value;
         if (null == valueLoader) {
             logger.debug("[RedisCache] get(key, callable) callable is null, return null, cacheName={}, key={}", this.getCacheName(), key);
             return null;
         }
         // 增加分布式锁，集群环境下同一时刻只会有一个加载数据的线程，解决ABA的问题，保证一级缓存二级缓存数据的一致性
+        RMap<Object, Object> map = this.map;
         RLock lock = map.getLock(key);
         lock.lock();
         try {
             value = map.get(key);
             if (value == null) {
                 logger.debug("[RedisCache] rlock, load data from target method, cacheName={}, key={}", this.getCacheName(), key);
+                long start = System.nanoTime();
                 value = valueLoader.call();
-                this.put(key, value);
+                this.put(key, value, System.nanoTime() - start);
             }
         } catch (Exception ex) {
             RuntimeException exception;
@@ -135,16 +286,159 @@ public class RedissonCache extends AbstractAdaptingCache implements Level2Cache
 
     @Override
     public void put(Object key, Object value) {
+        this.put(key, value, 0);
+    }
+
+    /**
+     * 设置缓存
+     *
+     * @param loadNanos 加载耗时(纳秒)，开启概率提前刷新时与缓存值一起存储，小于等于0表示未知，取该缓存的平均加载耗时
+     */
+    private void put(Object key, Object value, long loadNanos) {
+        RMap<Object, Object> map = this.map;
         if (!isAllowNullValues() && value == null) {
             map.remove(buildKey(key));
             return;
         }
 
-        value = toStoreValue(value);
+        RMapCache<Object, Object> mapCache = this.mapCache(map);
         if (mapCache != null) {
-            mapCache.fastPut(buildKey(key), value, this.getExpireTime(), TimeUnit.MILLISECONDS, redis.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+            long expireTime = this.expireTime(key, value);
+            mapCache.fastPut(buildKey(key), this.wrap(toStoreValue(value), expireTime, loadNanos), expireTime, TimeUnit.MILLISECONDS,
+                    redis.getMaxIdleTime(), TimeUnit.MILLISECONDS);
         } else {
-            map.fastPut(buildKey(key), value);
+            map.fastPut(buildKey(key), toStoreValue(value));
+        }
+        if (loadNanos > 0) {
+            earlyRefreshPolicy.recordLoadTime(loadNanos);
+        }
+    }
+
+    /**
+     * 计算缓存项的过期时间(ms)，配置了 CacheExpiry 时按缓存项计算，再增加随机抖动
+     */
+    private long expireTime(Object key, Object value) {
+        long expireTime = this.getExpireTime();
+        CacheExpiry<Object, Object> expiry = this.expiry;
+        if (null != expiry) {
+            expireTime = Math.max(0, expiry.expireAfterWrite(key, value, expireTime));
+        }
+        expireTime = earlyRefreshPolicy.jitter(expireTime);
+        this.recordEntryExpireTime(expireTime);
+        return expireTime;
+    }
+
+    /**
+     * 记录缓存项的过期时间，标签索引的过期时间不短于其中的最大值
+     */
+    private void recordEntryExpireTime(long expireTime) {
+        if (expireTime <= 0) {
+            maxEntryExpireTime.set(-1);
+            return;
+        }
+        maxEntryExpireTime.accumulateAndGet(expireTime, (prev, x) -> prev < 0 ? prev : Math.max(prev, x));
+    }
+
+    /**
+     * 设置按缓存项计算过期时间的函数
+     * 注：仅在使用 RMapCache（配置了 expireTime、maxIdleTime、maxSize 之一）时生效，RMap 不支持单个缓存项的过期时间
+     */
+    @Override
+    public void setExpiry(CacheExpiry<Object, Object> expiry) {
+        if (null == this.mapCache(this.map)) {
+            logger.warn("[RedisCache] RMap not support per entry expire time, ignore expiry, cacheName={}", this.getCacheName());
+            return;
+        }
+        this.expiry = expiry;
+    }
+
+    /**
+     * 设置指定key的缓存项及其过期时间，开启过期时间抖动时只向上抖动（一级缓存使用指定的过期时间，不能比二级缓存存活更久）
+     * 注：仅在使用 RMapCache 时生效，RMap 不支持单个缓存项的过期时间，使用 put(key, value)
+     */
+    @Override
+    public void put(Object key, Object value, Duration ttl) {
+        RMap<Object, Object> map = this.map;
+        RMapCache<Object, Object> mapCache = this.mapCache(map);
+        if (mapCache == null || !isAllowNullValues() && value == null) {
+            this.put(key, value);
+            return;
+        }
+        long expireTime = earlyRefreshPolicy.jitterUp(ttl.toMillis());
+        this.recordEntryExpireTime(expireTime);
+        mapCache.fastPut(buildKey(key), this.wrap(toStoreValue(value), expireTime, 0), expireTime, TimeUnit.MILLISECONDS,
+                redis.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 开启概率提前刷新时，将存储值与过期时间、加载耗时一起包装
+     */
+    private Object wrap(Object storeValue, long expireTime, long loadNanos) {
+        if (!earlyRefreshPolicy.isEarlyRefreshEnabled() || expireTime <= 0) {
+            return storeValue;
+        }
+        return new ExpiringValue(storeValue, System.currentTimeMillis() + expireTime,
+                loadNanos > 0 ? loadNanos : earlyRefreshPolicy.getLoadNanos());
+    }
+
+    /**
+     * 根据剩余存活时间和加载耗时，按概率提前异步执行 valueLoader 并写入缓存，当前线程仍返回旧值
+     * 注：异步执行 valueLoader 时，调用方线程中的上下文（如：事务、ThreadLocal）不可用
+     */
+    private void earlyRefreshIfNecessary(Object key, Object storeValue, Callable<?> valueLoader) {
+        if (null == valueLoader || !(storeValue instanceof ExpiringValue)) {
+            return;
+        }
+        ExpiringValue expiringValue = (ExpiringValue) storeValue;
+        if (!earlyRefreshPolicy.shouldRefresh(expiringValue.remainingNanos(), expiringValue.getLoadNanos())) {
+            return;
+        }
+        earlyRefreshPolicy.refreshAsync(key, () -> {
+            long start = System.nanoTime();
+            Object value;
+            try {
+                value = valueLoader.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            this.put(key, value, System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * 批量设置缓存
+     * 注：RMap 通过一次 HMSET 写入；RMapCache 连续发送异步写入命令后统一等待结果，多个命令在同一连接上以管道方式发送
+     */
+    @Override
+    public void batchPut(Map<Object, Object> values) {
+        RMap<Object, Object> map = this.map;
+        Map<Object, Object> storeValues = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : values.entrySet()) {
+            if (!isAllowNullValues() && entry.getValue() == null) {
+                map.fastRemove(buildKey(entry.getKey()));
+                continue;
+            }
+            storeValues.put(buildKey(entry.getKey()), toStoreValue(entry.getValue()));
+        }
+        if (storeValues.isEmpty()) {
+            return;
+        }
+        logger.debug("[RedisCache] batchPut cache, cacheName={}, size={}", this.getCacheName(), storeValues.size());
+        RMapCache<Object, Object> mapCache = this.mapCache(map);
+        if (mapCache == null) {
+            map.putAll(storeValues);
+            return;
+        }
+        List<RFuture<Boolean>> futures = new ArrayList<>(storeValues.size());
+        for (Map.Entry<Object, Object> entry : storeValues.entrySet()) {
+            long expireTime = this.expireTime(entry.getKey(), fromStoreValue(entry.getValue()));
+            futures.add(mapCache.fastPutAsync(entry.getKey(), this.wrap(entry.getValue(), expireTime, 0),
+                    expireTime, TimeUnit.MILLISECONDS, redis.getMaxIdleTime(), TimeUnit.MILLISECONDS));
+        }
+        for (RFuture<Boolean> future : futures) {
+            future.syncUninterruptibly();
         }
     }
 
@@ -155,9 +449,12 @@ public class RedissonCache extends AbstractAdaptingCache implements Level2Cache
             return this.get(key);
         }
         Object prevValue = null;
+        RMap<Object, Object> map = this.map;
+        RMapCache<Object, Object> mapCache = this.mapCache(map);
         if (mapCache != null) {
-            prevValue = mapCache.putIfAbsent(buildKey(key), toStoreValue(value), this.getExpireTime(), TimeUnit.MILLISECONDS, redis.getMaxIdleTime(),
-                    TimeUnit.MILLISECONDS);
+            long expireTime = this.expireTime(key, value);
+            prevValue = mapCache.putIfAbsent(buildKey(key), this.wrap(toStoreValue(value), expireTime, 0),
+                    expireTime, TimeUnit.MILLISECONDS, redis.getMaxIdleTime(), TimeUnit.MILLISECONDS);
         } else {
             prevValue = map.putIfAbsent(buildKey(key), toStoreValue(value));
         }
@@ -173,7 +470,202 @@ public class RedissonCache extends AbstractAdaptingCache implements Level2Cache
     @Override
     public void clear() {
         logger.debug("[RedisCache] clear all cache, cacheName={}", this.getCacheName());
-        map.clear();
+        if (null == generation) {
+            RMap<Object, Object> map = this.map;
+            map.clear();
+            if (null != redissonClient) {
+                this.unlinkAsync(map, new ArrayList<>());
+            }
+            return;
+        }
+        // 递增代号后旧hash中的缓存项立即不可见
+        this.switchGeneration(generation.incrementAndGet());
+    }
+
+    /**
+     * 获取最新的代号，其他节点清除后切换到新的hash
+     */
+    private void refreshGeneration() {
+        try {
+            long latest = generation.get();
+            if (latest != currentGeneration) {
+                this.switchGeneration(latest);
+            }
+        } catch (Exception e) {
+            logger.error("[RedisCache] refresh generation error, cacheName={}", this.getCacheName(), e);
+        }
+    }
+
+    /**
+     * 切换到指定代的hash，并在后台释放旧hash
+     */
+    private synchronized void switchGeneration(long next) {
+        if (next == currentGeneration) {
+            return;
+        }
+        RMap<Object, Object> old = this.map;
+        this.map = this.createMap(next);
+        this.currentGeneration = next;
+        logger.info("[RedisCache] switch generation, cacheName={}, generation={}, oldMap={}", this.getCacheName(), next, old.getName());
+        this.unlinkAsync(old, this.mapNames(old));
+    }
+
+    /**
+     * 创建指定代的hash，与第0代的hash类型相同
+     */
+    private RMap<Object, Object> createMap(long gen) {
+        String name = 0 == gen ? this.getCacheName() : this.getCacheName() + ":g" + gen;
+        // 与第0代的hash使用相同的编解码器
+        Codec codec = this.map.getCodec();
+        if (redis.getMaxIdleTime() == 0 && redis.getExpireTime() == 0 && redis.getMaxSize() == 0) {
+            return redissonClient.getMap(name, codec);
+        }
+        RMapCache<Object, Object> mapCache = redissonClient.getMapCache(name, codec);
+        mapCache.setMaxSize(redis.getMaxSize());
+        return mapCache;
+    }
+
+    /**
+     * hash及其关联的key
+     * 注：RMapCache 的过期时间、空闲时间、最近访问时间及配置分别存储在独立的key中，命名与 org.redisson.RedissonMapCache 保持一致
+     */
+    private List<String> mapNames(RMap<Object, Object> map) {
+        List<String> names = new ArrayList<>();
+        names.add(map.getName());
+        if (map instanceof RMapCache) {
+            names.add(prefixName("redisson__timeout__set", map.getName()));
+            names.add(prefixName("redisson__idle__set", map.getName()));
+            names.add(prefixName("redisson__map_cache__last_access__set", map.getName()));
+            names.add(suffixName(map.getName(), "redisson_options"));
+        }
+        return names;
+    }
+
+    /**
+     * 通过 UNLINK 异步删除指定的key及hash的标签索引，由redis在后台线程中释放内存
+     */
+    private void unlinkAsync(RMap<Object, Object> map, List<String> names) {
+        RSet<String> tagNames = redissonClient.getSet(this.tagNamesName(map));
+        tagNames.readAllAsync().onComplete((tags, ex) -> {
+            if (null != ex) {
+                logger.error("[RedisCache] read tags error, cacheName={}, map={}", this.getCacheName(), map.getName(), ex);
+            } else {
+                for (String tag : tags) {
+                    names.add(this.tagName(map, tag));
+                }
+                names.add(tagNames.getName());
+            }
+            if (names.isEmpty()) {
+                return;
+            }
+            redissonClient.getKeys().unlinkAsync(names.toArray(new String[0])).onComplete((count, e) -> {
+                if (null != e) {
+                    logger.error("[RedisCache] unlink error, cacheName={}, keys={}", this.getCacheName(), names, e);
+                    return;
+                }
+                logger.debug("[RedisCache] unlink, cacheName={}, keys={}, count={}", this.getCacheName(), names, count);
+            });
+        });
+    }
+
+    /**
+     * 为缓存项打上标签，多个命令在同一连接上以管道方式发送后统一等待结果
+     */
+    @Override
+    public void tag(Object key, String... tags) {
+        if (null == tags || tags.length == 0) {
+            return;
+        }
+        this.checkTagSupported();
+        RMap<Object, Object> map = this.map;
+        long ttl = this.tagExpireTime();
+        List<RFuture<Boolean>> futures = new ArrayList<>();
+        for (String tag : tags) {
+            RSet<Object> tagSet = redissonClient.getSet(this.tagName(map, tag));
+            futures.add(tagSet.addAsync(buildKey(key)));
+            this.expireTagAsync(tagSet, ttl, futures);
+        }
+        RSet<String> tagNames = redissonClient.getSet(this.tagNamesName(map));
+        futures.add(tagNames.addAllAsync(Arrays.asList(tags)));
+        this.expireTagAsync(tagNames, ttl, futures);
+        for (RFuture<Boolean> future : futures) {
+            future.syncUninterruptibly();
+        }
+    }
+
+    /**
+     * 按标签删除：通过 SPOP 逐批从标签索引中取出key，并以管道方式批量删除，期间新打标签的key也会被取出
+     */
+    @Override
+    public Set<Object> removeByTag(String tag) {
+        this.checkTagSupported();
+        RMap<Object, Object> map = this.map;
+        RSet<Object> tagSet = redissonClient.getSet(this.tagName(map, tag));
+        Set<Object> removed = new HashSet<>();
+        List<RFuture<Long>> futures = new ArrayList<>();
+        Set<Object> batch;
+        while (!(batch = tagSet.removeRandom(TAG_BATCH_SIZE)).isEmpty()) {
+            futures.add(map.fastRemoveAsync(batch.toArray()));
+            removed.addAll(batch);
+        }
+        redissonClient.getSet(this.tagNamesName(map)).removeAsync(tag);
+        for (RFuture<Long> future : futures) {
+            future.syncUninterruptibly();
+        }
+        logger.debug("[RedisCache] remove by tag, cacheName={}, tag={}, keys={}", this.getCacheName(), tag, removed.size());
+        return removed;
+    }
+
+    private void checkTagSupported() {
+        if (null == redissonClient) {
+            throw new UnsupportedOperationException("RedissonCache not support tag without RedissonClient, cacheName=" + this.getCacheName());
+        }
+    }
+
+    /**
+     * 标签索引的过期时间(ms)，缓存项不过期时返回0
+     * 注：只延长不缩短，避免过期时间较短的缓存项缩短了过期时间较长的缓存项所在标签索引的过期时间
+     */
+    private long tagExpireTime() {
+        long maxExpireTime = maxEntryExpireTime.get();
+        if (maxExpireTime < 0) {
+            return 0;
+        }
+        long expireTime = Math.max(redis.getExpireTime(), maxExpireTime);
+        return expireTime > 0 ? expireTime * 2 : 0;
+    }
+
+    /**
+     * 设置标签索引的过期时间，写入过不过期的缓存项时去掉之前设置的过期时间
+     */
+    private void expireTagAsync(RSet<?> tagSet, long ttl, List<RFuture<Boolean>> futures) {
+        if (ttl > 0) {
+            futures.add(tagSet.expireAsync(ttl, TimeUnit.MILLISECONDS));
+        } else if (maxEntryExpireTime.get() < 0) {
+            futures.add(tagSet.clearExpireAsync());
+        }
+    }
+
+    private String tagName(RMap<Object, Object> map, String tag) {
+        return map.getName() + ":tag:" + tag;
+    }
+
+    private String tagNamesName(RMap<Object, Object> map) {
+        return map.getName() + ":tags";
+    }
+
+    private static String prefixName(String prefix, String name) {
+        if (name.contains("{")) {
+            return prefix + ":" + name;
+        }
+        return prefix + ":{" + name + "}";
+    }
+
+    private static String suffixName(String name, String suffix) {
+        if (name.contains("{")) {
+            return name + ":" + suffix;
+        }
+        return "{" + name + "}:" + suffix;
     }
 
 }
@@ -0,0 +1,125 @@
+package com.coy.l2cache.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 本地缓存的标签索引
+ * <p>
+ * 记录本节点打过标签的key，按标签删除时在本地解析出需要清除的key，无需遍历整个缓存。
+ * 注：在构建一级缓存时注册到其淘汰监听中，缓存项被淘汰或删除后从索引中移除；
+ * 淘汰监听是异步执行的，缓存项可能已被重新写入，所以先写入缓存项再打标签，移除前确认缓存项已不存在
+ *
+ * @author chenck
+ * @date 2020/7/23 10:15
+ */
+public class TagIndex {
+
+    /**
+     * <key,value>=<tag, keys>
+     */
+    private final Map<String, Set<Object>> keysByTag = new ConcurrentHashMap<>();
+
+    /**
+     * <key,value>=<key, tags>
+     */
+    private final Map<Object, Set<String>> tagsByKey = new ConcurrentHashMap<>();
+
+    /**
+     * 判断key是否在缓存中，由一级缓存设置
+     */
+    private volatile Predicate<Object> presence;
+
+    public void setPresence(Predicate<Object> presence) {
+        this.presence = presence;
+    }
+
+    /**
+     * 为key打上标签，覆盖之前的标签
+     */
+    public void add(Object key, String... tags) {
+        if (null == key || null == tags || tags.length == 0) {
+            return;
+        }
+        Set<String> newTags = new HashSet<>(Arrays.asList(tags));
+        Set<String> oldTags = tagsByKey.put(key, newTags);
+        if (null != oldTags) {
+            for (String tag : oldTags) {
+                if (!newTags.contains(tag)) {
+                    this.removeFromTag(tag, key);
+                }
+            }
+        }
+        for (String tag : newTags) {
+            keysByTag.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /**
+     * 从索引中移除key
+     */
+    public void remove(Object key) {
+        if (null == key) {
+            return;
+        }
+        Set<String> tags = tagsByKey.remove(key);
+        if (null == tags) {
+            return;
+        }
+        for (String tag : tags) {
+            this.removeFromTag(tag, key);
+        }
+    }
+
+    /**
+     * 缓存项被淘汰或删除后从索引中移除，key已被重新写入时保留其标签
+     */
+    public void removeIfAbsent(Object key) {
+        Predicate<Object> presence = this.presence;
+        if (null != presence && presence.test(key)) {
+            return;
+        }
+        this.remove(key);
+    }
+
+    /**
+     * 移除标签，并返回该标签下的所有key
+     */
+    public Set<Object> removeTag(String tag) {
+        Set<Object> keys = keysByTag.remove(tag);
+        if (null == keys) {
+            return Collections.emptySet();
+        }
+        for (Object key : keys) {
+            this.remove(key);
+        }
+        return keys;
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        keysByTag.clear();
+        tagsByKey.clear();
+    }
+
+    /**
+     * 打过标签的key的数量
+     */
+    public int size() {
+        return tagsByKey.size();
+    }
+
+    private void removeFromTag(String tag, Object key) {
+        keysByTag.computeIfPresent(tag, (t, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
@@ -0,0 +1,249 @@
+package com.coy.l2cache.cache;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.expire.CacheExpiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * 多级缓存中，一级缓存下面的缓存链
+ * <p>
+ * 由中间的各级本地缓存（如：offheap）和二级缓存（如：redis）组成，对一级缓存而言相当于一个二级缓存，
+ * 查找时按从上到下的顺序逐级查找，命中后按提升策略写入到上层的各级本地缓存。
+ *
+ * @author chenck
+ * @date 2020/7/15 11:20
+ */
+public class TieredLevel2Cache extends AbstractAdaptingCache implements Level2Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredLevel2Cache.class);
+
+    /**
+     * 中间的各级本地缓存，按从上到下的顺序排列
+     */
+    private final List<Level1Cache> middleCaches;
+
+    /**
+     * 二级缓存
+     */
+    private final Level2Cache level2Cache;
+
+    /**
+     * 下层缓存命中时，是否提升到上层的各级本地缓存
+     */
+    private final boolean promoteOnHit;
+
+    public TieredLevel2Cache(String cacheName, CacheConfig cacheConfig, List<Level1Cache> middleCaches, Level2Cache level2Cache) {
+        super(cacheName, cacheConfig);
+        this.middleCaches = middleCaches;
+        this.level2Cache = level2Cache;
+        this.promoteOnHit = cacheConfig.getComposite().isPromoteOnHit();
+    }
+
+    @Override
+    public String getCacheType() {
+        return level2Cache.getCacheType();
+    }
+
+    @Override
+    public Object getActualCache() {
+        return level2Cache.getActualCache();
+    }
+
+    @Override
+    public long getExpireTime() {
+        return level2Cache.getExpireTime();
+    }
+
+    @Override
+    public Object buildKey(Object key) {
+        return level2Cache.buildKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = this.getFromMiddleCaches(key);
+        if (null != value) {
+            return value;
+        }
+        value = level2Cache.get(key);
+        if (null != value) {
+            logger.debug("[TieredLevel2Cache] level2Cache get cache, cacheName={}, key={}", this.getCacheName(), key);
+            this.promote(key, value, middleCaches.size());
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = this.getFromMiddleCaches(key);
+        if (null != value) {
+            return (T) value;
+        }
+        // L2中加载（L2无缓存时执行valueLoader）
+        T loadValue = level2Cache.get(key, valueLoader);
+        if (null != loadValue) {
+            this.promote(key, loadValue, middleCaches.size());
+        }
+        return loadValue;
+    }
+
+    /**
+     * 注：中间的各级本地缓存只在本地设置和清理，不单独发送缓存同步消息，由一级缓存发送的消息统一清理其他节点的各级本地缓存
+     *
+     * @see com.coy.l2cache.sync.CacheMessageListener
+     */
+    @Override
+    public void put(Object key, Object value) {
+        level2Cache.put(key, value);
+        // 从下往上设置，避免短时间内上层缓存被淘汰后从下层加载到旧值
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            middleCaches.get(i).putLocal(key, value);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value, String... tags) {
+        level2Cache.put(key, value, tags);
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            Level1Cache middleCache = middleCaches.get(i);
+            middleCache.putLocal(key, value);
+            TagIndex tagIndex = middleCache.getTagIndex();
+            if (null != tagIndex) {
+                tagIndex.add(key, tags);
+            }
+        }
+    }
+
+    /**
+     * 注：本地设置缓存项时无法指定过期时间，所以只清理中间的各级本地缓存中的旧值，避免其存活时间超过二级缓存
+     */
+    @Override
+    public void put(Object key, Object value, Duration ttl) {
+        level2Cache.put(key, value, ttl);
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            middleCaches.get(i).clearLocalCache(key);
+        }
+    }
+
+    @Override
+    public void setExpiry(CacheExpiry<Object, Object> expiry) {
+        level2Cache.setExpiry(expiry);
+    }
+
+    @Override
+    public void tag(Object key, String... tags) {
+        level2Cache.tag(key, tags);
+        for (Level1Cache middleCache : middleCaches) {
+            TagIndex tagIndex = middleCache.getTagIndex();
+            if (null != tagIndex) {
+                tagIndex.add(key, tags);
+            }
+        }
+    }
+
+    @Override
+    public Map<Object, Object> batchGet(Collection<Object> keys) {
+        Map<Object, Object> result = new HashMap<>();
+        List<Object> missKeys = new ArrayList<>();
+        for (Object key : keys) {
+            Object value = this.getFromMiddleCaches(key);
+            if (null != value) {
+                result.put(key, value);
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        Map<Object, Object> values = level2Cache.batchGet(missKeys);
+        for (Map.Entry<Object, Object> entry : values.entrySet()) {
+            if (null != entry.getValue()) {
+                this.promote(entry.getKey(), entry.getValue(), middleCaches.size());
+            }
+        }
+        result.putAll(values);
+        return result;
+    }
+
+    @Override
+    public void batchPut(Map<Object, Object> values) {
+        level2Cache.batchPut(values);
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            for (Map.Entry<Object, Object> entry : values.entrySet()) {
+                middleCaches.get(i).putLocal(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        level2Cache.evict(key);
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            middleCaches.get(i).clearLocalCache(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        level2Cache.clear();
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            middleCaches.get(i).clearLocalCache(null);
+        }
+    }
+
+    @Override
+    public Set<Object> removeByTag(String tag) {
+        Set<Object> keys = level2Cache.removeByTag(tag);
+        for (int i = middleCaches.size() - 1; i >= 0; i--) {
+            middleCaches.get(i).clearLocalCacheByTag(tag, keys);
+        }
+        return keys;
+    }
+
+    /**
+     * 按从上到下的顺序逐级查找中间的各级本地缓存
+     */
+    private Object getFromMiddleCaches(Object key) {
+        for (int i = 0; i < middleCaches.size(); i++) {
+            Object value = middleCaches.get(i).getIfPresent(key);
+            if (null != value) {
+                logger.debug("[TieredLevel2Cache] middle cache hit, cacheName={}, cacheType={}, key={}",
+                        this.getCacheName(), middleCaches.get(i).getCacheType(), key);
+                this.promote(key, value, i);
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将缓存项提升到第 level 级之上的各级本地缓存
+     */
+    private void promote(Object key, Object value, int level) {
+        if (!promoteOnHit) {
+            return;
+        }
+        for (int i = 0; i < level; i++) {
+            middleCaches.get(i).putLocal(key, value);
+        }
+    }
+
+    public List<Level1Cache> getMiddleCaches() {
+        return middleCaches;
+    }
+
+    public Level2Cache getLevel2Cache() {
+        return level2Cache;
+    }
+}
@@ -0,0 +1,648 @@
+package com.coy.l2cache.cache.disk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.SerializationUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * 磁盘存储
+ * <p>
+ * 结构：
+ * 1、数据以追加写的方式写入段文件（segment），段文件通过内存映射（mmap）读写，写满后滚动到新的段文件
+ * 2、索引（key -> 段id、偏移量、长度、过期时间）保存在堆内，值保存在段文件中
+ * 3、删除时追加一条墓碑记录，重启后按段文件顺序重放记录重建索引，记录带有CRC校验，遇到不完整的记录即停止重放
+ * 4、压缩：定期清理过期缓存项，并将垃圾比例超过阈值的段文件中的有效记录重写到当前段文件后删除该段文件
+ * 5、容量：段文件总大小超过最大字节数时，删除最旧的段文件，其中的缓存项被淘汰
+ * <p>
+ * 记录格式：crc(4) + keyLength(4) + valueLength(4, -1表示墓碑) + expireAt(8) + key + value
+ * <p>
+ * 注：删除段文件后，其内存映射在被GC回收前仍占用虚拟内存
+ * 注：打开时对目录下的 .lock 文件加锁，同一目录不能被多个进程（或同一进程中未关闭的多个实例）同时使用
+ *
+ * @author chenck
+ * @date 2020/7/16 10:12
+ */
+public class DiskStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final int HEADER_LENGTH = 20;
+    private static final int TOMBSTONE = -1;
+    private static final String LOCK_FILE = ".lock";
+
+    private final File dir;
+    private final int segmentBytes;
+    private final long maximumBytes;
+    /**
+     * 写入后过期时间(ms)，小于等于0表示不过期
+     */
+    private final long expireTime;
+    /**
+     * 段文件中垃圾数据的比例超过该值时进行压缩
+     */
+    private final double compactionThreshold;
+    /**
+     * 是否每次写入后都刷盘
+     */
+    private final boolean syncOnWrite;
+
+    /**
+     * 读操作持有读锁，写入、删除、压缩持有写锁
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<Object, Location> index = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment activeSegment;
+    /**
+     * 目录锁，关闭时释放
+     */
+    private FileChannel lockChannel;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder compactionCount = new LongAdder();
+
+    public DiskStore(File dir, int segmentBytes, long maximumBytes, long expireTime, double compactionThreshold, boolean syncOnWrite) {
+        if (segmentBytes <= HEADER_LENGTH) {
+            throw new IllegalArgumentException("segmentBytes must be greater than " + HEADER_LENGTH);
+        }
+        if (maximumBytes < segmentBytes) {
+            throw new IllegalArgumentException("maximumBytes can't be less than segmentBytes, maximumBytes=" + maximumBytes
+                    + ", segmentBytes=" + segmentBytes);
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maximumBytes = maximumBytes;
+        this.expireTime = expireTime;
+        this.compactionThreshold = compactionThreshold;
+        this.syncOnWrite = syncOnWrite;
+        this.open();
+    }
+
+    /**
+     * 获取指定key的字节数据，不存在或已过期返回null
+     */
+    public byte[] get(Object key) {
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (null == location || location.isExpired(System.currentTimeMillis())) {
+                missCount.increment();
+                return null;
+            }
+            Segment segment = segments.get(location.segmentId);
+            byte[] bytes = new byte[location.valueLength];
+            ByteBuffer buffer = segment.buffer.duplicate();
+            ((Buffer) buffer).position(location.offset + HEADER_LENGTH + location.keyLength);
+            buffer.get(bytes);
+            hitCount.increment();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入指定key的字节数据
+     *
+     * @return false 表示数据大于单个段文件的容量，未写入
+     */
+    public boolean put(Object key, byte[] bytes) {
+        byte[] keyBytes = SerializationUtils.serialize(key);
+        long expireAt = expireTime > 0 ? System.currentTimeMillis() + expireTime : 0;
+        lock.writeLock().lock();
+        try {
+            Location location = this.append(keyBytes, bytes, expireAt);
+            if (null == location) {
+                return false;
+            }
+            this.index(key, location);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除指定key
+     */
+    public void remove(Object key) {
+        lock.writeLock().lock();
+        try {
+            Location location = index.remove(key);
+            if (null == location) {
+                return;
+            }
+            this.release(location);
+            this.append(SerializationUtils.serialize(key), null, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除所有缓存项及段文件
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            long nextId = activeSegment.id + 1;
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            index.clear();
+            activeSegment = this.createSegment(nextId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 是否已过期（不存在也视为已过期）
+     */
+    public boolean isExpired(Object key) {
+        Location location = index.get(key);
+        return null == location || location.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * 所有key的快照
+     */
+    public List<Object> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * 压缩：清理过期缓存项，重写垃圾比例超过阈值的段文件
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<Object, Location>> iterator = index.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Location location = iterator.next().getValue();
+                if (location.isExpired(now)) {
+                    iterator.remove();
+                    this.release(location);
+                }
+            }
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment == activeSegment || segment.writePosition == 0) {
+                    continue;
+                }
+                double garbageRatio = 1 - (double) segment.liveBytes / segment.writePosition;
+                if (garbageRatio >= compactionThreshold) {
+                    this.rewrite(segment);
+                }
+            }
+            activeSegment.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 刷盘并关闭段文件
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.close();
+            }
+            this.unlockDir();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 缓存项数量
+     */
+    public long size() {
+        return index.size();
+    }
+
+    /**
+     * 段文件占用的字节数
+     */
+    public long diskBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Segment segment : segments.values()) {
+                bytes += segment.capacity;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效数据的字节数
+     */
+    public long liveBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Segment segment : segments.values()) {
+                bytes += segment.liveBytes;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long compactionCount() {
+        return compactionCount.sum();
+    }
+
+    /**
+     * 打开目录下已有的段文件并重放记录重建索引
+     */
+    private void open() {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("can't create directory " + dir.getAbsolutePath());
+        }
+        this.lockDir();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        long[] ids = new long[null == files ? 0 : files.length];
+        for (int i = 0; i < ids.length; i++) {
+            String name = files[i].getName();
+            ids[i] = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        }
+        Arrays.sort(ids);
+        for (long id : ids) {
+            Segment segment = this.openSegment(id, this.segmentFile(id));
+            segments.put(id, segment);
+            this.recover(segment);
+        }
+        if (segments.isEmpty()) {
+            activeSegment = this.createSegment(0);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+        logger.info("[DiskStore] open, dir={}, segments={}, size={}", dir.getAbsolutePath(), segments.size(), index.size());
+    }
+
+    /**
+     * 对数据目录加锁，避免多个进程同时写入同一目录下的段文件
+     */
+    private void lockDir() {
+        FileLock fileLock = null;
+        try {
+            lockChannel = new RandomAccessFile(new File(dir, LOCK_FILE), "rw").getChannel();
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一进程中已有未关闭的实例持有该目录的锁
+        } catch (IOException e) {
+            logger.warn("[DiskStore] lock directory error, dir={}, error={}", dir.getAbsolutePath(), e.getMessage());
+        }
+        if (null == fileLock) {
+            this.unlockDir();
+            throw new IllegalStateException("directory is used by another disk store, please use a separate dataDir for each process, dir="
+                    + dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 关闭锁文件即释放目录锁
+     */
+    private void unlockDir() {
+        if (null == lockChannel) {
+            return;
+        }
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            logger.warn("[DiskStore] unlock directory error, dir={}, error={}", dir.getAbsolutePath(), e.getMessage());
+        }
+        lockChannel = null;
+    }
+
+    /**
+     * 重放段文件中的记录，遇到不完整的记录即停止，并从该位置继续追加写入
+     */
+    private void recover(Segment segment) {
+        long now = System.currentTimeMillis();
+        int position = 0;
+        Record record;
+        while (null != (record = this.readRecord(segment, position))) {
+            Object key;
+            try {
+                key = SerializationUtils.deserialize(record.keyBytes);
+            } catch (RuntimeException e) {
+                logger.warn("[DiskStore] key can't be deserialized, skip record, segment={}, position={}", segment.file.getName(), position);
+                position += record.length;
+                continue;
+            }
+            Location old = index.remove(key);
+            if (null != old) {
+                this.release(old);
+            }
+            if (record.valueLength != TOMBSTONE && (record.expireAt <= 0 || now < record.expireAt)) {
+                this.index(key, new Location(segment.id, position, record.length, record.keyBytes.length, record.valueLength,
+                        record.expireAt));
+            }
+            position += record.length;
+        }
+        segment.writePosition = position;
+    }
+
+    /**
+     * 重写段文件：将其中的有效记录追加到当前段文件，然后删除该段文件
+     */
+    private void rewrite(Segment segment) {
+        boolean hasOlder = segments.firstKey() < segment.id;
+        int position = 0;
+        Record record;
+        while (segments.containsKey(segment.id) && null != (record = this.readRecord(segment, position))) {
+            Object key;
+            try {
+                key = SerializationUtils.deserialize(record.keyBytes);
+            } catch (RuntimeException e) {
+                position += record.length;
+                continue;
+            }
+            if (record.valueLength == TOMBSTONE) {
+                // 更旧的段文件中可能还有该key的记录，保留墓碑，避免重启后被恢复
+                if (hasOlder && !index.containsKey(key)) {
+                    this.append(record.keyBytes, null, 0);
+                }
+            } else {
+                Location current = index.get(key);
+                if (null != current && current.segmentId == segment.id && current.offset == position) {
+                    Location location = this.append(record.keyBytes, this.readValue(segment, current), record.expireAt);
+                    this.index(key, location);
+                }
+            }
+            position += record.length;
+        }
+        if (segments.remove(segment.id) != null) {
+            segment.delete();
+            compactionCount.increment();
+            logger.debug("[DiskStore] compact segment, dir={}, segment={}", dir.getAbsolutePath(), segment.file.getName());
+        }
+    }
+
+    /**
+     * 追加一条记录，valueBytes为null时表示墓碑
+     * 注：调用方需持有写锁
+     *
+     * @return null 表示记录大于单个段文件的容量，未写入
+     */
+    private Location append(byte[] keyBytes, byte[] valueBytes, long expireAt) {
+        int valueLength = null == valueBytes ? TOMBSTONE : valueBytes.length;
+        int length = HEADER_LENGTH + keyBytes.length + Math.max(valueLength, 0);
+        if (length > segmentBytes) {
+            return null;
+        }
+        if (activeSegment.writePosition + length > activeSegment.capacity) {
+            this.roll();
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(0).putInt(keyBytes.length).putInt(valueLength).putLong(expireAt).put(keyBytes);
+        if (null != valueBytes) {
+            record.put(valueBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length - 4);
+        record.putInt(0, (int) crc.getValue());
+
+        int offset = activeSegment.writePosition;
+        ByteBuffer buffer = activeSegment.buffer.duplicate();
+        ((Buffer) buffer).position(offset);
+        buffer.put(record.array());
+        activeSegment.writePosition += length;
+        if (syncOnWrite) {
+            activeSegment.buffer.force();
+        }
+        return new Location(activeSegment.id, offset, length, keyBytes.length, valueLength, expireAt);
+    }
+
+    /**
+     * 滚动到新的段文件，段文件总大小超过最大字节数时删除最旧的段文件
+     */
+    private void roll() {
+        activeSegment.buffer.force();
+        activeSegment = this.createSegment(activeSegment.id + 1);
+        while (segments.size() > 1 && (long) segments.size() * segmentBytes > maximumBytes) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            Iterator<Location> iterator = index.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().segmentId == oldest.id) {
+                    iterator.remove();
+                    evictionCount.increment();
+                }
+            }
+            oldest.delete();
+            logger.debug("[DiskStore] evict oldest segment, dir={}, segment={}", dir.getAbsolutePath(), oldest.file.getName());
+        }
+    }
+
+    private void index(Object key, Location location) {
+        Location old = index.put(key, location);
+        if (null != old) {
+            this.release(old);
+        }
+        segments.get(location.segmentId).liveBytes += location.length;
+    }
+
+    private void release(Location location) {
+        Segment segment = segments.get(location.segmentId);
+        if (null != segment) {
+            segment.liveBytes -= location.length;
+        }
+    }
+
+    /**
+     * 读取指定位置的记录，记录不完整或校验失败时返回null
+     */
+    private Record readRecord(Segment segment, int position) {
+        if (position + HEADER_LENGTH > segment.capacity) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int crc = buffer.getInt(position);
+        int keyLength = buffer.getInt(position + 4);
+        int valueLength = buffer.getInt(position + 8);
+        long expireAt = buffer.getLong(position + 12);
+        if (keyLength <= 0 || valueLength < TOMBSTONE) {
+            return null;
+        }
+        long length = (long) HEADER_LENGTH + keyLength + Math.max(valueLength, 0);
+        if (position + length > segment.capacity) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) length - 4];
+        ((Buffer) buffer).position(position + 4);
+        buffer.get(bytes);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length);
+        if ((int) checksum.getValue() != crc) {
+            return null;
+        }
+        return new Record((int) length, Arrays.copyOfRange(bytes, HEADER_LENGTH - 4, HEADER_LENGTH - 4 + keyLength),
+                valueLength, expireAt);
+    }
+
+    private byte[] readValue(Segment segment, Location location) {
+        byte[] bytes = new byte[location.valueLength];
+        ByteBuffer buffer = segment.buffer.duplicate();
+        ((Buffer) buffer).position(location.offset + HEADER_LENGTH + location.keyLength);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private File segmentFile(long id) {
+        return new File(dir, String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+
+    private Segment createSegment(long id) {
+        Segment segment = this.openSegment(id, this.segmentFile(id));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment openSegment(long id, File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            // 已有段文件按实际大小映射，兼容修改了segmentBytes配置的场景
+            long capacity = Math.min(Math.max(raf.length(), segmentBytes), Integer.MAX_VALUE);
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new Segment(id, file, raf, buffer, (int) capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("can't open segment file " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 缓存项索引
+     */
+    private static final class Location {
+        private final long segmentId;
+        private final int offset;
+        private final int length;
+        private final int keyLength;
+        private final int valueLength;
+        private final long expireAt;
+
+        private Location(long segmentId, int offset, int length, int keyLength, int valueLength, long expireAt) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expireAt > 0 && now >= expireAt;
+        }
+    }
+
+    /**
+     * 段文件中的记录
+     */
+    private static final class Record {
+        private final int length;
+        private final byte[] keyBytes;
+        private final int valueLength;
+        private final long expireAt;
+
+        private Record(int length, byte[] keyBytes, int valueLength, long expireAt) {
+            this.length = length;
+            this.keyBytes = keyBytes;
+            this.valueLength = valueLength;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    private static final class Segment {
+        private final long id;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int writePosition;
+        /**
+         * 被索引引用的记录的字节数
+         */
+        private long liveBytes;
+
+        private Segment(long id, File file, RandomAccessFile raf, MappedByteBuffer buffer, int capacity) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        private void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                logger.warn("[DiskStore] close segment file error, file={}", file.getAbsolutePath(), e);
+            }
+        }
+
+        private void delete() {
+            this.close();
+            if (!file.delete()) {
+                logger.warn("[DiskStore] delete segment file failed, file={}", file.getAbsolutePath());
+            }
+        }
+    }
+}
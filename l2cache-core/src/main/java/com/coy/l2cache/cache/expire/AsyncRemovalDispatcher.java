@@ -0,0 +1,173 @@
+package com.coy.l2cache.cache.expire;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步批量分发缓存移除事件
+ * <p>
+ * 缓存维护线程只将事件放入有界环形缓冲区（不阻塞，缓冲区满时丢弃并计数），由一个后台线程按批取出后回调监听器：
+ * 凑满 batchSize 或等待超过 maxWaitMillis 即回调一次。
+ * <p>
+ * 注：一个监听器对应一个分发器，所有缓存名称共用
+ * 注：缓存管理器销毁（或替换监听器）时通过 shutdown 停止后台线程并移除分发器，缓冲区中剩余的事件回调后退出；
+ * 之后仍引用该分发器的缓存在调用线程中直接回调
+ *
+ * @author chenck
+ * @date 2020/7/18 10:30
+ */
+public class AsyncRemovalDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRemovalDispatcher.class);
+
+    /**
+     * <key,value>=<CacheExpiredListener, AsyncRemovalDispatcher>
+     */
+    private static final Map<CacheExpiredListener, AsyncRemovalDispatcher> DISPATCHER_MAP = new ConcurrentHashMap<>();
+
+    private final CacheExpiredListener listener;
+    private final BlockingQueue<CacheRemovalEvent> buffer;
+    private final int batchSize;
+    private final long maxWaitMillis;
+
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder dispatchedCount = new LongAdder();
+
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private AsyncRemovalDispatcher(CacheExpiredListener listener, CacheConfig.Removal removal) {
+        this.listener = listener;
+        this.buffer = new ArrayBlockingQueue<>(removal.getBufferSize());
+        this.batchSize = removal.getBatchSize();
+        this.maxWaitMillis = removal.getMaxWaitMillis();
+
+        this.dispatcher = new DaemonThreadFactory("l2cache-removal-").newThread(this::dispatchLoop);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 获取监听器对应的分发器
+     */
+    public static AsyncRemovalDispatcher getInstance(CacheExpiredListener listener, CacheConfig.Removal removal) {
+        return DISPATCHER_MAP.computeIfAbsent(listener, key -> new AsyncRemovalDispatcher(key, removal));
+    }
+
+    /**
+     * 停止监听器对应的分发器，不存在时忽略
+     */
+    public static void shutdown(CacheExpiredListener listener) {
+        if (null == listener) {
+            return;
+        }
+        AsyncRemovalDispatcher dispatcher = DISPATCHER_MAP.get(listener);
+        if (null != dispatcher) {
+            dispatcher.close();
+        }
+    }
+
+    /**
+     * 停止后台线程并移除分发器，缓冲区中剩余的事件回调后退出
+     */
+    public void close() {
+        closed = true;
+        DISPATCHER_MAP.remove(listener, this);
+        dispatcher.interrupt();
+        logger.info("[AsyncRemovalDispatcher] close, listener={}, pending={}", listener.getClass().getName(), buffer.size());
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 放入移除事件，缓冲区满时丢弃；已关闭时在调用线程中直接回调
+     *
+     * @return false 表示被丢弃
+     */
+    public boolean offer(CacheRemovalEvent event) {
+        if (closed) {
+            this.dispatch(Collections.singletonList(event));
+            return true;
+        }
+        if (buffer.offer(event)) {
+            // 放入后才关闭时，后台线程可能已退出，取回后直接回调
+            if (closed && buffer.remove(event)) {
+                this.dispatch(Collections.singletonList(event));
+            }
+            return true;
+        }
+        droppedCount.increment();
+        logger.debug("[AsyncRemovalDispatcher] buffer is full, drop event {}", event);
+        return false;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.sum();
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    private void dispatchLoop() {
+        List<CacheRemovalEvent> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closed && !Thread.currentThread().isInterrupted()) {
+                batch.add(buffer.take());
+                long deadline = System.currentTimeMillis() + maxWaitMillis;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    CacheRemovalEvent event = buffer.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (null == event) {
+                        break;
+                    }
+                    batch.add(event);
+                }
+                this.dispatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        } catch (InterruptedException e) {
+            // 关闭：回调已取出及缓冲区中剩余的事件后退出
+        }
+        buffer.drainTo(batch);
+        if (!batch.isEmpty()) {
+            this.dispatch(batch);
+        }
+    }
+
+    private void dispatch(List<CacheRemovalEvent> batch) {
+        try {
+            if (listener instanceof BatchCacheExpiredListener) {
+                ((BatchCacheExpiredListener) listener).onExpired(batch);
+            } else {
+                for (CacheRemovalEvent event : batch) {
+                    listener.onExpired(event.getKey(), event.getValue());
+                }
+            }
+            dispatchedCount.add(batch.size());
+        } catch (Throwable e) {
+            logger.error("[AsyncRemovalDispatcher] dispatch removal events error, size={}", batch.size(), e);
+        }
+    }
+}
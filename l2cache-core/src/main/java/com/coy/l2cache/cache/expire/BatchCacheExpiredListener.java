@@ -0,0 +1,20 @@
+package com.coy.l2cache.cache.expire;
+
+import java.util.List;
+
+/**
+ * 批量缓存过期监听器
+ * <p>
+ * 开启异步移除事件（removal.async=true）时，移除事件在后台线程中按批回调，可以在回调中执行IO（如批量上报、批量写库）而不影响缓存的维护操作；
+ * 未开启异步时，每个移除事件单独回调 onExpired。
+ *
+ * @author chenck
+ * @date 2020/7/18 10:15
+ */
+public interface BatchCacheExpiredListener extends CacheExpiredListener<Object, Object> {
+
+    /**
+     * 批量回调移除事件
+     */
+    void onExpired(List<CacheRemovalEvent> events);
+}
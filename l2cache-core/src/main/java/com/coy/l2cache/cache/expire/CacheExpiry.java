@@ -0,0 +1,21 @@
+package com.coy.l2cache.cache.expire;
+
+/**
+ * 按缓存项计算二级缓存的过期时间
+ * 如：热点数据缓存更长时间，空值缓存较短时间
+ *
+ * @author chenck
+ * @date 2020/7/25 10:40
+ */
+public interface CacheExpiry<K, V> {
+
+    /**
+     * 计算缓存项写入后的过期时间
+     *
+     * @param key        缓存key
+     * @param value      缓存值，可能为null
+     * @param expireTime 配置的过期时间(ms)
+     * @return 过期时间(ms)，小于等于0表示不过期
+     */
+    long expireAfterWrite(K key, V value, long expireTime);
+}
@@ -0,0 +1,32 @@
+package com.coy.l2cache.cache.expire;
+
+/**
+ * 缓存项被移除的原因
+ * 注：与 caffeine、guava 的 RemovalCause 一一对应
+ *
+ * @author chenck
+ * @date 2020/7/18 10:02
+ */
+public enum CacheRemovalCause {
+    // 调用 invalidate/remove 显式删除
+    EXPLICIT,
+    // 被新值替换
+    REPLACED,
+    // key 或 value 被垃圾回收（weakKeys/weakValues/softValues）
+    COLLECTED,
+    // 过期
+    EXPIRED,
+    // 超出容量被淘汰
+    SIZE,
+    ;
+
+    public static CacheRemovalCause getCause(String cause) {
+        CacheRemovalCause[] causes = CacheRemovalCause.values();
+        for (CacheRemovalCause removalCause : causes) {
+            if (removalCause.name().equalsIgnoreCase(cause)) {
+                return removalCause;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.coy.l2cache.cache.expire;
+
+import lombok.Getter;
+
+/**
+ * 缓存项移除事件
+ *
+ * @author chenck
+ * @date 2020/7/18 10:08
+ */
+@Getter
+public class CacheRemovalEvent {
+
+    private final String cacheName;
+    private final Object key;
+    private final Object value;
+    private final CacheRemovalCause cause;
+    /**
+     * 移除时间(ms)
+     */
+    private final long timestamp;
+
+    public CacheRemovalEvent(String cacheName, Object key, Object value, CacheRemovalCause cause) {
+        this.cacheName = cacheName;
+        this.key = key;
+        this.value = value;
+        this.cause = cause;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheRemovalEvent{cacheName=" + cacheName + ", key=" + key + ", cause=" + cause + ", timestamp=" + timestamp + "}";
+    }
+}
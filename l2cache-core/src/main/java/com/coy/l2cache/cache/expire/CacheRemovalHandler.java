@@ -0,0 +1,54 @@
+package com.coy.l2cache.cache.expire;
+
+import com.coy.l2cache.CacheConfig;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 缓存移除事件处理器
+ * <p>
+ * 按移除原因过滤后回调 CacheExpiredListener，开启异步时交给 AsyncRemovalDispatcher 在后台线程中批量回调
+ *
+ * @author chenck
+ * @date 2020/7/18 11:02
+ */
+public class CacheRemovalHandler {
+
+    private final String cacheName;
+    private final CacheExpiredListener listener;
+    private final Set<CacheRemovalCause> causes;
+    private final AsyncRemovalDispatcher dispatcher;
+
+    public CacheRemovalHandler(String cacheName, CacheExpiredListener listener, CacheConfig.Removal removal) {
+        this.cacheName = cacheName;
+        this.listener = listener;
+        this.causes = EnumSet.noneOf(CacheRemovalCause.class);
+        for (String cause : removal.getCauses()) {
+            CacheRemovalCause removalCause = CacheRemovalCause.getCause(cause);
+            if (null == removalCause) {
+                throw new IllegalArgumentException("unknown removal cause " + cause);
+            }
+            this.causes.add(removalCause);
+        }
+        this.dispatcher = removal.isAsync() ? AsyncRemovalDispatcher.getInstance(listener, removal) : null;
+    }
+
+    /**
+     * 缓存项被移除时调用
+     */
+    public void onRemoval(Object key, Object value, CacheRemovalCause cause) {
+        if (!causes.contains(cause)) {
+            return;
+        }
+        if (null != dispatcher) {
+            dispatcher.offer(new CacheRemovalEvent(cacheName, key, value, cause));
+            return;
+        }
+        listener.onExpired(key, value);
+    }
+
+    public AsyncRemovalDispatcher getDispatcher() {
+        return dispatcher;
+    }
+}
@@ -0,0 +1,82 @@
+package com.coy.l2cache.cache.expire;
+
+import com.coy.l2cache.content.NullValue;
+import com.coy.l2cache.load.EarlyRefreshPolicy;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * caffeine 的可变过期时间
+ * <p>
+ * 写入时的过期时间依次取：通过 put(key, value, ttl) 指定的过期时间、CacheExpiry 按缓存项计算的过期时间、spec 中配置的 expireAfterWrite，
+ * 再按 expireJitterRatio 随机抖动；读取时不改变剩余存活时间。
+ * 注：caffeine 的 expireAfter 不能与 expireAfterWrite、expireAfterAccess 同时使用，使用时构建 caffeine 需跳过 spec 中的 expireAfterWrite
+ *
+ * @author chenck
+ * @date 2020/7/25 14:30
+ */
+public class CaffeineVariableExpiry implements Expiry<Object, Object> {
+
+    /**
+     * spec 中配置的 expireAfterWrite(纳秒)，未配置时为 Long.MAX_VALUE（不过期）
+     * 注：运行时修改 spec 后更新，只影响之后写入的缓存项
+     */
+    private volatile long expireNanos;
+
+    /**
+     * 过期时间抖动
+     */
+    private final EarlyRefreshPolicy earlyRefreshPolicy;
+
+    /**
+     * 按缓存项计算过期时间，为null时使用 expireNanos
+     */
+    private volatile CacheExpiry<Object, Object> expiry;
+
+    public CaffeineVariableExpiry(long expireNanos, EarlyRefreshPolicy earlyRefreshPolicy) {
+        this.expireNanos = expireNanos;
+        this.earlyRefreshPolicy = earlyRefreshPolicy;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return this.expireNanos(key, value);
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return this.expireNanos(key, value);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    private long expireNanos(Object key, Object value) {
+        long nanos = expireNanos;
+        CacheExpiry<Object, Object> expiry = this.expiry;
+        if (null != expiry) {
+            long configured = expireNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(expireNanos);
+            long millis = expiry.expireAfterWrite(key, value == NullValue.INSTANCE ? null : value, configured);
+            nanos = millis <= 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+        if (nanos == Long.MAX_VALUE || null == earlyRefreshPolicy) {
+            return nanos;
+        }
+        return earlyRefreshPolicy.jitter(nanos);
+    }
+
+    public void setExpiry(CacheExpiry<Object, Object> expiry) {
+        this.expiry = expiry;
+    }
+
+    public long getExpireNanos() {
+        return expireNanos;
+    }
+
+    public void setExpireNanos(long expireNanos) {
+        this.expireNanos = expireNanos;
+    }
+}
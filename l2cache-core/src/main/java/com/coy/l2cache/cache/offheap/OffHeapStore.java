@@ -0,0 +1,393 @@
+package com.coy.l2cache.cache.offheap;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外存储
+ * <p>
+ * 结构：
+ * 1、按key的hash分为多个段（Segment），每个段一把锁，降低锁竞争
+ * 2、每个段持有一块堆外内存（direct ByteBuffer），按固定大小的块（block）进行分配，一个缓存项可占用多个不连续的块，避免内存碎片
+ * 3、索引（key -> 块列表）保存在堆内，值以序列化后的字节保存在堆外，不受GC影响
+ * 4、按字节淘汰：空闲块不足时，采用CLOCK（second chance）算法淘汰缓存项，直到空闲块满足写入要求
+ * <p>
+ * 注：堆外内存受JVM参数 -XX:MaxDirectMemorySize 限制
+ *
+ * @author chenck
+ * @date 2020/7/14 10:21
+ */
+public class OffHeapStore {
+
+    /**
+     * 单个段允许的最大字节数
+     */
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int blockSize;
+    /**
+     * 写入后过期时间(ms)，小于等于0表示不过期
+     */
+    private final long expireTime;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public OffHeapStore(long maximumBytes, int segmentCount, int blockSize, long expireTime) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("maximumBytes must be greater than 0");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be greater than 0");
+        }
+        int count = 1;
+        while (count < segmentCount) {
+            count <<= 1;
+        }
+        long segmentBytes = maximumBytes / count;
+        if (segmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("bytes of per segment can't be greater than " + MAX_SEGMENT_BYTES
+                    + ", please increase the segments, maximumBytes=" + maximumBytes + ", segments=" + count);
+        }
+        int blockCount = (int) (segmentBytes / blockSize);
+        if (blockCount <= 0) {
+            throw new IllegalArgumentException("maximumBytes is too small, maximumBytes=" + maximumBytes
+                    + ", segments=" + count + ", blockSize=" + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.expireTime = expireTime;
+        this.segmentMask = count - 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(blockCount);
+        }
+    }
+
+    /**
+     * 获取指定key的字节数据，不存在或已过期返回null
+     */
+    public byte[] get(Object key) {
+        byte[] bytes = segmentFor(key).get(key);
+        if (null == bytes) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return bytes;
+    }
+
+    /**
+     * 写入指定key的字节数据
+     *
+     * @return false 表示数据大于单个段的容量，未写入
+     */
+    public boolean put(Object key, byte[] bytes) {
+        return segmentFor(key).put(key, bytes);
+    }
+
+    /**
+     * 删除指定key
+     */
+    public void remove(Object key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * 删除所有缓存项
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 是否已过期（不存在也视为已过期）
+     */
+    public boolean isExpired(Object key) {
+        return segmentFor(key).isExpired(key);
+    }
+
+    /**
+     * 所有key的快照
+     */
+    public List<Object> keys() {
+        List<Object> keys = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.collectKeys(keys);
+        }
+        return keys;
+    }
+
+    /**
+     * 缓存项数量
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 已使用的字节数（按块计算）
+     */
+    public long usedBytes() {
+        long usedBlocks = 0;
+        for (Segment segment : segments) {
+            usedBlocks += segment.usedBlocks();
+        }
+        return usedBlocks * blockSize;
+    }
+
+    /**
+     * 总容量字节数
+     */
+    public long capacityBytes() {
+        return (long) segments.length * segments[0].blocks * blockSize;
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    private Segment segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * 缓存项索引
+     */
+    private static final class Entry {
+        private final int[] blockIds;
+        private final int length;
+        private final long expireAt;
+        /**
+         * CLOCK 访问标记
+         */
+        private boolean referenced;
+
+        private Entry(int[] blockIds, int length, long expireAt) {
+            this.blockIds = blockIds;
+            this.length = length;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expireAt > 0 && now >= expireAt;
+        }
+    }
+
+    /**
+     * 段
+     */
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ByteBuffer slab;
+        private final int blocks;
+        /**
+         * 空闲块栈
+         */
+        private final int[] freeBlocks;
+        private int freeCount;
+        /**
+         * 按插入顺序排列，CLOCK 指针始终指向头部
+         */
+        private final LinkedHashMap<Object, Entry> index = new LinkedHashMap<>();
+
+        private Segment(int blocks) {
+            this.blocks = blocks;
+            this.slab = ByteBuffer.allocateDirect(blocks * blockSize);
+            this.freeBlocks = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                this.freeBlocks[i] = blocks - 1 - i;
+            }
+            this.freeCount = blocks;
+        }
+
+        private byte[] get(Object key) {
+            lock.lock();
+            try {
+                Entry entry = index.get(key);
+                if (null == entry) {
+                    return null;
+                }
+                if (entry.isExpired(System.currentTimeMillis())) {
+                    removeEntry(key, entry);
+                    return null;
+                }
+                entry.referenced = true;
+                return read(entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean put(Object key, byte[] bytes) {
+            int required = Math.max(1, (bytes.length + blockSize - 1) / blockSize);
+            if (required > blocks) {
+                return false;
+            }
+            lock.lock();
+            try {
+                Entry old = index.remove(key);
+                if (null != old) {
+                    release(old);
+                }
+                while (freeCount < required) {
+                    evictOne();
+                }
+                int[] blockIds = new int[required];
+                for (int i = 0; i < required; i++) {
+                    blockIds[i] = freeBlocks[--freeCount];
+                }
+                long expireAt = expireTime > 0 ? System.currentTimeMillis() + expireTime : 0;
+                Entry entry = new Entry(blockIds, bytes.length, expireAt);
+                write(entry, bytes);
+                index.put(key, entry);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove(Object key) {
+            lock.lock();
+            try {
+                Entry entry = index.remove(key);
+                if (null != entry) {
+                    release(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                for (Entry entry : index.values()) {
+                    release(entry);
+                }
+                index.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isExpired(Object key) {
+            lock.lock();
+            try {
+                Entry entry = index.get(key);
+                return null == entry || entry.isExpired(System.currentTimeMillis());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void collectKeys(List<Object> keys) {
+            lock.lock();
+            try {
+                keys.addAll(index.keySet());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return index.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int usedBlocks() {
+            lock.lock();
+            try {
+                return blocks - freeCount;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * CLOCK 淘汰一个缓存项：过期的直接淘汰，被访问过的清除标记后移到尾部（second chance），否则淘汰
+         * 注：调用方需持有锁，且 index 不为空（required <= blocks 保证了这一点）
+         */
+        private void evictOne() {
+            long now = System.currentTimeMillis();
+            while (true) {
+                Iterator<Map.Entry<Object, Entry>> iterator = index.entrySet().iterator();
+                Map.Entry<Object, Entry> head = iterator.next();
+                Entry entry = head.getValue();
+                iterator.remove();
+                if (entry.referenced && !entry.isExpired(now)) {
+                    entry.referenced = false;
+                    index.put(head.getKey(), entry);
+                    continue;
+                }
+                release(entry);
+                evictionCount.increment();
+                return;
+            }
+        }
+
+        private void removeEntry(Object key, Entry entry) {
+            index.remove(key);
+            release(entry);
+        }
+
+        private void release(Entry entry) {
+            for (int blockId : entry.blockIds) {
+                freeBlocks[freeCount++] = blockId;
+            }
+        }
+
+        private void write(Entry entry, byte[] bytes) {
+            int offset = 0;
+            for (int blockId : entry.blockIds) {
+                int length = Math.min(blockSize, bytes.length - offset);
+                // 转为Buffer调用，兼容jdk8
+                ((Buffer) slab).position(blockId * blockSize);
+                slab.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private byte[] read(Entry entry) {
+            byte[] bytes = new byte[entry.length];
+            int offset = 0;
+            for (int blockId : entry.blockIds) {
+                int length = Math.min(blockSize, entry.length - offset);
+                // 转为Buffer调用，兼容jdk8
+                ((Buffer) slab).position(blockId * blockSize);
+                slab.get(bytes, offset, length);
+                offset += length;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.coy.l2cache.cache.weigher;
+
+import com.coy.l2cache.consts.WeigherType;
+
+/**
+ * 缓存项权重计算器
+ * <p>
+ * 配合 maximumWeight 使用，使本地缓存按占用的字节数而不是缓存项数量进行淘汰
+ *
+ * @author chenck
+ * @date 2020/7/17 10:12
+ */
+@FunctionalInterface
+public interface CacheWeigher {
+
+    /**
+     * 计算缓存项的权重，必须大于等于0
+     */
+    int weigh(Object key, Object value);
+
+    /**
+     * 获取内置的权重计算器，未知类型时按序列化后的字节数计算
+     */
+    static CacheWeigher of(WeigherType weigherType) {
+        if (WeigherType.OBJECT_SIZE == weigherType) {
+            return ObjectSizeWeigher.INSTANCE;
+        }
+        return SerializedSizeWeigher.INSTANCE;
+    }
+}
@@ -0,0 +1,62 @@
+package com.coy.l2cache.cache.weigher;
+
+import com.coy.l2cache.load.LoadCost;
+
+/**
+ * 按加载耗时调整权重的计算器
+ * <p>
+ * 参考 GreedyDual-Size-Frequency 的思路，在基础权重（如：序列化后的字节数）之上按加载耗时进行缩放：
+ * weight = baseWeight * averageCost / cost
+ * 加载耗时越长的缓存项权重越小，在 maximumWeight 相同的情况下可保留更多加载代价高的缓存项，使本地缓存的容量用在节省后端耗时最多的地方；
+ * 缩放比例限制在 [1/scaleLimit, scaleLimit] 之间，避免个别极端耗时导致权重失真。
+ * <p>
+ * 注：加载耗时由 LoadFunction 记录在当前线程中，非加载写入（如：put）的缓存项无加载耗时，使用基础权重
+ *
+ * @author chenck
+ * @date 2020/7/20 15:55
+ * @see LoadCost
+ */
+public class LoadCostWeigher implements CacheWeigher {
+
+    /**
+     * 平均加载耗时的指数加权移动平均的平滑系数
+     */
+    private static final double EWMA_ALPHA = 0.05;
+
+    private final CacheWeigher delegate;
+
+    private final double scaleLimit;
+
+    /**
+     * 平均加载耗时(纳秒)
+     */
+    private volatile double averageNanos;
+
+    public LoadCostWeigher(CacheWeigher delegate, double scaleLimit) {
+        this.delegate = delegate;
+        this.scaleLimit = Math.max(1, scaleLimit);
+    }
+
+    @Override
+    public int weigh(Object key, Object value) {
+        int baseWeight = delegate.weigh(key, value);
+        long cost = LoadCost.take(key);
+        if (cost <= 0) {
+            return baseWeight;
+        }
+        double average = this.averageNanos;
+        this.averageNanos = average == 0 ? cost : average + EWMA_ALPHA * (cost - average);
+        if (average == 0) {
+            return baseWeight;
+        }
+        double scale = Math.max(1 / scaleLimit, Math.min(scaleLimit, average / cost));
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(baseWeight * scale)));
+    }
+
+    /**
+     * 平均加载耗时(纳秒)
+     */
+    public long getAverageNanos() {
+        return (long) averageNanos;
+    }
+}
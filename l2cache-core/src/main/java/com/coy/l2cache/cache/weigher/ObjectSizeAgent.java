@@ -0,0 +1,32 @@
+package com.coy.l2cache.cache.weigher;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * 获取 Instrumentation 的 java agent
+ * <p>
+ * 启动参数增加 -javaagent:/path/to/l2cache-core.jar 后，ObjectSizeWeigher 通过 Instrumentation 获取对象大小，
+ * 否则按字段类型估算对象大小。
+ *
+ * @author chenck
+ * @date 2020/7/17 10:35
+ */
+public class ObjectSizeAgent {
+
+    private static volatile Instrumentation instrumentation;
+
+    public static void premain(String agentArgs, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    /**
+     * 未加载 agent 时返回null
+     */
+    public static Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+}
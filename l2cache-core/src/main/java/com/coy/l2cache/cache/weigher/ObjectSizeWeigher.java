@@ -0,0 +1,219 @@
+package com.coy.l2cache.cache.weigher;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按对象在堆内占用的字节数计算权重
+ * <p>
+ * 遍历对象图累加每个对象的大小：加载了 {@link ObjectSizeAgent} 时通过 Instrumentation 获取对象大小，
+ * 否则按64位jvm开启压缩指针时的内存布局（对象头12字节，引用4字节，8字节对齐）估算。
+ * <p>
+ * 注：jdk9+ 无法访问jdk内部类的私有字段，此时 String 估算其字符数组的大小，Collection、Map 通过公开方法遍历元素并估算其内部结构的大小，
+ * 其他对象只计算自身的大小
+ *
+ * @author chenck
+ * @date 2020/7/17 10:48
+ */
+public class ObjectSizeWeigher implements CacheWeigher {
+
+    public static final ObjectSizeWeigher INSTANCE = new ObjectSizeWeigher();
+
+    /**
+     * 单个缓存项最多遍历的对象数量，避免对象图过大时计算耗时过长
+     */
+    private static final int MAX_OBJECTS = 10000;
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+    /**
+     * 估算用：HashMap.Node 等Map内部节点的大小
+     */
+    private static final int MAP_ENTRY = 32;
+
+    /**
+     * String 的字符数组字段是否可访问
+     */
+    private static final boolean STRING_VALUE_ACCESSIBLE = isAccessible(String.class, "value");
+
+    private final ClassValue<ReferenceFields> referenceFields = new ClassValue<ReferenceFields>() {
+        @Override
+        protected ReferenceFields computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            boolean complete = true;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch (RuntimeException e) {
+                        // jdk9+ 模块未开放的字段，忽略
+                        complete = false;
+                    }
+                }
+            }
+            return new ReferenceFields(fields.toArray(new Field[0]), complete);
+        }
+    };
+
+    private final ClassValue<Long> shallowSizes = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long size = OBJECT_HEADER;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += sizeOfType(field.getType());
+                    }
+                }
+            }
+            return align(size);
+        }
+    };
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = this.sizeOf(key) + this.sizeOf(value);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 计算对象图占用的字节数
+     */
+    public long sizeOf(Object root) {
+        if (null == root) {
+            return 0;
+        }
+        Instrumentation instrumentation = ObjectSizeAgent.getInstrumentation();
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        visited.put(root, Boolean.TRUE);
+        long size = 0;
+        int count = 0;
+        while (!stack.isEmpty() && count++ < MAX_OBJECTS) {
+            Object object = stack.pop();
+            size += null != instrumentation ? instrumentation.getObjectSize(object) : this.shallowSizeOf(object);
+
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                if (!type.getComponentType().isPrimitive()) {
+                    for (int i = 0, length = Array.getLength(object); i < length; i++) {
+                        this.push(Array.get(object, i), stack, visited);
+                    }
+                }
+                continue;
+            }
+            if (object instanceof String && !STRING_VALUE_ACCESSIBLE) {
+                size += align(ARRAY_HEADER + (long) ((String) object).length());
+                continue;
+            }
+            ReferenceFields fields = referenceFields.get(type);
+            for (Field field : fields.fields) {
+                try {
+                    this.push(field.get(object), stack, visited);
+                } catch (IllegalAccessException e) {
+                    // ignore
+                }
+            }
+            if (!fields.complete) {
+                size += this.pushElements(object, stack, visited);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 内部字段不可访问的 Collection、Map 通过公开方法遍历元素，并返回估算的内部结构大小
+     */
+    private long pushElements(Object object, Deque<Object> stack, Map<Object, Boolean> visited) {
+        if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            for (Object element : collection) {
+                this.push(element, stack, visited);
+            }
+            return align(ARRAY_HEADER + (long) collection.size() * REFERENCE);
+        }
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                this.push(entry.getKey(), stack, visited);
+                this.push(entry.getValue(), stack, visited);
+            }
+            return align(ARRAY_HEADER + (long) map.size() * REFERENCE) + (long) map.size() * MAP_ENTRY;
+        }
+        return 0;
+    }
+
+    private void push(Object object, Deque<Object> stack, Map<Object, Boolean> visited) {
+        if (null != object && null == visited.put(object, Boolean.TRUE)) {
+            stack.push(object);
+        }
+    }
+
+    private long shallowSizeOf(Object object) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            return align(ARRAY_HEADER + (long) Array.getLength(object) * sizeOfType(type.getComponentType()));
+        }
+        return shallowSizes.get(type);
+    }
+
+    private static int sizeOfType(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * 类中引用类型的实例字段
+     */
+    private static final class ReferenceFields {
+        private final Field[] fields;
+        /**
+         * 是否所有字段都可访问
+         */
+        private final boolean complete;
+
+        private ReferenceFields(Field[] fields, boolean complete) {
+            this.fields = fields;
+            this.complete = complete;
+        }
+    }
+
+    private static boolean isAccessible(Class<?> type, String fieldName) {
+        try {
+            type.getDeclaredField(fieldName).setAccessible(true);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
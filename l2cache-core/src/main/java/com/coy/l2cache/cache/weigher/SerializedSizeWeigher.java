@@ -0,0 +1,41 @@
+package com.coy.l2cache.cache.weigher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * 按序列化后的字节数计算权重
+ * <p>
+ * 采用与堆外缓存、磁盘缓存相同的jdk序列化，权重与缓存项在这些缓存中占用的字节数一致；
+ * 无法序列化的缓存项按估算的对象大小计算。
+ * <p>
+ * 注：每次写入缓存时都会序列化一次，适用于写少读多的场景
+ *
+ * @author chenck
+ * @date 2020/7/17 10:20
+ */
+public class SerializedSizeWeigher implements CacheWeigher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerializedSizeWeigher.class);
+
+    public static final SerializedSizeWeigher INSTANCE = new SerializedSizeWeigher();
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = this.sizeOf(key) + this.sizeOf(value);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private long sizeOf(Object object) {
+        if (null == object) {
+            return 0;
+        }
+        try {
+            return SerializationUtils.serialize(object).length;
+        } catch (IllegalArgumentException e) {
+            logger.debug("[SerializedSizeWeigher] object can't be serialized, use object size, class={}", object.getClass().getName());
+            return ObjectSizeWeigher.INSTANCE.sizeOf(object);
+        }
+    }
+}
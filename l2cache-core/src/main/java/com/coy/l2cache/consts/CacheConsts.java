@@ -7,8 +7,10 @@ package com.coy.l2cache.consts;
 public class CacheConsts {
 
     /**
-     * 缓存操作类型 refresh 刷新缓存，clear 清理缓存
+     * 缓存操作类型 refresh 刷新缓存，clear 清理缓存（key为null时按keys批量清理，keys也为null时清理所有），evictTag 按标签清理缓存，spec 修改缓存的 caffeine spec（key 为新的 spec）
      */
     public static final String CACHE_REFRESH = "refresh";
     public static final String CACHE_CLEAR = "clear";
+    public static final String CACHE_EVICT_TAG = "evictTag";
+    public static final String CACHE_SPEC = "spec";
 }
@@ -8,6 +8,7 @@ package com.coy.l2cache.consts;
  */
 public enum CacheSyncPolicyType {
     REDIS,
+    REDIS_STREAM,
     KAFKA,
     ROCKETMQ,
     ;
@@ -14,8 +14,10 @@ public enum CacheType {
     // L1
     CAFFEINE,
     GUAVA,
+    OFFHEAP,
     // L2
     REDIS,
+    DISK,
     ;
 
     public static CacheType getCacheType(String type) {
@@ -0,0 +1,25 @@
+package com.coy.l2cache.consts;
+
+/**
+ * 权重计算器类型
+ *
+ * @author chenck
+ * @date 2020/7/17 10:05
+ */
+public enum WeigherType {
+    // 按序列化后的字节数计算权重
+    SERIALIZED,
+    // 按对象在堆内占用的字节数（估算）计算权重
+    OBJECT_SIZE,
+    ;
+
+    public static WeigherType getWeigherType(String type) {
+        WeigherType[] types = WeigherType.values();
+        for (WeigherType weigherType : types) {
+            if (weigherType.name().equalsIgnoreCase(type)) {
+                return weigherType;
+            }
+        }
+        return null;
+    }
+}
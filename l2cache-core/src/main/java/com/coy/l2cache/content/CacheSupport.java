@@ -4,6 +4,8 @@ import com.coy.l2cache.Cache;
 import com.coy.l2cache.CacheBuilder;
 import org.springframework.util.StringUtils;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -56,6 +58,13 @@ public class CacheSupport {
         }
     }
 
+    /**
+     * 获取所有已创建的缓存实例
+     */
+    public static Collection<Cache> getCaches() {
+        return Collections.unmodifiableCollection(CACHE_MAP.values());
+    }
+
     private static String buildKey(String cacheType, String cacheName) {
         return cacheType + "_" + cacheName;
     }
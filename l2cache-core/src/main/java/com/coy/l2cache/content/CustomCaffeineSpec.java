@@ -54,6 +54,16 @@ public class CustomCaffeineSpec {
      * @return a builder configured to the specification
      */
     public Caffeine<Object, Object> toBuilder() {
+        return this.toBuilder(false);
+    }
+
+    /**
+     * Returns a {@link Caffeine} builder configured according to this specification.
+     *
+     * @param skipExpireAfterWrite 是否跳过 expireAfterWrite，由调用方通过 Caffeine.expireAfter(Expiry) 实现可变的过期时间
+     * @return a builder configured to the specification
+     */
+    public Caffeine<Object, Object> toBuilder(boolean skipExpireAfterWrite) {
         Caffeine<Object, Object> builder = Caffeine.newBuilder();
         if (initialCapacity != UNSET_INT) {
             builder.initialCapacity(initialCapacity);
@@ -80,7 +90,7 @@ public class CustomCaffeineSpec {
         if (expireAfterAccessTimeUnit != null) {
             builder.expireAfterAccess(expireAfterAccessDuration, expireAfterAccessTimeUnit);
         }
-        if (expireAfterWriteTimeUnit != null) {
+        if (expireAfterWriteTimeUnit != null && !skipExpireAfterWrite) {
             builder.expireAfterWrite(expireAfterWriteDuration, expireAfterWriteTimeUnit);
         }
         if (refreshAfterWriteTimeUnit != null) {
@@ -92,6 +102,35 @@ public class CustomCaffeineSpec {
         return builder;
     }
 
+    /**
+     * 是否配置了 maximumWeight，配置了则需要设置权重计算器
+     */
+    public boolean isMaximumWeightSet() {
+        return maximumWeight != UNSET_INT;
+    }
+
+    /**
+     * 是否仅配置了 expireAfterWrite（未配置 expireAfterAccess），此时可通过可变过期时间对 expireAfterWrite 增加随机抖动
+     */
+    public boolean isOnlyExpireAfterWriteSet() {
+        return expireAfterWriteTimeUnit != null && expireAfterAccessTimeUnit == null;
+    }
+
+    /**
+     * 与新的 spec 相比，是否只有容量、过期时间的值发生了变化，可以通过 caffeine 的 Policy 原地调整
+     */
+    public boolean isLiveApplicable(CustomCaffeineSpec next) {
+        return (maximumSize == UNSET_INT) == (next.maximumSize == UNSET_INT)
+                && (maximumWeight == UNSET_INT) == (next.maximumWeight == UNSET_INT)
+                && (expireAfterWriteTimeUnit == null) == (next.expireAfterWriteTimeUnit == null)
+                && (expireAfterAccessTimeUnit == null) == (next.expireAfterAccessTimeUnit == null)
+                && Objects.equals(keyStrength, next.keyStrength)
+                && Objects.equals(valueStrength, next.valueStrength)
+                && recordStats == next.recordStats
+                && durationInNanos(refreshAfterWriteDuration, refreshAfterWriteTimeUnit) ==
+                durationInNanos(next.refreshAfterWriteDuration, next.refreshAfterWriteTimeUnit);
+    }
+
     /**
      * Creates a CaffeineSpec from a string.
      *
@@ -0,0 +1,119 @@
+package com.coy.l2cache.content;
+
+import com.coy.l2cache.CacheConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按缓存名称配置的 redis spec，格式与 CaffeineSpec 保持一致
+ * 如：expireTime=30s,maxIdleTime=10s,maxSize=10000，时间的单位为 d/h/m/s
+ *
+ * @author chenck
+ * @date 2020/7/25 10:20
+ */
+public class CustomRedisSpec {
+
+    public static final int UNSET_INT = -1;
+
+    static final String SPLIT_OPTIONS = ",";
+    static final String SPLIT_KEY_VALUE = "=";
+
+    final String specification;
+
+    long expireTime = UNSET_INT;
+    long maxIdleTime = UNSET_INT;
+    int maxSize = UNSET_INT;
+
+    private CustomRedisSpec(String specification) {
+        this.specification = specification;
+    }
+
+    /**
+     * Creates a CustomRedisSpec from a string.
+     *
+     * @param specification the string form
+     * @return the parsed specification
+     */
+    public static CustomRedisSpec parse(String specification) {
+        CustomRedisSpec spec = new CustomRedisSpec(specification);
+        for (String option : specification.split(SPLIT_OPTIONS)) {
+            spec.parseOption(option.trim());
+        }
+        return spec;
+    }
+
+    /**
+     * 将 spec 中配置的属性覆盖到 redis 配置中
+     */
+    public void apply(CacheConfig.Redis redis) {
+        if (expireTime != UNSET_INT) {
+            redis.setExpireTime(expireTime);
+        }
+        if (maxIdleTime != UNSET_INT) {
+            redis.setMaxIdleTime(maxIdleTime);
+        }
+        if (maxSize != UNSET_INT) {
+            redis.setMaxSize(maxSize);
+        }
+    }
+
+    /**
+     * Parses and applies the configuration option.
+     */
+    void parseOption(String option) {
+        if (option.isEmpty()) {
+            return;
+        }
+        String[] keyAndValue = option.split(SPLIT_KEY_VALUE);
+        CustomCaffeineSpec.requireArgument(keyAndValue.length == 2, "key-value pair %s must be key=value", option);
+
+        String key = keyAndValue[0].trim();
+        String value = keyAndValue[1].trim();
+        switch (key) {
+            case "expireTime":
+                CustomCaffeineSpec.requireArgument(expireTime == UNSET_INT, "expireTime was already set");
+                expireTime = parseMillis(key, value);
+                return;
+            case "maxIdleTime":
+                CustomCaffeineSpec.requireArgument(maxIdleTime == UNSET_INT, "maxIdleTime was already set");
+                maxIdleTime = parseMillis(key, value);
+                return;
+            case "maxSize":
+                CustomCaffeineSpec.requireArgument(maxSize == UNSET_INT, "maxSize was already set to %,d", maxSize);
+                maxSize = CustomCaffeineSpec.parseInt(key, value);
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown key " + key);
+        }
+    }
+
+    /**
+     * 解析带单位的时长，返回毫秒数
+     */
+    static long parseMillis(String key, String value) {
+        long duration = CustomCaffeineSpec.parseDuration(key, value);
+        TimeUnit unit = CustomCaffeineSpec.parseTimeUnit(key, value);
+        return unit.toMillis(duration);
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String toParsableString() {
+        return specification;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + toParsableString() + '}';
+    }
+}
@@ -3,8 +3,17 @@ package com.coy.l2cache.content;
 import com.coy.l2cache.CacheConfig;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.DoubleCodec;
+import org.redisson.client.codec.IntegerCodec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
 import org.redisson.config.Config;
+import org.springframework.util.StringUtils;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -18,6 +27,14 @@ public class RedissonSupport {
 
     private static final Map<String, RedissonClient> MAP = new ConcurrentHashMap<>();
 
+    private static final Map<String, Codec> CODEC_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 只能编解码字符串、数字、字节数组的编解码器，无法存储空值（NullValue）及开启提前刷新时的包装值（ExpiringValue）
+     */
+    private static final List<Class<? extends Codec>> UNSUPPORTED_CODECS = Arrays.asList(StringCodec.class, LongCodec.class,
+            IntegerCodec.class, DoubleCodec.class, ByteArrayCodec.class);
+
     private static final Object lock = new Object();
 
     /**
@@ -44,4 +61,29 @@ public class RedissonSupport {
             return redissonClient;
         }
     }
+
+    /**
+     * 获取编解码器实例，同一个类名共享一个实例，类名为空时返回null
+     * 注：二级缓存存储的值可能是 NullValue、ExpiringValue 等对象，不支持只能编解码字符串、数字的编解码器（如：StringCodec）
+     */
+    public static Codec getCodec(String codecClassName) {
+        if (!StringUtils.hasText(codecClassName)) {
+            return null;
+        }
+        return CODEC_MAP.computeIfAbsent(codecClassName, name -> {
+            Codec codec;
+            try {
+                codec = (Codec) Class.forName(name).newInstance();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("create redisson codec error, codec=" + name, e);
+            }
+            for (Class<? extends Codec> unsupported : UNSUPPORTED_CODECS) {
+                if (unsupported.isInstance(codec)) {
+                    throw new IllegalArgumentException("redisson codec can't store cache values such as NullValue, "
+                            + "use an object codec (e.g. JsonJacksonCodec), codec=" + name);
+                }
+            }
+            return codec;
+        });
+    }
 }
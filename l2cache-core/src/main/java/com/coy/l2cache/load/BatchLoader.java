@@ -0,0 +1,25 @@
+package com.coy.l2cache.load;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量加载器
+ * <p>
+ * 组合缓存配置了批量加载器后，并发的未命中（不同的key）在短时间窗口内合并为一次 loadAll 调用，
+ * 如：500个并发的未命中合并为几次 select ... where id in (...)
+ *
+ * @author chenck
+ * @date 2020/7/20 15:02
+ */
+@FunctionalInterface
+public interface BatchLoader<K, V> {
+
+    /**
+     * 批量加载数据
+     *
+     * @param keys 未命中缓存的key
+     * @return 加载到的数据，不存在的key可以不放入结果中（允许存储空值时会缓存空值，防止缓存穿透）
+     */
+    Map<K, V> loadAll(Set<K> keys) throws Exception;
+}
@@ -35,4 +35,10 @@ public interface CacheLoader<K, V> {
      */
     V load(K key) throws Exception;
 
+    /**
+     * 加载数据，不发送缓存同步消息
+     * 注：用于本节点自行发起的刷新（如：概率提前刷新），其他节点按各自的策略刷新，无需通知
+     */
+    V loadQuietly(K key);
+
 }
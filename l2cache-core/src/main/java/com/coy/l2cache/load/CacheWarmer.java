@@ -0,0 +1,369 @@
+package com.coy.l2cache.load;
+
+import com.coy.l2cache.Cache;
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.CaffeineCache;
+import com.coy.l2cache.cache.CompositeCache;
+import com.coy.l2cache.cache.Level1Cache;
+import com.coy.l2cache.cache.Level2Cache;
+import com.coy.l2cache.schedule.RefreshSupport;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import org.redisson.api.RBatch;
+import org.redisson.api.RListAsync;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 一级缓存预热
+ * <p>
+ * 冷启动的节点上每个首次请求都要逐个访问 redis，预热时按缓存从二级缓存分批获取key（HSCAN 遍历或定期记录的热点key），
+ * 每批通过一次批量获取（HMGET）取值后写入一级缓存，由有界线程池并行加载，队列满时由扫描线程自己执行，避免key在内存中堆积。
+ * 写入一级缓存时不发送缓存同步消息，且只在key不存在时写入，不覆盖请求已加载的新值；批量获取期间一级缓存发生了清除时，
+ * 写入的值可能是清除前获取的旧值，清除本批写入的key，由之后的请求重新加载。
+ * 预热进度只统计成功处理的key，获取失败的批次计入失败数，不计入进度。
+ *
+ * @author chenck
+ * @date 2020/7/25 17:20
+ */
+public class CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    /**
+     * 热点key列表的名称前缀
+     */
+    private static final String HOT_KEYS_PREFIX = "l2cache:hotkeys:";
+
+    /**
+     * 预热的key来源
+     */
+    public enum Source {
+        SCAN,
+        HOT_KEYS,
+        ;
+
+        public static Source getSource(String source) {
+            for (Source value : Source.values()) {
+                if (value.name().equalsIgnoreCase(source)) {
+                    return value;
+                }
+            }
+            return SCAN;
+        }
+    }
+
+    private final CacheConfig cacheConfig;
+
+    private final CacheConfig.Warmup warmup;
+
+    /**
+     * 用于读写热点key列表，为null时不支持 HOT_KEYS
+     */
+    private final RedissonClient redissonClient;
+
+    public CacheWarmer(CacheConfig cacheConfig, RedissonClient redissonClient) {
+        this.cacheConfig = cacheConfig;
+        this.warmup = cacheConfig.getWarmup();
+        this.redissonClient = redissonClient;
+    }
+
+    /**
+     * 在后台线程中预热，立即返回预热进度
+     */
+    public Progress warmup(Collection<Cache> caches) {
+        Progress progress = new Progress();
+        new DaemonThreadFactory("l2cache-warmup-").newThread(() -> this.doWarmup(caches, progress)).start();
+        return progress;
+    }
+
+    private void doWarmup(Collection<Cache> caches, Progress progress) {
+        int parallelism = Math.max(1, warmup.getParallelism());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 2), new DaemonThreadFactory("l2cache-warmup-loader-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        long start = System.currentTimeMillis();
+        try {
+            List<Target> targets = new ArrayList<>();
+            for (Cache cache : caches) {
+                if (!(cache instanceof CompositeCache)) {
+                    logger.warn("[CacheWarmer] only composite cache can be warmed up, skip, cacheName={}, cacheType={}",
+                            cache.getCacheName(), cache.getCacheType());
+                    continue;
+                }
+                CompositeCache compositeCache = (CompositeCache) cache;
+                Target target = new Target(cache.getCacheName(), compositeCache.getLevel1Cache(), compositeCache.getLevel2Cache());
+                // 先估算所有缓存的key数量，使预热进度的比例有意义
+                target.estimated = this.estimate(target);
+                progress.target.addAndGet(target.estimated);
+                targets.add(target);
+            }
+            for (Target target : targets) {
+                this.warmup(target, executor, progress);
+            }
+        } catch (Exception e) {
+            logger.error("[CacheWarmer] warmup error", e);
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            progress.finish();
+            logger.info("[CacheWarmer] warmup done, caches={}, loaded={}, processed={}, failed={}, cost={}ms", caches.size(),
+                    progress.getLoaded(), progress.getProcessed(), progress.getFailed(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private void warmup(Target target, ThreadPoolExecutor executor, Progress progress) {
+        Iterator<Object> keys = this.keys(target);
+        if (null == keys) {
+            logger.warn("[CacheWarmer] level2 cache not support scan keys, skip, cacheName={}", target.cacheName);
+            progress.target.addAndGet(-target.estimated);
+            return;
+        }
+        int batchSize = Math.max(1, warmup.getBatchSize());
+        List<Object> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        while (count < warmup.getMaxKeysPerCache() && keys.hasNext()) {
+            batch.add(keys.next());
+            count++;
+            if (batch.size() >= batchSize) {
+                this.submit(target, batch, executor, progress);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            this.submit(target, batch, executor, progress);
+        }
+        // 实际的key数量与估算的不一致时修正
+        progress.target.addAndGet(count - target.estimated);
+        logger.info("[CacheWarmer] cache keys submitted, cacheName={}, keys={}", target.cacheName, count);
+    }
+
+    private void submit(Target target, List<Object> batch, ThreadPoolExecutor executor, Progress progress) {
+        executor.execute(() -> {
+            Level1Cache level1Cache = target.level1Cache;
+            // 先记录清除次数再获取二级缓存的值：之后发生的清除，其对应的二级缓存变更可能晚于本次获取
+            long invalidationCount = level1Cache.getInvalidationCount();
+            Map<Object, Object> values;
+            try {
+                values = target.level2Cache.batchGet(batch);
+            } catch (Exception e) {
+                progress.failed.addAndGet(batch.size());
+                logger.error("[CacheWarmer] load batch error, cacheName={}, size={}", target.cacheName, batch.size(), e);
+                return;
+            }
+            List<Object> written = new ArrayList<>(values.size());
+            for (Map.Entry<Object, Object> entry : values.entrySet()) {
+                if (null == entry.getValue() && !level1Cache.isAllowNullValues()) {
+                    continue;
+                }
+                if (level1Cache.putLocalIfAbsent(entry.getKey(), entry.getValue())) {
+                    written.add(entry.getKey());
+                }
+            }
+            if (!written.isEmpty() && level1Cache.getInvalidationCount() != invalidationCount) {
+                // 期间发生了清除，无法确定写入的值是否在清除之前获取，清除本批写入的key
+                for (Object key : written) {
+                    level1Cache.clearLocalCache(key);
+                }
+                logger.debug("[CacheWarmer] cache invalidated during batch, discard, cacheName={}, size={}", target.cacheName, written.size());
+                written.clear();
+            }
+            progress.loaded.addAndGet(written.size());
+            progress.processed.addAndGet(batch.size());
+        });
+    }
+
+    private Iterator<Object> keys(Target target) {
+        if (Source.getSource(warmup.getSource()) != Source.HOT_KEYS) {
+            return target.level2Cache.scanKeys(warmup.getBatchSize());
+        }
+        if (null == redissonClient) {
+            return null;
+        }
+        return redissonClient.getList(HOT_KEYS_PREFIX + target.cacheName, this.getCodec(target.level2Cache)).readAll().iterator();
+    }
+
+    /**
+     * 估算需要预热的key数量
+     */
+    private long estimate(Target target) {
+        long size = warmup.getMaxKeysPerCache();
+        try {
+            if (Source.getSource(warmup.getSource()) == Source.HOT_KEYS) {
+                if (null != redissonClient) {
+                    size = redissonClient.getList(HOT_KEYS_PREFIX + target.cacheName, this.getCodec(target.level2Cache)).size();
+                }
+            } else if (target.level2Cache.getActualCache() instanceof RMap) {
+                size = ((RMap<?, ?>) target.level2Cache.getActualCache()).size();
+            }
+        } catch (Exception e) {
+            logger.warn("[CacheWarmer] estimate keys error, cacheName={}, error={}", target.cacheName, e.getMessage());
+        }
+        return Math.min(size, warmup.getMaxKeysPerCache());
+    }
+
+    /**
+     * 定期将一级缓存中按访问频率排序的热点key记录到 redis，供 HOT_KEYS 预热使用
+     */
+    public void startRecordHotKeys(Supplier<Collection<Cache>> caches) {
+        if (null == redissonClient) {
+            logger.warn("[CacheWarmer] no redisson client, can't record hot keys");
+            return;
+        }
+        long period = warmup.getHotKeysRecordPeriod();
+        RefreshSupport.getInstance(cacheConfig.getCaffeine().getRefreshPoolSize()).scheduleWithFixedDelay(() -> {
+            try {
+                this.recordHotKeys(caches.get());
+            } catch (Exception e) {
+                logger.error("[CacheWarmer] record hot keys error", e);
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一级缓存（caffeine）中的热点key
+     */
+    public void recordHotKeys(Collection<Cache> caches) {
+        for (Cache cache : caches) {
+            if (!(cache instanceof CompositeCache) || !(((CompositeCache) cache).getLevel1Cache() instanceof CaffeineCache)) {
+                continue;
+            }
+            CaffeineCache caffeineCache = (CaffeineCache) ((CompositeCache) cache).getLevel1Cache();
+            List<Object> hotKeys = caffeineCache.getActualCache().policy().eviction()
+                    .map(eviction -> (List<Object>) new ArrayList<>(eviction.hottest(warmup.getMaxKeysPerCache()).keySet()))
+                    .orElse(Collections.emptyList());
+            if (hotKeys.isEmpty()) {
+                continue;
+            }
+            RBatch batch = redissonClient.createBatch();
+            RListAsync<Object> list = batch.getList(HOT_KEYS_PREFIX + cache.getCacheName(),
+                    this.getCodec(((CompositeCache) cache).getLevel2Cache()));
+            list.deleteAsync();
+            list.addAllAsync(hotKeys);
+            batch.execute();
+            logger.debug("[CacheWarmer] record hot keys, cacheName={}, size={}", cache.getCacheName(), hotKeys.size());
+        }
+    }
+
+    /**
+     * 热点key列表与二级缓存使用相同的编解码器，保证key的类型一致
+     */
+    private Codec getCodec(Level2Cache level2Cache) {
+        if (level2Cache.getActualCache() instanceof RMap) {
+            return ((RMap<?, ?>) level2Cache.getActualCache()).getCodec();
+        }
+        return redissonClient.getConfig().getCodec();
+    }
+
+    /**
+     * 预热的缓存
+     */
+    private static final class Target {
+        private final String cacheName;
+        private final Level1Cache level1Cache;
+        private final Level2Cache level2Cache;
+        private long estimated;
+
+        private Target(String cacheName, Level1Cache level1Cache, Level2Cache level2Cache) {
+            this.cacheName = cacheName;
+            this.level1Cache = level1Cache;
+            this.level2Cache = level2Cache;
+        }
+    }
+
+    /**
+     * 预热进度
+     */
+    public static class Progress {
+
+        private final AtomicLong target = new AtomicLong();
+        private final AtomicLong loaded = new AtomicLong();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private void finish() {
+            finished.countDown();
+        }
+
+        public boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+
+        public long getTarget() {
+            return target.get();
+        }
+
+        /**
+         * 写入一级缓存的key数量
+         */
+        public long getLoaded() {
+            return loaded.get();
+        }
+
+        /**
+         * 成功处理的key数量，包括写入的、二级缓存中不存在的、一级缓存中已存在的
+         */
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        /**
+         * 获取失败的key数量
+         */
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * 成功处理的比例，完成且没有失败时为1
+         * 注：失败的key不计入，二级缓存不可用时达不到就绪的比例
+         */
+        public double getPercent() {
+            if (this.isFinished() && failed.get() == 0) {
+                return 1.0;
+            }
+            long total = target.get();
+            return total <= 0 ? 0 : Math.min(1.0, (double) processed.get() / total);
+        }
+
+        /**
+         * 等待预热达到指定的比例
+         *
+         * @return false 表示超时，或预热已结束但未达到指定的比例
+         */
+        public boolean await(double percent, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (this.getPercent() < percent) {
+                if (this.isFinished()) {
+                    return false;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                finished.await(Math.min(remaining, 50), TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+    }
+}
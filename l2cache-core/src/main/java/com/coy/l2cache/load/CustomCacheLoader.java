@@ -77,4 +77,11 @@ public class CustomCacheLoader implements CacheLoader<Object, Object> {
         return loadFunction.apply(key);
     }
 
+    @Override
+    public Object loadQuietly(Object key) {
+        Callable<?> valueLoader = VALUE_LOADER_CACHE.get(key);
+        LoadFunction loadFunction = new LoadFunction(this.instanceId, this.cacheType, cacheName, level2Cache, null, valueLoader);
+        return loadFunction.apply(key);
+    }
+
 }
@@ -0,0 +1,159 @@
+package com.coy.l2cache.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 概率提前刷新策略（XFetch）
+ * <p>
+ * 同一批加载的缓存项（如：发布后的预热）会在同一时刻过期，导致数据库周期性的负载尖峰。
+ * 每次读取时根据缓存项的剩余存活时间和加载耗时(delta)计算是否提前刷新：
+ * delta * beta * -ln(random) >= 剩余存活时间
+ * 越接近过期、加载耗时越长，提前刷新的概率越大，命中后异步刷新，当前线程仍返回旧值，从而将集中过期打散。
+ * <p>
+ * 另外支持写入时对过期时间增加随机抖动，避免同一批写入的缓存项同时过期。
+ *
+ * @author chenck
+ * @date 2020/7/20 10:12
+ */
+public class EarlyRefreshPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(EarlyRefreshPolicy.class);
+
+    /**
+     * 加载耗时的指数加权移动平均的平滑系数
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String cacheName;
+
+    /**
+     * 提前刷新系数，值越大越提前刷新，小于等于0表示不开启提前刷新
+     */
+    private final double beta;
+
+    /**
+     * 过期时间的随机抖动比例，如：0.1 表示过期时间在 [0.9, 1.1] 倍之间随机，小于等于0表示不抖动
+     */
+    private final double jitterRatio;
+
+    /**
+     * 加载耗时的移动平均值(纳秒)
+     */
+    private volatile double loadNanos;
+
+    /**
+     * 正在刷新的key，保证同一个key同一时刻只有一个提前刷新任务
+     */
+    private final Set<Object> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 执行异步刷新的线程池，加载数据一般会阻塞，所以使用有界的刷新线程池
+     */
+    private final Executor executor;
+
+    public EarlyRefreshPolicy(String cacheName, double beta, double jitterRatio, Executor executor) {
+        this.cacheName = cacheName;
+        this.beta = beta;
+        this.jitterRatio = jitterRatio;
+        this.executor = executor;
+    }
+
+    public boolean isEarlyRefreshEnabled() {
+        return beta > 0;
+    }
+
+    public boolean isJitterEnabled() {
+        return jitterRatio > 0;
+    }
+
+    /**
+     * 记录一次加载的耗时
+     */
+    public void recordLoadTime(long nanos) {
+        double current = this.loadNanos;
+        this.loadNanos = current == 0 ? nanos : current + EWMA_ALPHA * (nanos - current);
+    }
+
+    /**
+     * 加载耗时的移动平均值(纳秒)
+     */
+    public long getLoadNanos() {
+        return (long) loadNanos;
+    }
+
+    /**
+     * 基于该缓存的平均加载耗时，判断是否需要提前刷新
+     *
+     * @param remainingNanos 剩余存活时间(纳秒)，小于0表示未知
+     */
+    public boolean shouldRefresh(long remainingNanos) {
+        return this.shouldRefresh(remainingNanos, (long) loadNanos);
+    }
+
+    /**
+     * 判断是否需要提前刷新
+     *
+     * @param remainingNanos 剩余存活时间(纳秒)，小于0表示未知
+     * @param deltaNanos     加载耗时(纳秒)
+     */
+    public boolean shouldRefresh(long remainingNanos, long deltaNanos) {
+        if (beta <= 0 || remainingNanos < 0 || deltaNanos <= 0) {
+            return false;
+        }
+        // 1 - nextDouble() 的取值范围为 (0, 1]，避免 ln(0)
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return deltaNanos * beta * -Math.log(random) >= remainingNanos;
+    }
+
+    /**
+     * 对过期时间增加随机抖动
+     */
+    public long jitter(long duration) {
+        if (jitterRatio <= 0 || duration <= 0) {
+            return duration;
+        }
+        double factor = 1 + jitterRatio * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(1, (long) (duration * factor));
+    }
+
+    /**
+     * 在指定的过期时间的基础上只向上随机抖动，用于显式指定了过期时间的缓存项，保证二级缓存不早于一级缓存过期
+     */
+    public long jitterUp(long duration) {
+        if (jitterRatio <= 0 || duration <= 0) {
+            return duration;
+        }
+        double factor = 1 + jitterRatio * ThreadLocalRandom.current().nextDouble();
+        return Math.max(1, (long) (duration * factor));
+    }
+
+    /**
+     * 异步刷新，同一个key同一时刻只提交一个刷新任务
+     */
+    public void refreshAsync(Object key, Runnable refresher) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        logger.debug("[EarlyRefreshPolicy] early refresh, cacheName={}, key={}", cacheName, key);
+        try {
+            executor.execute(() -> {
+                try {
+                    refresher.run();
+                } catch (Exception e) {
+                    logger.warn("[EarlyRefreshPolicy] early refresh error, cacheName={}, key={}", cacheName, key, e);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshingKeys.remove(key);
+            logger.warn("[EarlyRefreshPolicy] submit early refresh error, cacheName={}, key={}", cacheName, key, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.coy.l2cache.load;
+
+import java.io.Serializable;
+
+/**
+ * 带过期时间和加载耗时的缓存值
+ * <p>
+ * 二级缓存开启概率提前刷新时，缓存值与其过期时间、加载耗时一起存储，读取时无需额外查询剩余存活时间即可计算是否提前刷新。
+ *
+ * @author chenck
+ * @date 2020/7/20 11:30
+ * @see EarlyRefreshPolicy
+ */
+public class ExpiringValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 缓存值
+     */
+    private Object value;
+
+    /**
+     * 过期时间点(ms)
+     */
+    private long expireAt;
+
+    /**
+     * 加载耗时(纳秒)
+     */
+    private long loadNanos;
+
+    public ExpiringValue() {
+    }
+
+    public ExpiringValue(Object value, long expireAt, long loadNanos) {
+        this.value = value;
+        this.expireAt = expireAt;
+        this.loadNanos = loadNanos;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * 剩余存活时间(纳秒)
+     */
+    public long remainingNanos() {
+        return Math.max(0, (expireAt - System.currentTimeMillis()) * 1_000_000L);
+    }
+}
@@ -0,0 +1,54 @@
+package com.coy.l2cache.load;
+
+/**
+ * 加载耗时
+ * <p>
+ * 开启 costAware 的 caffeine 缓存加载数据后将本次加载的耗时（从L2获取及执行目标方法的耗时）记录到当前线程，
+ * 本地缓存写入加载结果时在同一线程中计算权重，由权重计算器取出并据此调整缓存项的权重。
+ * 加载结果为null时不写入缓存，不记录；写入缓存的调用结束后清除，避免残留在线程（如：刷新线程）中。
+ *
+ * @author chenck
+ * @date 2020/7/20 15:40
+ * @see com.coy.l2cache.cache.weigher.LoadCostWeigher
+ */
+public final class LoadCost {
+
+    private static final ThreadLocal<LoadCost> CURRENT = new ThreadLocal<>();
+
+    private final Object key;
+    private final long nanos;
+
+    private LoadCost(Object key, long nanos) {
+        this.key = key;
+        this.nanos = nanos;
+    }
+
+    /**
+     * 记录当前线程加载指定key的耗时
+     */
+    public static void record(Object key, long nanos) {
+        CURRENT.set(new LoadCost(key, nanos));
+    }
+
+    /**
+     * 清除当前线程记录的加载耗时
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 取出并清除当前线程加载指定key的耗时，没有记录或key不一致时返回-1
+     */
+    public static long take(Object key) {
+        LoadCost loadCost = CURRENT.get();
+        if (null == loadCost) {
+            return -1;
+        }
+        CURRENT.remove();
+        if (null == key ? null != loadCost.key : !key.equals(loadCost.key)) {
+            return -1;
+        }
+        return loadCost.nanos;
+    }
+}
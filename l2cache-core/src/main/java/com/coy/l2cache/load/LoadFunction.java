@@ -43,6 +43,10 @@ public class LoadFunction implements Function<Object, Object> {
 
     @Override
     public Object apply(Object key) {
+        if (null != cacheSyncPolicy) {
+            // 加载的值将写入本地缓存，先通知缓存同步策略
+            cacheSyncPolicy.interest(this.cacheName, key);
+        }
         try {
             // 走到此处，表明从L1中没有获取到缓存，需要先从L2中获取缓存，若L2无缓存，则再执行目标方法加载数据到缓存
             if (null == level2Cache) {
@@ -0,0 +1,192 @@
+package com.coy.l2cache.schedule;
+
+import com.coy.l2cache.CacheConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 一级缓存全局预算再平衡Task
+ * <p>
+ * 所有 caffeine 一级缓存共享一个全局预算（缓存项数量或权重），定期根据每个缓存在上一个周期的统计数据重新分配：
+ * 1、未发生淘汰的缓存：容量足够，收缩到 当前使用量 * (1 + headroomRatio)，释放空闲的预算
+ * 2、发生了淘汰的缓存：增加容量可以将部分未命中转为命中，剩余预算按其未命中数量的比例分配，未命中越多，边际命中率收益越大
+ * 3、每个缓存至少分配 minimumPerCache，且每次只调整到目标值的一半（阻尼），避免容量来回震荡
+ * <p>
+ * 注：需在 spec 中配置 recordStats，未开启统计或无容量限制的缓存不参与再平衡
+ *
+ * @author chenck
+ * @date 2020/7/17 15:02
+ */
+public class L1BudgetRebalanceTask implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(L1BudgetRebalanceTask.class);
+
+    private final CacheConfig.Budget budget;
+
+    /**
+     * <key,value>=<cacheName, Budgeted>
+     */
+    private final Map<String, Budgeted> caches = new ConcurrentHashMap<>();
+
+    public L1BudgetRebalanceTask(CacheConfig.Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * 注册参与全局预算的caffeine缓存，并平均分配预算
+     */
+    public synchronized void register(String cacheName, Cache<Object, Object> cache) {
+        this.register(cacheName, () -> cache);
+    }
+
+    /**
+     * 注册参与全局预算的caffeine缓存，并平均分配预算
+     *
+     * @param cacheSupplier 获取当前的caffeine实例，按代清除时实例会被替换
+     */
+    public synchronized void register(String cacheName, Supplier<Cache<Object, Object>> cacheSupplier) {
+        Cache<Object, Object> cache = cacheSupplier.get();
+        Optional<Policy.Eviction<Object, Object>> eviction = cache.policy().eviction();
+        if (!eviction.isPresent()) {
+            logger.warn("[L1Budget] cache has no maximumSize or maximumWeight, skip, cacheName={}", cacheName);
+            return;
+        }
+        if (eviction.get().isWeighted() != budget.isWeighted()) {
+            logger.warn("[L1Budget] cache eviction mode not match the budget, skip, cacheName={}, weighted={}", cacheName,
+                    eviction.get().isWeighted());
+            return;
+        }
+        if (!cache.policy().isRecordingStats()) {
+            logger.warn("[L1Budget] cache not recording stats, skip, cacheName={}", cacheName);
+            return;
+        }
+        caches.put(cacheName, new Budgeted(cacheName, cacheSupplier, cache, eviction.get()));
+
+        long share = Math.max(budget.getMinimumPerCache(), budget.getMaximum() / caches.size());
+        for (Budgeted budgeted : caches.values()) {
+            budgeted.eviction.setMaximum(share);
+        }
+        logger.info("[L1Budget] register cache, cacheName={}, caches={}, share={}", cacheName, caches.size(), share);
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.rebalance();
+        } catch (Exception e) {
+            logger.error("[L1Budget] rebalance error", e);
+        }
+    }
+
+    /**
+     * 重新分配全局预算
+     */
+    public synchronized void rebalance() {
+        if (caches.isEmpty()) {
+            return;
+        }
+        long minimum = budget.getMinimumPerCache();
+        long remaining = budget.getMaximum();
+        List<Budgeted> pressured = new ArrayList<>();
+        long totalMisses = 0;
+        for (Budgeted budgeted : caches.values()) {
+            budgeted.sample();
+            if (budgeted.evictionDelta > 0) {
+                pressured.add(budgeted);
+                totalMisses += budgeted.missDelta;
+                remaining -= minimum;
+            } else {
+                budgeted.target = Math.max(minimum, (long) Math.ceil(budgeted.used() * (1 + budget.getHeadroomRatio())));
+                remaining -= budgeted.target;
+            }
+        }
+        remaining = Math.max(0, remaining);
+        for (Budgeted budgeted : pressured) {
+            long share = totalMisses > 0 ? (long) ((double) remaining * budgeted.missDelta / totalMisses) : remaining / pressured.size();
+            budgeted.target = minimum + share;
+        }
+
+        for (Budgeted budgeted : caches.values()) {
+            long current = budgeted.eviction.getMaximum();
+            long next = Math.max(minimum, current + (budgeted.target - current) / 2);
+            if (next != current) {
+                budgeted.eviction.setMaximum(next);
+            }
+            logger.debug("[L1Budget] rebalance, cacheName={}, misses={}, evictions={}, used={}, maximum={} -> {}", budgeted.cacheName,
+                    budgeted.missDelta, budgeted.evictionDelta, budgeted.used(), current, next);
+        }
+    }
+
+    /**
+     * 当前分配给各个缓存的预算
+     */
+    public Map<String, Long> allocations() {
+        Map<String, Long> allocations = new ConcurrentHashMap<>();
+        for (Budgeted budgeted : caches.values()) {
+            allocations.put(budgeted.cacheName, budgeted.eviction.getMaximum());
+        }
+        return allocations;
+    }
+
+    /**
+     * 参与全局预算的缓存
+     */
+    private static final class Budgeted {
+        private final String cacheName;
+        private final Supplier<Cache<Object, Object>> cacheSupplier;
+        private Cache<Object, Object> cache;
+        private Policy.Eviction<Object, Object> eviction;
+        private long lastMissCount;
+        private long lastEvictionCount;
+        private long missDelta;
+        private long evictionDelta;
+        private long target;
+
+        private Budgeted(String cacheName, Supplier<Cache<Object, Object>> cacheSupplier, Cache<Object, Object> cache,
+                         Policy.Eviction<Object, Object> eviction) {
+            this.cacheName = cacheName;
+            this.cacheSupplier = cacheSupplier;
+            this.cache = cache;
+            this.eviction = eviction;
+            CacheStats stats = cache.stats();
+            this.lastMissCount = stats.missCount();
+            this.lastEvictionCount = stats.evictionCount();
+        }
+
+        /**
+         * 采集上一个周期的统计数据
+         */
+        private void sample() {
+            Cache<Object, Object> current = cacheSupplier.get();
+            if (current != cache) {
+                // 实例已替换（按代清除），统计数据从新实例重新开始
+                Optional<Policy.Eviction<Object, Object>> currentEviction = current.policy().eviction();
+                if (currentEviction.isPresent()) {
+                    this.cache = current;
+                    this.eviction = currentEviction.get();
+                    this.lastMissCount = 0;
+                    this.lastEvictionCount = 0;
+                }
+            }
+            CacheStats stats = cache.stats();
+            this.missDelta = stats.missCount() - lastMissCount;
+            this.evictionDelta = stats.evictionCount() - lastEvictionCount;
+            this.lastMissCount = stats.missCount();
+            this.lastEvictionCount = stats.evictionCount();
+        }
+
+        private long used() {
+            return eviction.weightedSize().orElse(cache.estimatedSize());
+        }
+    }
+}
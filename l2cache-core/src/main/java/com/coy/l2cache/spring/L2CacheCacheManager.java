@@ -1,19 +1,33 @@
 package com.coy.l2cache.spring;
 
+import com.coy.l2cache.cache.CaffeineCache;
+import com.coy.l2cache.cache.CompositeCache;
+import com.coy.l2cache.cache.expire.AsyncRemovalDispatcher;
 import com.coy.l2cache.cache.expire.CacheExpiredListener;
 import com.coy.l2cache.cache.expire.DefaultCacheExpiredListener;
 import com.coy.l2cache.CacheBuilder;
 import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.consts.CacheType;
 import com.coy.l2cache.content.CacheSupport;
+import com.coy.l2cache.load.CacheWarmer;
+import com.coy.l2cache.schedule.L1BudgetRebalanceTask;
+import com.coy.l2cache.schedule.RefreshSupport;
 import com.coy.l2cache.spi.ServiceLoader;
 import com.coy.l2cache.CacheSyncPolicy;
+import com.coy.l2cache.sync.CacheMessage;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * L2Cache Cache Manager
@@ -21,7 +35,7 @@ import java.util.concurrent.ConcurrentMap;
  * @author chenck
  * @date 2020/7/6 11:18
  */
-public class L2CacheCacheManager implements CacheManager {
+public class L2CacheCacheManager implements CacheManager, DisposableBean {
 
     // 缓存Map<cacheName, Cache>
     private final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<>(16);
@@ -41,11 +55,22 @@ public class L2CacheCacheManager implements CacheManager {
 
     private Object actualCacheClient;
 
+    /**
+     * 一级缓存预热，为null时不支持预热
+     */
+    private CacheWarmer cacheWarmer;
+
+    /**
+     * 一级缓存全局预算再平衡，未配置全局预算时为null
+     */
+    private final L1BudgetRebalanceTask budgetRebalanceTask;
+
     public L2CacheCacheManager(CacheConfig cacheConfig) {
         this(cacheConfig, null, defaultCacheExpiredListener);
     }
 
     public L2CacheCacheManager(CacheConfig cacheConfig, CacheSyncPolicy cacheSyncPolicy, CacheExpiredListener expiredListener) {
+        cacheConfig.validate();
         this.dynamic = cacheConfig.isDynamic();
         this.cacheConfig = cacheConfig;
         if (null == expiredListener) {
@@ -54,6 +79,16 @@ public class L2CacheCacheManager implements CacheManager {
             this.expiredListener = expiredListener;
         }
         this.cacheSyncPolicy = cacheSyncPolicy;
+
+        CacheConfig.Budget budget = cacheConfig.getBudget();
+        if (budget.getMaximum() > 0) {
+            this.budgetRebalanceTask = new L1BudgetRebalanceTask(budget);
+            RefreshSupport.getInstance(cacheConfig.getCaffeine().getRefreshPoolSize())
+                    .scheduleWithFixedDelay(this.budgetRebalanceTask, budget.getRebalancePeriod(),
+                            budget.getRebalancePeriod(), TimeUnit.SECONDS);
+        } else {
+            this.budgetRebalanceTask = null;
+        }
     }
 
     @Override
@@ -63,7 +98,7 @@ public class L2CacheCacheManager implements CacheManager {
             synchronized (this.cacheMap) {
                 cache = this.cacheMap.get(name);
                 if (cache == null) {
-                    cache = createL2CacheSpringCache(cacheConfig.getCacheType(), name);
+                    cache = createL2CacheSpringCache(cacheConfig.getCacheType(name), name);
                     this.cacheMap.put(name, cache);
                 }
             }
@@ -84,9 +119,25 @@ public class L2CacheCacheManager implements CacheManager {
      */
     protected Cache createL2CacheSpringCache(String cacheType, String cacheName) {
         com.coy.l2cache.Cache cache = this.getL2CacheInstance(cacheType, cacheName);
+        this.registerBudget(cacheName, cache);
         return new L2CacheSpringCache(cacheName, cacheConfig, cache);
     }
 
+    /**
+     * 将caffeine一级缓存注册到全局预算中
+     */
+    private void registerBudget(String cacheName, com.coy.l2cache.Cache cache) {
+        if (null == budgetRebalanceTask) {
+            return;
+        }
+        if (cache instanceof CompositeCache) {
+            cache = ((CompositeCache) cache).getLevel1Cache();
+        }
+        if (cache instanceof CaffeineCache) {
+            budgetRebalanceTask.register(cacheName, ((CaffeineCache) cache)::getActualCache);
+        }
+    }
+
     /**
      * get or create l2cache
      */
@@ -99,20 +150,110 @@ public class L2CacheCacheManager implements CacheManager {
         CacheBuilder cacheBuilder = ServiceLoader.load(CacheBuilder.class, cacheType);
         cacheBuilder.setCacheConfig(this.cacheConfig);
         cacheBuilder.setExpiredListener(this.expiredListener);
-        cacheBuilder.setCacheSyncPolicy(this.cacheSyncPolicy);
+        // 按缓存名称关闭同步时，缓存变更不通知其他节点
+        cacheBuilder.setCacheSyncPolicy(cacheConfig.isSyncEnabled(cacheName) ? this.cacheSyncPolicy : null);
         cacheBuilder.setActualCacheClient(this.actualCacheClient);
 
         return CacheSupport.getCache(cacheType, cacheName, cacheBuilder);
     }
 
+    /**
+     * 运行时修改缓存的 caffeine spec，并通知其他节点
+     * 注：缓存尚未创建时只修改配置，创建时使用新的 spec
+     *
+     * @see CaffeineCache#applySpec(String)
+     */
+    public void updateSpec(String cacheName, String spec) {
+        CaffeineCache caffeineCache = this.getCaffeineCache(cacheName);
+        if (null != caffeineCache) {
+            caffeineCache.updateSpec(spec);
+            return;
+        }
+        if (StringUtils.hasText(spec)) {
+            cacheConfig.getCaffeine().getSpecs().put(cacheName, spec);
+        } else {
+            cacheConfig.getCaffeine().getSpecs().remove(cacheName);
+        }
+        if (null != cacheSyncPolicy && cacheConfig.isSyncEnabled(cacheName)) {
+            cacheSyncPolicy.publish(new CacheMessage(cacheConfig.getInstanceId(), CacheType.CAFFEINE.name().toLowerCase(), cacheName,
+                    spec, CacheConsts.CACHE_SPEC));
+        }
+    }
+
+    /**
+     * 将配置中的 spec 应用到已创建的 caffeine 缓存，用于刷新配置（如：spring cloud 重新绑定了 L2CacheProperties）后无需重启即可生效
+     * 注：每个节点都会刷新配置，所以只在本节点应用，不通知其他节点
+     */
+    public void refreshSpecs() {
+        for (String cacheName : this.cacheMap.keySet()) {
+            CaffeineCache caffeineCache = this.getCaffeineCache(cacheName);
+            if (null != caffeineCache) {
+                caffeineCache.applySpec(cacheConfig.getCaffeine().getSpec(cacheName));
+            }
+        }
+    }
+
+    /**
+     * 获取已创建的 l2cache 实例，未创建时返回null
+     */
+    public com.coy.l2cache.Cache getL2Cache(String cacheName) {
+        return CacheSupport.getCache(cacheConfig.getCacheType(cacheName), cacheName);
+    }
+
+    /**
+     * 获取所有已创建的 l2cache 实例
+     */
+    public Collection<com.coy.l2cache.Cache> getL2Caches() {
+        List<com.coy.l2cache.Cache> caches = new ArrayList<>();
+        for (String cacheName : this.cacheMap.keySet()) {
+            com.coy.l2cache.Cache cache = this.getL2Cache(cacheName);
+            if (null != cache) {
+                caches.add(cache);
+            }
+        }
+        return caches;
+    }
+
+    /**
+     * 获取缓存的caffeine一级缓存，没有时返回null
+     */
+    private CaffeineCache getCaffeineCache(String cacheName) {
+        com.coy.l2cache.Cache cache = this.getL2Cache(cacheName);
+        if (cache instanceof CompositeCache) {
+            cache = ((CompositeCache) cache).getLevel1Cache();
+        }
+        if (cache instanceof CaffeineCache) {
+            return (CaffeineCache) cache;
+        }
+        return null;
+    }
+
+    public CacheConfig getCacheConfig() {
+        return cacheConfig;
+    }
+
     public CacheExpiredListener getExpiredListener() {
         return expiredListener;
     }
 
+    /**
+     * 替换监听器时停止原监听器的异步分发器，已创建的缓存改为在调用线程中回调原监听器
+     */
     public void setExpiredListener(CacheExpiredListener expiredListener) {
+        if (this.expiredListener != expiredListener) {
+            AsyncRemovalDispatcher.shutdown(this.expiredListener);
+        }
         this.expiredListener = expiredListener;
     }
 
+    /**
+     * 销毁时停止移除事件的异步分发器
+     */
+    @Override
+    public void destroy() {
+        AsyncRemovalDispatcher.shutdown(this.expiredListener);
+    }
+
     public CacheSyncPolicy getCacheSyncPolicy() {
         return cacheSyncPolicy;
     }
@@ -121,6 +262,18 @@ public class L2CacheCacheManager implements CacheManager {
         this.cacheSyncPolicy = cacheSyncPolicy;
     }
 
+    public L1BudgetRebalanceTask getBudgetRebalanceTask() {
+        return budgetRebalanceTask;
+    }
+
+    public CacheWarmer getCacheWarmer() {
+        return cacheWarmer;
+    }
+
+    public void setCacheWarmer(CacheWarmer cacheWarmer) {
+        this.cacheWarmer = cacheWarmer;
+    }
+
     public Object getActualCacheClient() {
         return actualCacheClient;
     }
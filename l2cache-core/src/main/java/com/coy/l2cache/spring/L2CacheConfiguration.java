@@ -4,15 +4,19 @@ import com.coy.l2cache.CacheConfig;
 import com.coy.l2cache.CacheSyncPolicy;
 import com.coy.l2cache.cache.expire.CacheExpiredListener;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.load.CacheWarmer;
 import com.coy.l2cache.spi.ServiceLoader;
 import com.coy.l2cache.sync.CacheMessageListener;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizers;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -51,7 +55,7 @@ public class L2CacheConfiguration {
      */
     @Bean
     public CacheMessageListener cacheMessageListener() {
-        return new CacheMessageListener(l2CacheProperties.getConfig().getInstanceId());
+        return new CacheMessageListener(l2CacheProperties.getConfig().getInstanceId(), l2CacheProperties.getConfig());
     }
 
     /**
@@ -77,15 +81,37 @@ public class L2CacheConfiguration {
             cacheManager.setActualCacheClient(redissonClient);
         }
 
+        cacheManager.setCacheWarmer(new CacheWarmer(cacheConfig, redissonClient));
+
         // 扩展点，源码中有很多可以借鉴的点
         return customizers.customize(cacheManager);
     }
 
+    /**
+     * 启动时预热一级缓存
+     */
+    @Bean
+    public L2CacheWarmupLifecycle l2CacheWarmupLifecycle(L2CacheCacheManager cacheManager) {
+        return new L2CacheWarmupLifecycle(cacheManager);
+    }
+
     /**
      * 判断是否使用redis
      */
     private boolean isUseRedis(CacheConfig cacheConfig) {
-        String cacheType = cacheConfig.getCacheType();
+        if (isUseRedis(cacheConfig, cacheConfig.getCacheType())) {
+            return true;
+        }
+        // 按缓存名称配置的缓存类型
+        for (CacheConfig.CacheSpec spec : cacheConfig.getCacheSpecs().values()) {
+            if (null != spec.getCacheType() && isUseRedis(cacheConfig, spec.getCacheType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUseRedis(CacheConfig cacheConfig, String cacheType) {
         if (CacheType.REDIS.name().equalsIgnoreCase(cacheType)) {
             return true;
         }
@@ -116,4 +142,23 @@ public class L2CacheConfiguration {
         return cacheSyncPolicy;
     }
 
+    /**
+     * spring cloud 刷新配置（重新绑定 L2CacheProperties）后，将新的 spec 应用到已创建的缓存
+     */
+    @Configuration
+    @ConditionalOnClass(name = RefreshSpecConfiguration.REFRESHED_EVENT)
+    static class RefreshSpecConfiguration {
+
+        static final String REFRESHED_EVENT = "org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent";
+
+        @Bean
+        public ApplicationListener<ApplicationEvent> l2CacheSpecRefreshListener(L2CacheCacheManager cacheManager) {
+            return event -> {
+                if (REFRESHED_EVENT.equals(event.getClass().getName())) {
+                    cacheManager.refreshSpecs();
+                }
+            };
+        }
+    }
+
 }
@@ -64,6 +64,7 @@ public class L2CacheSpringCache extends AbstractValueAdaptingCache {
     /**
      * @Cacheable(sync=false) 进入此方法
      * 并发场景：未做同步控制，所以存在多个线程同时加载数据的情况，即可能存在缓存击穿的情况
+     * 注：命中时按 spring cache 的约定返回新的 ValueWrapper，对象分配敏感的场景使用 sync=true（命中路径不产生对象分配）
      */
     @Override
     @Nullable
@@ -0,0 +1,85 @@
+package com.coy.l2cache.spring;
+
+import com.coy.l2cache.Cache;
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.load.CacheWarmer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动时预热一级缓存
+ * <p>
+ * 在 web 容器启动之前执行（web 容器的 phase 为 Integer.MAX_VALUE - 1），开启 waitForReady 时阻塞到预热达到指定比例或超时，
+ * 在此之前节点不接收请求，就绪探针也不可用；否则预热在后台进行，不影响启动。
+ *
+ * @author chenck
+ * @date 2020/7/25 17:50
+ */
+public class L2CacheWarmupLifecycle implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(L2CacheWarmupLifecycle.class);
+
+    private final L2CacheCacheManager cacheManager;
+
+    private volatile boolean running = false;
+
+    public L2CacheWarmupLifecycle(L2CacheCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public void start() {
+        this.running = true;
+        CacheConfig.Warmup warmup = cacheManager.getCacheConfig().getWarmup();
+        CacheWarmer cacheWarmer = cacheManager.getCacheWarmer();
+        if (!warmup.isEnabled() || null == cacheWarmer) {
+            return;
+        }
+        if (CacheWarmer.Source.getSource(warmup.getSource()) == CacheWarmer.Source.HOT_KEYS) {
+            cacheWarmer.startRecordHotKeys(cacheManager::getL2Caches);
+        }
+        List<Cache> caches = new ArrayList<>();
+        for (String cacheName : warmup.getCacheNames()) {
+            // 预热的缓存在启动时创建
+            cacheManager.getCache(cacheName);
+            Cache cache = cacheManager.getL2Cache(cacheName);
+            if (null != cache) {
+                caches.add(cache);
+            }
+        }
+        if (caches.isEmpty()) {
+            return;
+        }
+        CacheWarmer.Progress progress = cacheWarmer.warmup(caches);
+        if (!warmup.isWaitForReady()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            boolean ready = progress.await(warmup.getReadyPercent(), warmup.getTimeoutMillis());
+            logger.info("[L2CacheWarmup] wait for warmup, ready={}, percent={}, failed={}, cost={}ms", ready, progress.getPercent(),
+                    progress.getFailed(), System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2;
+    }
+}
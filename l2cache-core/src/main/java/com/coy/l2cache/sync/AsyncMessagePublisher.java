@@ -0,0 +1,253 @@
+package com.coy.l2cache.sync;
+
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 异步发布缓存同步消息
+ * <p>
+ * 业务线程只将消息放入有界队列，由一个后台线程批量取出后一次发送（如：redis 管道），避免每次缓存变更都同步等待一次网络交互。
+ * 队列满时按溢出策略处理：BLOCK 阻塞业务线程直到有空位（默认）；DROP 丢弃并计数，
+ * 并由后台线程在发送完当前批次后，为被丢弃消息所属的缓存补发一条清除消息，其他节点清除该缓存的整个一级缓存，避免保留旧值直到过期。
+ *
+ * @author chenck
+ * @date 2020/7/24 16:10
+ */
+public class AsyncMessagePublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncMessagePublisher.class);
+
+    /**
+     * 队列满时的溢出策略
+     */
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK,
+        ;
+
+        public static OverflowPolicy getOverflowPolicy(String policy) {
+            for (OverflowPolicy value : OverflowPolicy.values()) {
+                if (value.name().equalsIgnoreCase(policy)) {
+                    return value;
+                }
+            }
+            return BLOCK;
+        }
+    }
+
+    private final String name;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * 批量发送消息，返回即表示发送完成，抛出异常表示该批消息发送失败
+     */
+    private final Consumer<List<CacheMessage>> batchSender;
+    private final Thread drainer;
+
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder clearFallbackCount = new LongAdder();
+    /**
+     * 丢弃了消息的缓存 <cacheName, 补发的清除消息>
+     */
+    private final ConcurrentHashMap<String, CacheMessage> droppedCaches = new ConcurrentHashMap<>();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public AsyncMessagePublisher(String name, int bufferSize, int batchSize, OverflowPolicy overflowPolicy,
+                                 Consumer<List<CacheMessage>> batchSender) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.batchSender = batchSender;
+
+        this.drainer = new DaemonThreadFactory("l2cache-publish-" + name + "-").newThread(this::drainLoop);
+        this.drainer.start();
+    }
+
+    /**
+     * 放入待发布的消息
+     *
+     * @return false 表示队列已满被丢弃
+     */
+    public boolean offer(CacheMessage message) {
+        Pending pending = new Pending(message, System.nanoTime());
+        if (queue.offer(pending)) {
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(pending);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        droppedCount.increment();
+        this.markDropped(message);
+        logger.debug("[AsyncMessagePublisher] queue is full, drop message, name={}, message={}", name, message);
+        return false;
+    }
+
+    /**
+     * 记录被丢弃消息所属的缓存，由后台线程补发清除消息
+     * 注：修改 spec 的消息无法通过清除补偿，只记录日志
+     */
+    private void markDropped(CacheMessage message) {
+        if (CacheConsts.CACHE_SPEC.equals(message.getOptType())) {
+            logger.warn("[AsyncMessagePublisher] queue is full, spec message dropped, name={}, cacheName={}", name, message.getCacheName());
+            return;
+        }
+        if (null == message.getCacheName()) {
+            return;
+        }
+        droppedCaches.computeIfAbsent(message.getCacheName(), cacheName -> new CacheMessage()
+                .setInstanceId(message.getInstanceId())
+                .setCacheType(message.getCacheType())
+                .setCacheName(cacheName)
+                .setKey(null)
+                .setOptType(CacheConsts.CACHE_CLEAR));
+    }
+
+    /**
+     * 为丢弃了消息的缓存补发清除消息
+     * 注：丢弃发生在补发之前，被丢弃的消息对应的变更早于补发的清除消息
+     */
+    private void sendDroppedClears() {
+        if (droppedCaches.isEmpty()) {
+            return;
+        }
+        List<Pending> clears = new ArrayList<>(droppedCaches.size());
+        long now = System.nanoTime();
+        for (String cacheName : new ArrayList<>(droppedCaches.keySet())) {
+            CacheMessage clear = droppedCaches.remove(cacheName);
+            if (null != clear) {
+                clears.add(new Pending(clear, now));
+            }
+        }
+        if (clears.isEmpty()) {
+            return;
+        }
+        logger.warn("[AsyncMessagePublisher] messages dropped, publish clear messages instead, name={}, caches={}", name, clears.size());
+        clearFallbackCount.add(clears.size());
+        this.send(clears);
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                this.send(batch);
+                batch.clear();
+                this.sendDroppedClears();
+            }
+        } catch (InterruptedException e) {
+            // ignore
+        }
+        // 停止前发送队列中剩余的消息，清除中断标记以免发送失败
+        Thread.interrupted();
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            this.send(batch);
+        }
+        this.sendDroppedClears();
+    }
+
+    /**
+     * 停止后台发送线程，队列中剩余的消息发送后退出
+     */
+    public void shutdown() {
+        drainer.interrupt();
+    }
+
+    private void send(List<Pending> batch) {
+        List<CacheMessage> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+        }
+        try {
+            batchSender.accept(messages);
+            publishedCount.add(batch.size());
+        } catch (Throwable e) {
+            failedCount.add(batch.size());
+            logger.error("[AsyncMessagePublisher] publish messages error, name={}, size={}", name, batch.size(), e);
+        }
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            long latency = now - pending.enqueueNanos;
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    /**
+     * 队列中等待发布的消息数
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 因丢弃消息补发的清除消息数
+     */
+    public long getClearFallbackCount() {
+        return clearFallbackCount.sum();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 消息从入队到发送完成的平均耗时(纳秒)
+     */
+    public long getAverageLatencyNanos() {
+        long count = publishedCount.sum() + failedCount.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / count;
+    }
+
+    /**
+     * 消息从入队到发送完成的最大耗时(纳秒)
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    /**
+     * 待发布的消息
+     */
+    private static final class Pending {
+        private final CacheMessage message;
+        private final long enqueueNanos;
+
+        private Pending(CacheMessage message, long enqueueNanos) {
+            this.message = message;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+}
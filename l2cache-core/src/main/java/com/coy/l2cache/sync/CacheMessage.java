@@ -5,6 +5,7 @@ import lombok.Setter;
 import lombok.experimental.Accessors;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * 缓存消息
@@ -22,8 +23,10 @@ public class CacheMessage implements Serializable {
     private String instanceId;// 缓存实例id
     private String cacheType;// 缓存类型
     private String cacheName;// 缓存名称
-    private String optType;// 操作类型 refresh/clear
-    private Object key;// 缓存key
+    private String optType;// 操作类型 refresh/clear/evictTag
+    private Object key;// 缓存key，按标签清理时为标签
+    private List<Object> keys;// 按标签清理时，二级缓存中该标签下的key；批量清理时（key为null）需要清理的key
+    private long seq;// 发布者对该缓存的消息序号，从1开始，0表示未编号
 
     public CacheMessage() {
 
@@ -48,6 +51,8 @@ public class CacheMessage implements Serializable {
         sb.append(", cacheName=").append(cacheName);
         sb.append(", optType=").append(optType);
         sb.append(", key=").append(key);
+        sb.append(", keys=").append(null == keys ? null : keys.size());
+        sb.append(", seq=").append(seq);
         sb.append(", serialVersionUID=").append(serialVersionUID);
         sb.append("]");
         return sb.toString();
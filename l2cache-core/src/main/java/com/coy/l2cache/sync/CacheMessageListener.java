@@ -1,11 +1,18 @@
 package com.coy.l2cache.sync;
 
 import com.coy.l2cache.Cache;
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.CaffeineCache;
+import com.coy.l2cache.cache.CompositeCache;
 import com.coy.l2cache.content.CacheSupport;
 import com.coy.l2cache.cache.Level1Cache;
 import com.coy.l2cache.consts.CacheConsts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * 缓存消息监听器
@@ -19,8 +26,18 @@ public class CacheMessageListener implements MessageListener {
 
     private String cacheInstanceId;
 
+    /**
+     * 用于记录其他节点修改的 spec，本节点尚未创建该缓存时，创建时使用新的 spec
+     */
+    private CacheConfig cacheConfig;
+
     public CacheMessageListener(String cacheInstanceId) {
+        this(cacheInstanceId, null);
+    }
+
+    public CacheMessageListener(String cacheInstanceId, CacheConfig cacheConfig) {
         this.cacheInstanceId = cacheInstanceId;
+        this.cacheConfig = cacheConfig;
     }
 
     @Override
@@ -33,6 +50,10 @@ public class CacheMessageListener implements MessageListener {
             logger.info("[CacheMessageListener][SyncCache] instanceId={}, cacheName={}, cacheType={}, optType={}, key={}",
                     message.getInstanceId(), message.getCacheName(), message.getCacheType(), message.getOptType(), message.getKey());
 
+            if (CacheConsts.CACHE_SPEC.equals(message.getOptType())) {
+                this.applySpec(message);
+                return;
+            }
             Level1Cache level1Cache = getLevel1Cache(message);
             if (null == level1Cache) {
                 return;
@@ -40,13 +61,70 @@ public class CacheMessageListener implements MessageListener {
             if (CacheConsts.CACHE_REFRESH.equals(message.getOptType())) {
                 level1Cache.refresh(message.getKey());
             } else {
-                level1Cache.clearLocalCache(message.getKey());
+                this.clearLocalCache(level1Cache, message);
+            }
+            // 多级组合缓存中，中间的各级本地缓存不单独发送同步消息，随一级缓存一起清理（刷新时同样清理，由一级缓存重新加载）
+            for (Level1Cache middleCache : this.getMiddleCaches(level1Cache)) {
+                if (CacheConsts.CACHE_REFRESH.equals(message.getOptType())) {
+                    middleCache.clearLocalCache(message.getKey());
+                } else {
+                    this.clearLocalCache(middleCache, message);
+                }
             }
         } catch (Exception e) {
             logger.error("[CacheMessageListener][SyncCache] error", e);
         }
     }
 
+    /**
+     * 按消息清理本地缓存：按标签清理、按一批key清理（key为null且keys不为null）、按key清理（key为null时清理所有）
+     */
+    private void clearLocalCache(Level1Cache level1Cache, CacheMessage message) {
+        if (CacheConsts.CACHE_EVICT_TAG.equals(message.getOptType())) {
+            level1Cache.clearLocalCacheByTag((String) message.getKey(), message.getKeys());
+        } else if (null == message.getKey() && null != message.getKeys()) {
+            for (Object key : message.getKeys()) {
+                level1Cache.clearLocalCache(key);
+            }
+        } else {
+            level1Cache.clearLocalCache(message.getKey());
+        }
+    }
+
+    /**
+     * 应用其他节点修改的 spec
+     */
+    private void applySpec(CacheMessage message) {
+        String spec = (String) message.getKey();
+        Cache cache = CacheSupport.getCache(message.getCacheType(), message.getCacheName());
+        if (cache instanceof CaffeineCache) {
+            ((CaffeineCache) cache).applySpec(spec);
+            return;
+        }
+        if (null == cacheConfig) {
+            logger.warn("[CacheMessageListener][SyncCache] cache is not exists or not caffeine cache, ignore spec, cacheType={}, cacheName={}",
+                    message.getCacheType(), message.getCacheName());
+            return;
+        }
+        if (StringUtils.hasText(spec)) {
+            cacheConfig.getCaffeine().getSpecs().put(message.getCacheName(), spec);
+        } else {
+            cacheConfig.getCaffeine().getSpecs().remove(message.getCacheName());
+        }
+    }
+
+    /**
+     * 获取一级缓存所在的多级组合缓存中，中间的各级本地缓存
+     */
+    private List<Level1Cache> getMiddleCaches(Level1Cache level1Cache) {
+        for (Cache cache : CacheSupport.getCaches()) {
+            if (cache instanceof CompositeCache && ((CompositeCache) cache).getLevel1Cache() == level1Cache) {
+                return ((CompositeCache) cache).getMiddleCaches();
+            }
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * 获取 Level1Cache
      */
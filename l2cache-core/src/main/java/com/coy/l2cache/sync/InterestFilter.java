@@ -0,0 +1,95 @@
+package com.coy.l2cache.sync;
+
+import com.coy.l2cache.util.HashUtil;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 本地缓存key集合的布隆过滤器
+ * <p>
+ * 节点定期通告其本地缓存的key集合，发布缓存同步消息时只发送给过滤器中可能包含该key的节点。
+ * 布隆过滤器只会误判存在（多发送消息），不会误判不存在（漏发送消息）。
+ *
+ * @author chenck
+ * @date 2020/7/22 10:20
+ */
+public class InterestFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long[] bits;
+    private int numHashes;
+
+    public InterestFilter() {
+    }
+
+    /**
+     * @param expectedKeys 预计的key数量
+     * @param fpp          误判率
+     */
+    public InterestFilter(long expectedKeys, double fpp) {
+        long n = Math.max(1, expectedKeys);
+        long numBits = Math.max(64, (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE, (numBits + 63) / 64)];
+        this.numHashes = Math.max(1, Math.min(16, (int) Math.round((double) this.bits.length * 64 / n * Math.log(2))));
+    }
+
+    public void put(Object key) {
+        this.putHash(HashUtil.hash64(key));
+    }
+
+    public void putHash(long hash) {
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        long numBits = (long) bits.length * 64;
+        for (int i = 1; i <= numHashes; i++) {
+            int combined = hash1 + i * hash2;
+            long index = (combined & Integer.MAX_VALUE) % numBits;
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    public boolean mightContain(Object key) {
+        return this.mightContainHash(HashUtil.hash64(key));
+    }
+
+    public boolean mightContainHash(long hash) {
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        long numBits = (long) bits.length * 64;
+        for (int i = 1; i <= numHashes; i++) {
+            int combined = hash1 + i * hash2;
+            long index = (combined & Integer.MAX_VALUE) % numBits;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long[] getBits() {
+        return bits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InterestFilter)) {
+            return false;
+        }
+        InterestFilter that = (InterestFilter) o;
+        return numHashes == that.numHashes && Arrays.equals(bits, that.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(bits) + numHashes;
+    }
+}
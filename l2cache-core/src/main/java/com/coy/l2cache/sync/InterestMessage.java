@@ -0,0 +1,36 @@
+package com.coy.l2cache.sync;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * 关注范围的增量通告消息
+ * <p>
+ * 节点在两次通告之间新缓存的key，立即以该消息推送给其他节点，避免其他节点在获取到下一次通告之前不通知本节点
+ *
+ * @author chenck
+ * @date 2020/7/25 19:10
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class InterestMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String instanceId;// 缓存实例id
+    private HashMap<String, long[]> hashes;// <cacheName, 新缓存的key的hash>
+
+    public InterestMessage() {
+
+    }
+
+    public InterestMessage(String instanceId, HashMap<String, long[]> hashes) {
+        this.instanceId = instanceId;
+        this.hashes = hashes;
+    }
+}
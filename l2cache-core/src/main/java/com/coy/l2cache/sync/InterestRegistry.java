@@ -0,0 +1,395 @@
+package com.coy.l2cache.sync;
+
+import com.coy.l2cache.Cache;
+import com.coy.l2cache.cache.Level1Cache;
+import com.coy.l2cache.content.CacheSupport;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.util.HashUtil;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 缓存同步的关注范围注册表
+ * <p>
+ * 每个节点定期将其本地缓存的key集合以布隆过滤器的形式通告到redis（按 cacheName 构建，包含该缓存各级本地缓存的key），
+ * 发布缓存同步消息时只发送给过滤器中可能包含该key的节点，而不是广播给所有节点。
+ * <p>
+ * 以下情况回退为广播，保证不漏发：
+ * 1、消息没有key（如：clear）
+ * 2、订阅广播主题的节点数多于通告有效的节点数（有节点未开启或通告已过期）
+ * 3、本节点获取其他节点通告的时间已超过过期时间
+ * 4、需要通知的节点数超过一半
+ * <p>
+ * 节点在两次通告之间新缓存的key不在已通告的过滤器中，写入本地缓存时立即以增量消息推送给其他节点（合并后异步发送），
+ * 其他节点在通告的过期时间内保留推送的key，期间本节点的下一次通告已包含这些key。
+ * 注：增量消息送达之前的短暂窗口内，该key的变更仍可能未通知到本节点。
+ *
+ * @author chenck
+ * @date 2020/7/22 10:40
+ */
+public class InterestRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterestRegistry.class);
+
+    /**
+     * 需要通知的节点数超过该比例时，直接广播
+     */
+    private static final double BROADCAST_RATIO = 0.5;
+
+    private final String instanceId;
+    private final long periodMillis;
+    private final double fpp;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 广播主题，用于统计订阅的节点数
+     */
+    private final RTopic broadcastTopic;
+
+    /**
+     * 增量通告主题
+     */
+    private final RTopic interestTopic;
+
+    /**
+     * 各节点的通告版本号，过期表示节点已下线或未正常通告
+     * <key,value>=<instanceId, version>
+     */
+    private final RMapCache<String, Long> versionMap;
+
+    /**
+     * 各节点的通告内容，版本号过期的节点的通告内容由其他节点清除
+     * <key,value>=<instanceId, <cacheName, InterestFilter>>
+     */
+    private final RMap<String, HashMap<String, InterestFilter>> advertMap;
+
+    /**
+     * 本节点最近一次通告的过滤器
+     */
+    private Map<String, InterestFilter> lastFilters;
+    private long version;
+
+    /**
+     * 已通告的过滤器，构建通告期间为null，此时新缓存的key均需推送
+     */
+    private volatile Map<String, InterestFilter> coveredFilters;
+
+    /**
+     * 本次通告开始后已推送的key的hash，<cacheName, hash>
+     */
+    private final Map<String, Set<Long>> pushedHashes = new ConcurrentHashMap<>();
+
+    /**
+     * 待推送的key
+     */
+    private final Queue<PendingInterest> pendingInterests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * 其他节点的通告，<instanceId, Advert>
+     */
+    private final Map<String, Advert> remoteAdverts = new ConcurrentHashMap<>();
+
+    /**
+     * 其他节点推送的key，<instanceId, <cacheName, <hash, receivedAt>>>
+     */
+    private final Map<String, Map<String, Map<Long, Long>>> remoteInterests = new ConcurrentHashMap<>();
+    private volatile long remoteRefreshedAt;
+    private volatile long subscriberCount;
+
+    public InterestRegistry(String instanceId, String topic, RedissonClient redissonClient, RTopic broadcastTopic,
+                            long periodSeconds, double fpp, ScheduledExecutorService scheduler) {
+        this.instanceId = instanceId;
+        this.periodMillis = TimeUnit.SECONDS.toMillis(periodSeconds);
+        this.fpp = fpp;
+        this.scheduler = scheduler;
+        this.broadcastTopic = broadcastTopic;
+        this.interestTopic = redissonClient.getTopic(topic + ":interest");
+        this.versionMap = redissonClient.getMapCache(topic + ":interest:version");
+        this.advertMap = redissonClient.getMap(topic + ":interest:advert");
+    }
+
+    /**
+     * 开始定期通告本节点的关注范围，并获取其他节点的通告
+     */
+    public void start() {
+        interestTopic.addListener(InterestMessage.class, (channel, msg) -> this.onInterest(msg));
+        scheduler.scheduleWithFixedDelay(this::advertiseQuietly, 0, periodMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取需要通知的节点，返回null表示需要广播
+     */
+    public List<String> targets(CacheMessage message) {
+        if (null == message.getKey() || !CacheConsts.CACHE_REFRESH.equals(message.getOptType())
+                && !CacheConsts.CACHE_CLEAR.equals(message.getOptType())) {
+            return null;
+        }
+        if (System.currentTimeMillis() - remoteRefreshedAt > this.staleMillis()) {
+            return null;
+        }
+        // 订阅的节点数包含本节点
+        if (subscriberCount > remoteAdverts.size() + 1) {
+            return null;
+        }
+        long hash = HashUtil.hash64(message.getKey());
+        List<String> targets = new ArrayList<>();
+        for (Advert advert : remoteAdverts.values()) {
+            // 未通告该缓存的节点没有创建该缓存，无需通知
+            InterestFilter filter = advert.filters.get(message.getCacheName());
+            if (null != filter && filter.mightContainHash(hash) || this.isPushed(advert.instanceId, message.getCacheName(), hash)) {
+                targets.add(advert.instanceId);
+            }
+        }
+        if (targets.size() > remoteAdverts.size() * BROADCAST_RATIO) {
+            return null;
+        }
+        return targets;
+    }
+
+    /**
+     * 本节点的本地缓存写入了key，不在已通告的过滤器中时推送给其他节点
+     */
+    public void interest(String cacheName, Object key) {
+        long hash = HashUtil.hash64(key);
+        Map<String, InterestFilter> filters = this.coveredFilters;
+        InterestFilter filter = null == filters ? null : filters.get(cacheName);
+        if (null != filter && filter.mightContainHash(hash)) {
+            return;
+        }
+        if (!pushedHashes.computeIfAbsent(cacheName, k -> ConcurrentHashMap.newKeySet()).add(hash)) {
+            return;
+        }
+        pendingInterests.offer(new PendingInterest(cacheName, hash));
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    private boolean isPushed(String instanceId, String cacheName, long hash) {
+        Map<String, Map<Long, Long>> interests = remoteInterests.get(instanceId);
+        if (null == interests) {
+            return false;
+        }
+        Map<Long, Long> hashes = interests.get(cacheName);
+        return null != hashes && hashes.containsKey(hash);
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (Exception e) {
+            logger.error("[InterestRegistry] push interest error, instanceId={}", instanceId, e);
+        }
+    }
+
+    /**
+     * 将待推送的key合并为一条消息发送
+     */
+    void flush() {
+        flushScheduled.set(false);
+        Map<String, List<Long>> grouped = new HashMap<>();
+        PendingInterest pending;
+        while (null != (pending = pendingInterests.poll())) {
+            grouped.computeIfAbsent(pending.cacheName, k -> new ArrayList<>()).add(pending.hash);
+        }
+        if (grouped.isEmpty()) {
+            return;
+        }
+        HashMap<String, long[]> hashes = new HashMap<>();
+        for (Map.Entry<String, List<Long>> entry : grouped.entrySet()) {
+            long[] values = new long[entry.getValue().size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = entry.getValue().get(i);
+            }
+            hashes.put(entry.getKey(), values);
+        }
+        interestTopic.publish(new InterestMessage(instanceId, hashes));
+        logger.debug("[InterestRegistry] push interest, instanceId={}, caches={}", instanceId, hashes.size());
+    }
+
+    private void onInterest(InterestMessage msg) {
+        if (instanceId.equals(msg.getInstanceId()) || null == msg.getHashes()) {
+            return;
+        }
+        // 未获取到该节点的通告时也保留，获取到的通告可能是推送之前构建的
+        long now = System.currentTimeMillis();
+        Map<String, Map<Long, Long>> interests = remoteInterests.computeIfAbsent(msg.getInstanceId(), k -> new ConcurrentHashMap<>());
+        for (Map.Entry<String, long[]> entry : msg.getHashes().entrySet()) {
+            Map<Long, Long> hashes = interests.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>());
+            for (long hash : entry.getValue()) {
+                hashes.put(hash, now);
+            }
+        }
+    }
+
+    private void advertiseQuietly() {
+        try {
+            this.advertise();
+        } catch (Exception e) {
+            logger.error("[InterestRegistry] advertise error, instanceId={}", instanceId, e);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            this.refresh();
+        } catch (Exception e) {
+            logger.error("[InterestRegistry] refresh remote adverts error, instanceId={}", instanceId, e);
+        }
+    }
+
+    /**
+     * 通告本节点的关注范围
+     */
+    void advertise() {
+        // 构建期间新缓存的key可能不在本次通告中，均需推送
+        this.coveredFilters = null;
+        pushedHashes.clear();
+
+        Map<String, List<Object>> keysByCache = new HashMap<>();
+        for (Cache cache : CacheSupport.getCaches()) {
+            if (!(cache instanceof Level1Cache)) {
+                continue;
+            }
+            Level1Cache level1Cache = (Level1Cache) cache;
+            Collection<Object> keys = level1Cache.localKeys();
+            if (null == keys) {
+                continue;
+            }
+            // 同一缓存的各级本地缓存合并为一个过滤器，缓存同步消息由一级缓存发送，需要通知到缓存了该key的任意一级
+            keysByCache.computeIfAbsent(level1Cache.getCacheName(), k -> new ArrayList<>()).addAll(keys);
+        }
+        HashMap<String, InterestFilter> filters = new HashMap<>();
+        for (Map.Entry<String, List<Object>> entry : keysByCache.entrySet()) {
+            InterestFilter filter = new InterestFilter(entry.getValue().size(), fpp);
+            for (Object key : entry.getValue()) {
+                filter.put(key);
+            }
+            filters.put(entry.getKey(), filter);
+        }
+
+        long ttl = this.staleMillis();
+        // 内容变更时才写入通告内容，版本号每次都写入以续期
+        if (!filters.equals(lastFilters)) {
+            version++;
+            advertMap.fastPut(instanceId, filters);
+        }
+        versionMap.fastPut(instanceId, version, ttl, TimeUnit.MILLISECONDS);
+        lastFilters = filters;
+        this.coveredFilters = filters;
+        logger.debug("[InterestRegistry] advertise, instanceId={}, version={}, caches={}", instanceId, version, filters.size());
+    }
+
+    /**
+     * 获取其他节点的通告
+     */
+    void refresh() {
+        Map<String, Long> versions = versionMap.readAllMap();
+        versions.remove(instanceId);
+        remoteAdverts.keySet().retainAll(versions.keySet());
+
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Long> entry : versions.entrySet()) {
+            Advert advert = remoteAdverts.get(entry.getKey());
+            if (null == advert || advert.version != entry.getValue()) {
+                changed.add(entry.getKey());
+            }
+        }
+        if (!changed.isEmpty()) {
+            Map<String, HashMap<String, InterestFilter>> adverts = advertMap.getAll(changed);
+            for (String id : changed) {
+                HashMap<String, InterestFilter> filters = adverts.get(id);
+                if (null == filters) {
+                    // 版本号存在但通告内容已过期，视为未通告
+                    remoteAdverts.remove(id);
+                    continue;
+                }
+                remoteAdverts.put(id, new Advert(id, versions.get(id), filters));
+            }
+        }
+        // 清除已下线节点的通告内容
+        Set<String> expired = new HashSet<>(advertMap.readAllKeySet());
+        expired.removeAll(versions.keySet());
+        expired.remove(instanceId);
+        if (!expired.isEmpty()) {
+            advertMap.fastRemove(expired.toArray(new String[0]));
+        }
+        // 推送的key在过期时间内已被该节点之后的通告覆盖
+        long now = System.currentTimeMillis();
+        remoteInterests.values().removeIf(interests -> {
+            interests.values().removeIf(hashes -> {
+                hashes.values().removeIf(receivedAt -> now - receivedAt > this.staleMillis());
+                return hashes.isEmpty();
+            });
+            return interests.isEmpty();
+        });
+        this.subscriberCount = broadcastTopic.countSubscribers();
+        this.remoteRefreshedAt = System.currentTimeMillis();
+        logger.debug("[InterestRegistry] refresh remote adverts, instanceId={}, adverts={}, changed={}, subscribers={}", instanceId,
+                remoteAdverts.size(), changed.size(), subscriberCount);
+    }
+
+    /**
+     * 通告的过期时间
+     */
+    private long staleMillis() {
+        return periodMillis * 3;
+    }
+
+    public Map<String, Long> getRemoteVersions() {
+        Map<String, Long> versions = new HashMap<>();
+        for (Advert advert : remoteAdverts.values()) {
+            versions.put(advert.instanceId, advert.version);
+        }
+        return Collections.unmodifiableMap(versions);
+    }
+
+    /**
+     * 待推送的key
+     */
+    private static final class PendingInterest {
+        private final String cacheName;
+        private final long hash;
+
+        private PendingInterest(String cacheName, long hash) {
+            this.cacheName = cacheName;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 其他节点的通告
+     */
+    private static final class Advert {
+        private final String instanceId;
+        private final long version;
+        private final Map<String, InterestFilter> filters;
+
+        private Advert(String instanceId, long version, Map<String, InterestFilter> filters) {
+            this.instanceId = instanceId;
+            this.version = version;
+            this.filters = filters;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.coy.l2cache.sync;
 
 import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import com.coy.l2cache.util.HashUtil;
 import com.coy.l2cache.util.ObjectMapperUtil;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -10,18 +12,28 @@ import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 基于 kafka 的同步策略
+ * <p>
+ * 消息以 cacheName + key 的hash作为record key，同一个缓存key的消息写入同一个分区，保证按发送顺序处理；
+ * 拉取到的消息按分区分配给固定的工作线程（partition % consumerThreads）并行处理，同一个分区的消息始终由同一个线程按顺序处理，
+ * 一次拉取的消息全部处理完成后再提交offset。
  *
  * @author chenck
  * @date 2020/7/7 17:15
@@ -36,6 +48,11 @@ public class KafkaCacheSyncPolicy extends AbstractCacheSyncPolicy {
 
     private KafkaConsumer<String, String> consumer;
 
+    /**
+     * 处理消息的工作线程，每个线程为单线程池，保证分配给它的分区按顺序处理
+     */
+    private ExecutorService[] workers;
+
     @Override
     public void connnect() {
         if (!start.compareAndSet(false, true)) {
@@ -51,6 +68,12 @@ public class KafkaCacheSyncPolicy extends AbstractCacheSyncPolicy {
         producer = new KafkaProducer<>(cacheSyncPolicy.getProps());
         consumer = new KafkaConsumer<>(cacheSyncPolicy.getProps());
 
+        DaemonThreadFactory threadFactory = new DaemonThreadFactory("cache-sync-kafka-");
+        workers = new ExecutorService[Math.max(1, cacheSyncPolicy.getConsumerThreads())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+
         // 启动一个线程订阅消息
         Thread subscribeThread = new Thread(() -> {
             // 订阅消息
@@ -60,11 +83,18 @@ public class KafkaCacheSyncPolicy extends AbstractCacheSyncPolicy {
                     // 拉取消息，设置指定超时时间
                     ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(3));
                     logger.debug("[KafkaCacheSyncPolicy] poll messages, topic={}, records={}", cacheSyncPolicy.getTopic(), records.count());
+                    if (records.isEmpty()) {
+                        continue;
+                    }
 
-                    for (ConsumerRecord<String, String> record : records) {
-                        logger.debug("[KafkaCacheSyncPolicy] received a message, topic={}, record={}", cacheSyncPolicy.getTopic(), record.toString());
-                        CacheMessage message = ObjectMapperUtil.toObject(record.value(), CacheMessage.class);
-                        KafkaCacheSyncPolicy.this.getCacheMessageListener().onMessage(message);
+                    // 按分区并行处理，等待全部处理完成后提交offset
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (TopicPartition partition : records.partitions()) {
+                        List<ConsumerRecord<String, String>> partitionRecords = records.records(partition);
+                        futures.add(workers[partition.partition() % workers.length].submit(() -> this.handle(partitionRecords)));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
                     }
                     consumer.commitSync();
                 } catch (Exception e) {
@@ -75,6 +105,32 @@ public class KafkaCacheSyncPolicy extends AbstractCacheSyncPolicy {
         subscribeThread.start();
     }
 
+    /**
+     * 按顺序处理同一个分区的消息
+     */
+    private void handle(List<ConsumerRecord<String, String>> records) {
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                logger.debug("[KafkaCacheSyncPolicy] received a message, record={}", record.toString());
+                CacheMessage message = ObjectMapperUtil.toObject(record.value(), CacheMessage.class);
+                this.getCacheMessageListener().onMessage(message);
+            } catch (Exception e) {
+                logger.error("[KafkaCacheSyncPolicy] deal message error, record={}", record.toString(), e);
+            }
+        }
+    }
+
+    /**
+     * 消息的 record key，同一个缓存key的消息写入同一个分区
+     * 注：clear 等没有key的消息按缓存名称分区
+     */
+    private String recordKey(CacheMessage message) {
+        if (null == message.getKey()) {
+            return message.getCacheName();
+        }
+        return message.getCacheName() + ":" + Long.toHexString(HashUtil.hash64(message.getKey()));
+    }
+
     @Override
     public void publish(CacheMessage message) {
         CacheConfig.CacheSyncPolicy cacheSyncPolicy = this.getCacheConfig().getCacheSyncPolicy();
@@ -82,9 +138,10 @@ public class KafkaCacheSyncPolicy extends AbstractCacheSyncPolicy {
             String messageStr = ObjectMapperUtil.toJson(message);
             logger.debug("[KafkaCacheSyncPolicy] publish cache sync message, message={}", messageStr);
 
+            String recordKey = this.recordKey(message);
             // 异步发送，采用回调接收结果
             if (cacheSyncPolicy.isAsync()) {
-                producer.send(new ProducerRecord<>(cacheSyncPolicy.getTopic(), null, messageStr), (recordMetadata, e) -> {
+                producer.send(new ProducerRecord<>(cacheSyncPolicy.getTopic(), recordKey, messageStr), (recordMetadata, e) -> {
                     if (recordMetadata != null) {
                         logger.debug("[KafkaCacheSyncPolicy] sent to partition({}), offset({}), message({}) ",
                                 recordMetadata.partition(), recordMetadata.offset(), messageStr);
@@ -96,7 +153,7 @@ public class KafkaCacheSyncPolicy extends AbstractCacheSyncPolicy {
                 return;
             }
             // 同步发送消息
-            RecordMetadata recordMetadata = producer.send(new ProducerRecord<>(cacheSyncPolicy.getTopic(), null, messageStr)).get();
+            RecordMetadata recordMetadata = producer.send(new ProducerRecord<>(cacheSyncPolicy.getTopic(), recordKey, messageStr)).get();
             logger.debug("[KafkaCacheSyncPolicy] publish topic={}, RecordMetadata={}", cacheSyncPolicy.getTopic(), recordMetadata.toString());
         } catch (Exception e) {
             logger.error("[KafkaCacheSyncPolicy] publish cache sync message error", e);
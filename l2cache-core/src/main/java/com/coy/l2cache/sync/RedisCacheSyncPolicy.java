@@ -2,15 +2,22 @@ package com.coy.l2cache.sync;
 
 import com.coy.l2cache.CacheConfig;
 import com.coy.l2cache.content.RedissonSupport;
+import com.coy.l2cache.schedule.RefreshSupport;
+import org.redisson.api.RBatch;
 import org.redisson.api.RTopic;
 import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 基于 redis pubsub 的同步策略
+ * <p>
+ * 开启 isAsync 时，消息放入缓冲队列后立即返回，由后台线程批量通过管道（RBatch）发送，缓存变更无需同步等待 redis 的响应。
  *
  * @author chenck
  * @date 2020/7/7 14:02
@@ -20,29 +27,89 @@ public class RedisCacheSyncPolicy extends AbstractCacheSyncPolicy {
     private static final Logger logger = LoggerFactory.getLogger(RedisCacheSyncPolicy.class);
 
     AtomicBoolean start = new AtomicBoolean(false);
+    private RedissonClient redissonClient;
     private RTopic topic;
 
+    /**
+     * 只通知可能缓存了该key的节点，未开启时为null
+     */
+    private InterestRegistry interestRegistry;
+
+    /**
+     * 各节点的主题，<instanceId, RTopic>
+     */
+    private final Map<String, RTopic> nodeTopics = new ConcurrentHashMap<>();
+
+    /**
+     * 异步发送消息，未开启时为null
+     */
+    private AsyncMessagePublisher asyncPublisher;
+
     @Override
     public void connnect() {
         if (!start.compareAndSet(false, true)) {
             logger.info("[RedisCacheSyncPolicy] already started");
             return;
         }
-        RedissonClient redissonClient = getRedissonClient(this.getCacheConfig());
-        this.topic = redissonClient.getTopic(this.getCacheConfig().getCacheSyncPolicy().getTopic());
+        CacheConfig.CacheSyncPolicy cacheSyncPolicy = this.getCacheConfig().getCacheSyncPolicy();
+        this.redissonClient = getRedissonClient(this.getCacheConfig());
+        this.topic = redissonClient.getTopic(cacheSyncPolicy.getTopic());
 
         // 订阅主题
-        this.topic.addListener(CacheMessage.class, (channel, msg) -> {
-            logger.debug("[RedisCacheSyncPolicy] received a message, instanceId={}, cacheName={}, cacheType={}, optType={}, key={}",
-                    msg.getInstanceId(), msg.getCacheName(), msg.getCacheType(), msg.getOptType(), msg.getKey());
-            RedisCacheSyncPolicy.this.getCacheMessageListener().onMessage(msg);
-        });
+        this.topic.addListener(CacheMessage.class, this::onMessage);
+
+        if (cacheSyncPolicy.isInterestScoped()) {
+            // 订阅本节点的主题，接收只发送给本节点的消息
+            this.getNodeTopic(this.getCacheConfig().getInstanceId()).addListener(CacheMessage.class, this::onMessage);
+            this.interestRegistry = new InterestRegistry(this.getCacheConfig().getInstanceId(), cacheSyncPolicy.getTopic(), redissonClient,
+                    this.topic, cacheSyncPolicy.getInterestPeriod(), cacheSyncPolicy.getInterestFpp(),
+                    RefreshSupport.getInstance(this.getCacheConfig().getCaffeine().getRefreshPoolSize()));
+            this.interestRegistry.start();
+            logger.info("[RedisCacheSyncPolicy] interest scoped sync enabled, instanceId={}", this.getCacheConfig().getInstanceId());
+        }
+
+        if (cacheSyncPolicy.isAsync()) {
+            this.asyncPublisher = new AsyncMessagePublisher("redis", cacheSyncPolicy.getAsyncBufferSize(), cacheSyncPolicy.getAsyncBatchSize(),
+                    AsyncMessagePublisher.OverflowPolicy.getOverflowPolicy(cacheSyncPolicy.getAsyncOverflowPolicy()), this::publishBatch);
+            logger.info("[RedisCacheSyncPolicy] async publish enabled, bufferSize={}, batchSize={}, overflowPolicy={}",
+                    cacheSyncPolicy.getAsyncBufferSize(), cacheSyncPolicy.getAsyncBatchSize(), cacheSyncPolicy.getAsyncOverflowPolicy());
+        }
+    }
+
+    private void onMessage(CharSequence channel, CacheMessage msg) {
+        logger.debug("[RedisCacheSyncPolicy] received a message, channel={}, instanceId={}, cacheName={}, cacheType={}, optType={}, key={}",
+                channel, msg.getInstanceId(), msg.getCacheName(), msg.getCacheType(), msg.getOptType(), msg.getKey());
+        this.getCacheMessageListener().onMessage(msg);
+    }
+
+    /**
+     * 获取节点的主题
+     */
+    private RTopic getNodeTopic(String instanceId) {
+        return nodeTopics.computeIfAbsent(instanceId, key -> redissonClient.getTopic(this.getNodeTopicName(key)));
+    }
+
+    private String getNodeTopicName(String instanceId) {
+        return this.getCacheConfig().getCacheSyncPolicy().getTopic() + ":" + instanceId;
     }
 
     @Override
     public void publish(CacheMessage message) {
+        if (null != asyncPublisher) {
+            asyncPublisher.offer(message);
+            return;
+        }
         try {
             logger.debug("[RedisCacheSyncPolicy] publish cache sync message, message={}", message.toString());
+            List<String> targets = null == interestRegistry ? null : interestRegistry.targets(message);
+            if (null != targets) {
+                // 只通知可能缓存了该key的节点
+                for (String target : targets) {
+                    this.getNodeTopic(target).publish(message);
+                }
+                logger.debug("[RedisCacheSyncPolicy] publish to interested nodes, targets={}", targets);
+                return;
+            }
             long receivedMsgClientNum = this.topic.publish(message);
             logger.debug("[RedisCacheSyncPolicy] receivedMsgClientNum={}", receivedMsgClientNum);
         } catch (Exception e) {
@@ -50,9 +117,44 @@ public class RedisCacheSyncPolicy extends AbstractCacheSyncPolicy {
         }
     }
 
+    /**
+     * 通过管道批量发送消息，一次网络交互发送整批消息
+     */
+    private void publishBatch(List<CacheMessage> messages) {
+        RBatch batch = redissonClient.createBatch();
+        for (CacheMessage message : messages) {
+            List<String> targets = null == interestRegistry ? null : interestRegistry.targets(message);
+            if (null != targets) {
+                for (String target : targets) {
+                    batch.getTopic(this.getNodeTopicName(target)).publishAsync(message);
+                }
+                continue;
+            }
+            batch.getTopic(this.getCacheConfig().getCacheSyncPolicy().getTopic()).publishAsync(message);
+        }
+        batch.execute();
+        logger.debug("[RedisCacheSyncPolicy] publish cache sync messages by batch, size={}", messages.size());
+    }
+
+    @Override
+    public void interest(String cacheName, Object key) {
+        if (null != interestRegistry) {
+            interestRegistry.interest(cacheName, key);
+        }
+    }
+
     @Override
     public void disconnect() {
+        if (null != asyncPublisher) {
+            asyncPublisher.shutdown();
+        }
+    }
 
+    /**
+     * 异步发送消息的统计（队列深度、丢弃数、发送耗时等），未开启异步发送时为null
+     */
+    public AsyncMessagePublisher getAsyncPublisher() {
+        return asyncPublisher;
     }
 
     protected RedissonClient getRedissonClient(CacheConfig cacheConfig) {
@@ -0,0 +1,293 @@
+package com.coy.l2cache.sync;
+
+import com.coy.l2cache.Cache;
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.Level1Cache;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.content.CacheSupport;
+import com.coy.l2cache.content.RedissonSupport;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import org.redisson.api.RStream;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.StreamMessageId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 redis stream 的同步策略
+ * <p>
+ * pubsub 在断线重连或消费缓慢时会丢失消息，导致其他节点的一级缓存一直是旧值直到过期。
+ * 该策略通过 XADD 写入 stream（MAXLEN ~ 近似裁剪），每个节点记录已读取的最后一个消息id，通过 XREAD 批量读取，断线重连后从该id继续读取，不丢失消息。
+ * <p>
+ * 另外每条消息带有发布者对该缓存的消息序号，接收方检测到序号不连续（如：发布失败）时清除该缓存的一级缓存；
+ * 节点落后过多、未读取的消息已被裁剪时，清除本节点所有的一级缓存。
+ * 注：超过 10 分钟未收到消息的节点（如：已下线）的消息序号不再保留，避免节点频繁上下线时序号记录无限增长。
+ *
+ * @author chenck
+ * @date 2020/7/24 10:05
+ */
+public class RedisStreamCacheSyncPolicy extends AbstractCacheSyncPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisStreamCacheSyncPolicy.class);
+
+    /**
+     * stream 消息中存储 CacheMessage 的字段
+     */
+    private static final String MESSAGE_FIELD = "m";
+
+    /**
+     * 超过该时间未收到消息的节点，不再保留其消息序号
+     */
+    private static final long SEQ_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Comparator<StreamMessageId> ID_COMPARATOR = Comparator.comparingLong(StreamMessageId::getId0)
+            .thenComparingLong(StreamMessageId::getId1);
+
+    AtomicBoolean start = new AtomicBoolean(false);
+    private volatile boolean running;
+    private RedissonClient redissonClient;
+    private RStream<String, CacheMessage> stream;
+    private Thread readThread;
+
+    /**
+     * 本节点已读取的最后一个消息id，仅由读取线程访问
+     */
+    private StreamMessageId lastId;
+
+    /**
+     * 本节点发布的各缓存的消息序号，<cacheType_cacheName, seq>
+     */
+    private final Map<String, AtomicLong> publishSeqs = new ConcurrentHashMap<>();
+
+    /**
+     * 已收到的各节点各缓存的消息序号，仅由读取线程访问，<instanceId, ReceivedSeqs>
+     */
+    private final Map<String, ReceivedSeqs> receivedSeqs = new HashMap<>();
+    private long seqsExpiredAt;
+
+    /**
+     * 检测到消息丢失的次数
+     */
+    private final AtomicLong gapCount = new AtomicLong();
+
+    @Override
+    public void connnect() {
+        if (!start.compareAndSet(false, true)) {
+            logger.info("[RedisStreamCacheSyncPolicy] already started");
+            return;
+        }
+        CacheConfig.CacheSyncPolicy cacheSyncPolicy = this.getCacheConfig().getCacheSyncPolicy();
+        this.redissonClient = getRedissonClient(this.getCacheConfig());
+        this.stream = redissonClient.getStream(cacheSyncPolicy.getTopic() + ":stream");
+
+        // 从当前最新的消息之后开始读取
+        this.lastId = this.latestId();
+        this.running = true;
+        this.readThread = new DaemonThreadFactory("cache-sync-stream-").newThread(this::readLoop);
+        this.readThread.start();
+        logger.info("[RedisStreamCacheSyncPolicy] subscribe stream, stream={}, lastId={}", stream.getName(), lastId);
+    }
+
+    /**
+     * 循环读取消息，出现异常时等待后从最后读取的消息id继续读取
+     */
+    private void readLoop() {
+        CacheConfig.CacheSyncPolicy cacheSyncPolicy = this.getCacheConfig().getCacheSyncPolicy();
+        int batchSize = cacheSyncPolicy.getStreamBatchSize();
+        while (running) {
+            try {
+                this.expireReceivedSeqs();
+                // 读取前的位置，用于判断本批之前是否有消息已被裁剪
+                StreamMessageId readFrom = lastId;
+                Map<StreamMessageId, Map<String, CacheMessage>> messages = stream.read(batchSize, cacheSyncPolicy.getStreamBlockMillis(),
+                        TimeUnit.MILLISECONDS, readFrom);
+                if (null == messages || messages.isEmpty()) {
+                    continue;
+                }
+                List<StreamMessageId> ids = new ArrayList<>(messages.keySet());
+                ids.sort(ID_COMPARATOR);
+                for (StreamMessageId id : ids) {
+                    this.lastId = id;
+                    CacheMessage message = messages.get(id).get(MESSAGE_FIELD);
+                    if (null != message) {
+                        this.onMessage(id, message);
+                    }
+                }
+                if (messages.size() >= batchSize) {
+                    // 读取满一批说明本节点可能落后较多
+                    this.checkTrimmed(readFrom);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                logger.error("[RedisStreamCacheSyncPolicy] read stream error, lastId={}", lastId, e);
+                this.sleepQuietly(cacheSyncPolicy.getStreamBlockMillis());
+                this.checkTrimmedQuietly();
+            }
+        }
+    }
+
+    private void onMessage(StreamMessageId id, CacheMessage message) {
+        logger.debug("[RedisStreamCacheSyncPolicy] received a message, id={}, instanceId={}, cacheName={}, cacheType={}, optType={}, key={}, seq={}",
+                id, message.getInstanceId(), message.getCacheName(), message.getCacheType(), message.getOptType(), message.getKey(),
+                message.getSeq());
+        if (this.getCacheConfig().getInstanceId().equalsIgnoreCase(message.getInstanceId())) {
+            return;
+        }
+        if (message.getSeq() > 0) {
+            String cacheKey = message.getCacheType() + "_" + message.getCacheName();
+            ReceivedSeqs seqs = receivedSeqs.computeIfAbsent(message.getInstanceId(), k -> new ReceivedSeqs());
+            seqs.receivedAt = System.currentTimeMillis();
+            Long last = seqs.seqs.put(cacheKey, message.getSeq());
+            if (null != last && message.getSeq() > last + 1) {
+                gapCount.incrementAndGet();
+                logger.warn("[RedisStreamCacheSyncPolicy] message gap detected, clear local cache, instanceId={}, cacheType={}, cacheName={}, seq {} -> {}",
+                        message.getInstanceId(), message.getCacheType(), message.getCacheName(), last, message.getSeq());
+                this.getCacheMessageListener().onMessage(new CacheMessage(message.getInstanceId(), message.getCacheType(),
+                        message.getCacheName(), null, CacheConsts.CACHE_CLEAR));
+            }
+        }
+        this.getCacheMessageListener().onMessage(message);
+    }
+
+    /**
+     * 清除超过过期时间未收到消息的节点的消息序号，每分钟最多执行一次
+     */
+    private void expireReceivedSeqs() {
+        long now = System.currentTimeMillis();
+        if (now - seqsExpiredAt < TimeUnit.MINUTES.toMillis(1)) {
+            return;
+        }
+        seqsExpiredAt = now;
+        receivedSeqs.values().removeIf(seqs -> now - seqs.receivedAt > SEQ_EXPIRE_MILLIS);
+    }
+
+    private void checkTrimmedQuietly() {
+        try {
+            this.checkTrimmed(lastId);
+        } catch (Exception e) {
+            logger.error("[RedisStreamCacheSyncPolicy] check stream trimmed error", e);
+        }
+    }
+
+    /**
+     * stream 中最早的消息在本节点已读取的位置之后，说明未读取的消息可能已被裁剪，清除本节点所有的一级缓存
+     *
+     * @param readFrom 本节点已读取的位置，读取一批消息后检查时为读取该批之前的位置
+     */
+    private void checkTrimmed(StreamMessageId readFrom) {
+        Map<StreamMessageId, Map<String, CacheMessage>> first = stream.range(1, StreamMessageId.MIN, StreamMessageId.MAX);
+        if (first.isEmpty()) {
+            return;
+        }
+        StreamMessageId firstId = first.keySet().iterator().next();
+        if (ID_COMPARATOR.compare(firstId, readFrom) <= 0) {
+            return;
+        }
+        gapCount.incrementAndGet();
+        logger.warn("[RedisStreamCacheSyncPolicy] unread messages trimmed, clear all local cache, readFrom={}, firstId={}", readFrom, firstId);
+        for (Cache cache : CacheSupport.getCaches()) {
+            if (cache instanceof Level1Cache) {
+                ((Level1Cache) cache).clearLocalCache(null);
+            }
+        }
+        // 已清除所有一级缓存，之前的消息序号不再有意义
+        receivedSeqs.clear();
+    }
+
+    /**
+     * stream 中最新的消息id，stream 为空时返回 0-0
+     */
+    private StreamMessageId latestId() {
+        Map<StreamMessageId, Map<String, CacheMessage>> latest = stream.rangeReversed(1, StreamMessageId.MAX, StreamMessageId.MIN);
+        if (latest.isEmpty()) {
+            return new StreamMessageId(0, 0);
+        }
+        return latest.keySet().iterator().next();
+    }
+
+    /**
+     * 发布消息，消息序号的分配与写入在同一把锁内完成，保证同一个缓存的消息按序号顺序写入；写入失败的序号不回收，接收方据此发现消息丢失
+     */
+    @Override
+    public void publish(CacheMessage message) {
+        try {
+            String cacheKey = message.getCacheType() + "_" + message.getCacheName();
+            AtomicLong seq = publishSeqs.computeIfAbsent(cacheKey, k -> new AtomicLong());
+            StreamMessageId id;
+            synchronized (seq) {
+                message.setSeq(seq.incrementAndGet());
+                id = stream.add(MESSAGE_FIELD, message, this.getCacheConfig().getCacheSyncPolicy().getStreamMaxLen(), false);
+            }
+            logger.debug("[RedisStreamCacheSyncPolicy] publish cache sync message, id={}, message={}", id, message.toString());
+        } catch (Exception e) {
+            logger.error("[RedisStreamCacheSyncPolicy] publish cache sync message error", e);
+        }
+    }
+
+    /**
+     * 停止读取，并等待读取线程退出（最多等待一次阻塞读取的时间）
+     */
+    @Override
+    public void disconnect() {
+        this.running = false;
+        Thread thread = this.readThread;
+        if (null == thread) {
+            return;
+        }
+        try {
+            thread.join(this.getCacheConfig().getCacheSyncPolicy().getStreamBlockMillis() + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 检测到消息丢失的次数
+     */
+    public long getGapCount() {
+        return gapCount.get();
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 已收到的某个节点各缓存的消息序号
+     */
+    private static final class ReceivedSeqs {
+        /**
+         * <cacheType_cacheName, seq>
+         */
+        private final Map<String, Long> seqs = new HashMap<>();
+        private long receivedAt;
+    }
+
+    protected RedissonClient getRedissonClient(CacheConfig cacheConfig) {
+        Object actualClient = this.getActualClient();
+        if (null != actualClient && actualClient instanceof RedissonClient) {
+            logger.info("use setting RedissonClient instance");
+            return (RedissonClient) actualClient;
+        }
+
+        logger.info("get or create RedissonClient instance by cache config");
+        return RedissonSupport.getRedisson(cacheConfig);
+    }
+
+}
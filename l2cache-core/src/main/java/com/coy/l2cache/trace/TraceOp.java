@@ -0,0 +1,38 @@
+package com.coy.l2cache.trace;
+
+/**
+ * 追踪记录的操作类型
+ *
+ * @author chenck
+ * @date 2020/7/21 10:05
+ */
+public enum TraceOp {
+    // 读取
+    GET((byte) 0),
+    // 写入
+    PUT((byte) 1),
+    // 删除
+    EVICT((byte) 2),
+    // 清空
+    CLEAR((byte) 3),
+    ;
+
+    private final byte code;
+
+    TraceOp(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static TraceOp valueOf(byte code) {
+        for (TraceOp op : TraceOp.values()) {
+            if (op.code == code) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("unknown trace op " + code);
+    }
+}
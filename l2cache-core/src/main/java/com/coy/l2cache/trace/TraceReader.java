@@ -0,0 +1,84 @@
+package com.coy.l2cache.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 追踪文件读取器
+ *
+ * @author chenck
+ * @date 2020/7/21 11:02
+ * @see TraceRecorder
+ */
+public class TraceReader implements Closeable {
+
+    private final DataInputStream in;
+    private final double sampleRate;
+    private final Map<Short, String> cacheNames = new HashMap<>();
+    private long timestamp;
+
+    public TraceReader(File file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            if (in.readInt() != TraceRecorder.MAGIC) {
+                throw new IOException("not a l2cache trace file " + file.getAbsolutePath());
+            }
+            short version = in.readShort();
+            if (version != TraceRecorder.VERSION) {
+                throw new IOException("unsupported trace file version " + version);
+            }
+            this.sampleRate = in.readDouble();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 记录时的采样率
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 读取下一条记录，读到文件末尾时返回null
+     * 注：时间从0开始，为相对于第一条记录的时间(ms)
+     */
+    public TraceRecord next() throws IOException {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == TraceRecorder.TYPE_NAME) {
+                    short nameId = in.readShort();
+                    cacheNames.put(nameId, in.readUTF());
+                    continue;
+                }
+                if (type != TraceRecorder.TYPE_RECORD) {
+                    throw new IOException("corrupted trace file, unknown record type " + type);
+                }
+                TraceOp op = TraceOp.valueOf(in.readByte());
+                String cacheName = cacheNames.get(in.readShort());
+                long keyHash = in.readLong();
+                timestamp += in.readInt();
+                int valueSize = in.readInt();
+                return new TraceRecord(cacheName, keyHash, op, timestamp, valueSize);
+            }
+        } catch (EOFException e) {
+            // 文件末尾，或记录器异常退出时最后一条记录不完整
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
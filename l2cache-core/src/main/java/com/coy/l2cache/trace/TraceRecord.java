@@ -0,0 +1,42 @@
+package com.coy.l2cache.trace;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 追踪记录
+ *
+ * @author chenck
+ * @date 2020/7/21 10:10
+ */
+@Getter
+@ToString
+public class TraceRecord {
+
+    private final String cacheName;
+
+    /**
+     * key的64位hash，不记录原始key
+     */
+    private final long keyHash;
+
+    private final TraceOp op;
+
+    /**
+     * 操作时间(ms)
+     */
+    private final long timestamp;
+
+    /**
+     * 缓存值序列化后的字节数，未知时为-1
+     */
+    private final int valueSize;
+
+    public TraceRecord(String cacheName, long keyHash, TraceOp op, long timestamp, int valueSize) {
+        this.cacheName = cacheName;
+        this.keyHash = keyHash;
+        this.op = op;
+        this.timestamp = timestamp;
+        this.valueSize = valueSize;
+    }
+}
@@ -0,0 +1,213 @@
+package com.coy.l2cache.trace;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.cache.weigher.SerializedSizeWeigher;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import com.coy.l2cache.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存访问追踪记录器
+ * <p>
+ * 按key的hash采样记录组合缓存的访问（cacheName, key hash, 操作类型, 时间, 缓存值大小）到紧凑的二进制文件中，
+ * 用于离线回放模拟不同的一级/二级缓存配置，见 {@link TraceSimulator}。
+ * <p>
+ * 业务线程只计算key的hash并放入有界缓冲区（缓冲区满时丢弃），由一个后台线程计算缓存值大小并写入文件。
+ * 同一个key要么全部被采样，要么全部不被采样，回放时按采样率缩放容量即可得到与全量相近的命中率。
+ * <p>
+ * 文件格式：
+ * 文件头：magic(int) + version(short) + sampleRate(double)
+ * 缓存名称定义：0(byte) + nameId(short) + cacheName(UTF)
+ * 访问记录：1(byte) + op(byte) + nameId(short) + keyHash(long) + 与上一条记录的时间差(int, ms) + valueSize(int)
+ *
+ * @author chenck
+ * @date 2020/7/21 10:20
+ */
+public class TraceRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceRecorder.class);
+
+    static final int MAGIC = 0x4C324354;
+    static final short VERSION = 1;
+    static final byte TYPE_NAME = 0;
+    static final byte TYPE_RECORD = 1;
+
+    /**
+     * <key,value>=<file, TraceRecorder>
+     */
+    private static final Map<String, TraceRecorder> RECORDER_MAP = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final double sampleRate;
+    private final long maxBytes;
+    private final BlockingQueue<Event> buffer;
+
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder recordedCount = new LongAdder();
+    private volatile boolean closed;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private TraceRecorder(CacheConfig.Trace trace) {
+        this.file = new File(trace.getFile());
+        this.sampleRate = Math.max(0, Math.min(1, trace.getSampleRate()));
+        this.maxBytes = trace.getMaxBytes();
+        this.buffer = new ArrayBlockingQueue<>(trace.getBufferSize());
+
+        new DaemonThreadFactory("l2cache-trace-").newThread(this::writeLoop).start();
+        // 写入线程为守护线程，停止应用时写入缓冲区中剩余的记录并关闭文件
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "l2cache-trace-shutdown"));
+        logger.info("[TraceRecorder] start recording, file={}, sampleRate={}", file.getAbsolutePath(), sampleRate);
+    }
+
+    /**
+     * 获取追踪文件对应的记录器
+     * 注：停止记录（达到 maxBytes、写入异常或关闭）后记录器仍保留，不再记录，避免重新创建时覆盖已记录的追踪文件
+     */
+    public static TraceRecorder getInstance(CacheConfig.Trace trace) {
+        return RECORDER_MAP.computeIfAbsent(new File(trace.getFile()).getAbsolutePath(), key -> new TraceRecorder(trace));
+    }
+
+    /**
+     * 记录一次访问，未被采样、已关闭或缓冲区满时直接忽略
+     *
+     * @param value 缓存值，由后台线程计算序列化后的大小，为null时大小记为-1
+     */
+    public void record(String cacheName, Object key, TraceOp op, Object value) {
+        if (closed) {
+            return;
+        }
+        long keyHash = null == key ? 0 : HashUtil.hash64(key);
+        if (!this.isSampled(keyHash)) {
+            return;
+        }
+        if (!buffer.offer(new Event(cacheName, keyHash, op, System.currentTimeMillis(), value))) {
+            droppedCount.increment();
+        }
+    }
+
+    /**
+     * 停止记录，等待缓冲区中剩余的记录写入文件后关闭文件
+     */
+    public void close() {
+        this.closed = true;
+        try {
+            if (!terminated.await(10, TimeUnit.SECONDS)) {
+                logger.warn("[TraceRecorder] wait trace file closed timeout, file={}", file.getAbsolutePath());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getRecordedCount() {
+        return recordedCount.sum();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private boolean isSampled(long keyHash) {
+        if (sampleRate >= 1) {
+            return true;
+        }
+        return (keyHash >>> 11) * 0x1.0p-53 < sampleRate;
+    }
+
+    private void writeLoop() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent && !parent.exists() && !parent.mkdirs()) {
+            logger.error("[TraceRecorder] create trace dir failed, file={}", file.getAbsolutePath());
+            this.closed = true;
+            terminated.countDown();
+            return;
+        }
+        Map<String, Short> nameIds = new HashMap<>();
+        long bytes = 0;
+        long lastTimestamp = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeDouble(sampleRate);
+            while (!closed || !buffer.isEmpty()) {
+                Event event = buffer.poll(1, TimeUnit.SECONDS);
+                if (null == event) {
+                    out.flush();
+                    continue;
+                }
+                Short nameId = nameIds.get(event.cacheName);
+                if (null == nameId) {
+                    nameId = (short) nameIds.size();
+                    nameIds.put(event.cacheName, nameId);
+                    out.writeByte(TYPE_NAME);
+                    out.writeShort(nameId);
+                    out.writeUTF(event.cacheName);
+                    bytes += 5 + event.cacheName.getBytes(StandardCharsets.UTF_8).length;
+                }
+                long delta = 0 == lastTimestamp ? 0 : Math.max(0, event.timestamp - lastTimestamp);
+                lastTimestamp = Math.max(lastTimestamp, event.timestamp);
+                out.writeByte(TYPE_RECORD);
+                out.writeByte(event.op.getCode());
+                out.writeShort(nameId);
+                out.writeLong(event.keyHash);
+                out.writeInt((int) Math.min(delta, Integer.MAX_VALUE));
+                out.writeInt(null == event.value ? -1 : SerializedSizeWeigher.INSTANCE.weigh(null, event.value));
+                bytes += 20;
+                recordedCount.increment();
+                if (maxBytes > 0 && bytes >= maxBytes) {
+                    logger.info("[TraceRecorder] trace file reach maxBytes, stop recording, file={}, records={}",
+                            file.getAbsolutePath(), recordedCount.sum());
+                    this.closed = true;
+                    buffer.clear();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            logger.error("[TraceRecorder] write trace file error, stop recording, file={}", file.getAbsolutePath(), e);
+            this.closed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            buffer.clear();
+            terminated.countDown();
+        }
+        logger.info("[TraceRecorder] stop recording, file={}, records={}, dropped={}", file.getAbsolutePath(),
+                recordedCount.sum(), droppedCount.sum());
+    }
+
+    private static final class Event {
+        private final String cacheName;
+        private final long keyHash;
+        private final TraceOp op;
+        private final long timestamp;
+        private final Object value;
+
+        private Event(String cacheName, long keyHash, TraceOp op, long timestamp, Object value) {
+            this.cacheName = cacheName;
+            this.keyHash = keyHash;
+            this.op = op;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+}
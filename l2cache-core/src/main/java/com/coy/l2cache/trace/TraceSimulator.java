@@ -0,0 +1,378 @@
+package com.coy.l2cache.trace;
+
+import com.coy.l2cache.content.CustomCaffeineSpec;
+import com.coy.l2cache.util.DaemonThreadFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import lombok.Getter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于追踪文件的缓存模拟器
+ * <p>
+ * 将 {@link TraceRecorder} 记录的访问按原始的时间顺序回放到候选的一级/二级缓存配置上（每个候选配置一个线程并行回放），
+ * 输出各级缓存的命中率、二级缓存每秒操作数及估算的内存占用，用于上线前离线评估 maximumSize、expireAfterWrite、redis maxSize 等配置。
+ * <p>
+ * 一级缓存使用真实的 caffeine（spec 与 CacheConfig.Caffeine 中的格式相同），二级缓存用按数量淘汰的 caffeine 近似 redis 的 maxSize 和 expireTime，
+ * 过期时间按追踪记录中的时间推进。记录时有采样的，容量按采样率缩小，每秒操作数和内存按采样率放大。
+ * <p>
+ * 命令行用法：
+ * java -cp l2cache-core.jar com.coy.l2cache.trace.TraceSimulator trace.bin "name=small;l1=maximumSize=1000,expireAfterWrite=5m;l2=maxSize=100000,expireTime=3600000" "name=large;l1=maximumSize=10000"
+ *
+ * @author chenck
+ * @date 2020/7/21 11:30
+ */
+public class TraceSimulator {
+
+    /**
+     * 每回放多少条记录统计一次内存占用
+     */
+    private static final int MEMORY_SAMPLE_INTERVAL = 10000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: TraceSimulator <traceFile> <candidate>...");
+            System.out.println("  candidate: name=<label>;l1=<caffeine spec>;l2=maxSize=<n>,expireTime=<ms>");
+            System.out.println("  e.g. \"name=small;l1=maximumSize=1000,expireAfterWrite=5m;l2=maxSize=100000,expireTime=3600000\"");
+            System.exit(1);
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            candidates.add(Candidate.parse(args[i], "candidate" + i));
+        }
+        List<Result> results = simulate(new File(args[0]), candidates);
+
+        System.out.println(String.format("%-16s %10s %10s %10s %10s %12s %14s %14s", "name", "requests", "l1HitRate", "l2HitRate",
+                "hitRate", "l2Ops/s", "l1Memory(KB)", "l2Memory(KB)"));
+        for (Result result : results) {
+            System.out.println(String.format("%-16s %10d %10.4f %10.4f %10.4f %12.1f %14d %14d", result.getName(), result.getRequests(),
+                    result.getL1HitRate(), result.getL2HitRate(), result.getHitRate(), result.getL2OpsPerSecond(),
+                    result.getL1PeakBytes() / 1024, result.getL2PeakBytes() / 1024));
+        }
+    }
+
+    /**
+     * 并行回放追踪文件到各个候选配置
+     */
+    public static List<Result> simulate(File traceFile, List<Candidate> candidates) throws Exception {
+        int threads = Math.max(1, Math.min(candidates.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("l2cache-simulator-"));
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                futures.add(executor.submit(new Simulation(traceFile, candidate)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 候选配置
+     */
+    @Getter
+    public static class Candidate {
+        private final String name;
+        /**
+         * 一级缓存 caffeine spec，为空表示不使用一级缓存
+         */
+        private final String l1Spec;
+        /**
+         * 二级缓存最大缓存数，小于等于0表示不限制
+         */
+        private final long l2MaxSize;
+        /**
+         * 二级缓存过期时间(ms)，小于等于0表示不过期
+         */
+        private final long l2ExpireTime;
+
+        public Candidate(String name, String l1Spec, long l2MaxSize, long l2ExpireTime) {
+            this.name = name;
+            this.l1Spec = l1Spec;
+            this.l2MaxSize = l2MaxSize;
+            this.l2ExpireTime = l2ExpireTime;
+        }
+
+        /**
+         * 解析候选配置，格式：name=<label>;l1=<caffeine spec>;l2=maxSize=<n>,expireTime=<ms>
+         */
+        public static Candidate parse(String text, String defaultName) {
+            String name = defaultName;
+            String l1Spec = null;
+            long l2MaxSize = 0;
+            long l2ExpireTime = 0;
+            for (String part : text.split(";")) {
+                int index = part.indexOf('=');
+                if (index <= 0) {
+                    continue;
+                }
+                String key = part.substring(0, index).trim();
+                String value = part.substring(index + 1).trim();
+                if ("name".equals(key)) {
+                    name = value;
+                } else if ("l1".equals(key)) {
+                    l1Spec = value;
+                } else if ("l2".equals(key)) {
+                    for (String option : value.split(",")) {
+                        String[] kv = option.split("=");
+                        if (kv.length != 2) {
+                            throw new IllegalArgumentException("illegal l2 option " + option);
+                        }
+                        if ("maxSize".equals(kv[0].trim())) {
+                            l2MaxSize = Long.parseLong(kv[1].trim());
+                        } else if ("expireTime".equals(kv[0].trim())) {
+                            l2ExpireTime = Long.parseLong(kv[1].trim());
+                        } else {
+                            throw new IllegalArgumentException("unknown l2 option " + option);
+                        }
+                    }
+                } else {
+                    throw new IllegalArgumentException("unknown candidate option " + part);
+                }
+            }
+            return new Candidate(name, l1Spec, l2MaxSize, l2ExpireTime);
+        }
+    }
+
+    /**
+     * 模拟结果
+     * 注：请求数、命中数为采样后的值；每秒操作数和内存已按采样率放大
+     */
+    @Getter
+    public static class Result {
+        private final String name;
+        private long requests;
+        private long l1Hits;
+        private long l2Hits;
+        private long misses;
+        private long l2Ops;
+        private double l2OpsPerSecond;
+        private long l1PeakBytes;
+        private long l2PeakBytes;
+
+        private Result(String name) {
+            this.name = name;
+        }
+
+        public double getL1HitRate() {
+            return requests == 0 ? 0 : (double) l1Hits / requests;
+        }
+
+        /**
+         * 二级缓存命中率（一级缓存未命中的请求中，二级缓存命中的比例）
+         */
+        public double getL2HitRate() {
+            long l2Requests = requests - l1Hits;
+            return l2Requests == 0 ? 0 : (double) l2Hits / l2Requests;
+        }
+
+        public double getHitRate() {
+            return requests == 0 ? 0 : (double) (l1Hits + l2Hits) / requests;
+        }
+    }
+
+    /**
+     * 单个候选配置的回放
+     */
+    private static class Simulation implements Callable<Result> {
+        private final File traceFile;
+        private final Candidate candidate;
+        private final Result result;
+        private final Map<String, Cache<Long, Integer>> l1Caches = new HashMap<>();
+        private final Map<String, Cache<Long, Integer>> l2Caches = new HashMap<>();
+        private final Ticker ticker = () -> this.nowNanos;
+        private double sampleRate;
+        private long nowNanos;
+        private long knownSizeSum;
+        private long knownSizeCount;
+
+        private Simulation(File traceFile, Candidate candidate) {
+            this.traceFile = traceFile;
+            this.candidate = candidate;
+            this.result = new Result(candidate.getName());
+        }
+
+        @Override
+        public Result call() throws Exception {
+            long count = 0;
+            long startTimestamp = -1;
+            long endTimestamp = 0;
+            try (TraceReader reader = new TraceReader(traceFile)) {
+                this.sampleRate = reader.getSampleRate() > 0 ? reader.getSampleRate() : 1;
+                TraceRecord record;
+                while (null != (record = reader.next())) {
+                    if (startTimestamp < 0) {
+                        startTimestamp = record.getTimestamp();
+                    }
+                    endTimestamp = record.getTimestamp();
+                    this.nowNanos = TimeUnit.MILLISECONDS.toNanos(record.getTimestamp());
+                    this.replay(record);
+                    if (++count % MEMORY_SAMPLE_INTERVAL == 0) {
+                        this.sampleMemory();
+                    }
+                }
+            }
+            this.sampleMemory();
+            double seconds = Math.max(1, endTimestamp - Math.max(0, startTimestamp)) / 1000.0;
+            result.l2OpsPerSecond = result.l2Ops / sampleRate / seconds;
+            return result;
+        }
+
+        private void replay(TraceRecord record) {
+            Cache<Long, Integer> l1 = this.getL1Cache(record.getCacheName());
+            Cache<Long, Integer> l2 = this.getL2Cache(record.getCacheName());
+            Long key = record.getKeyHash();
+            int size = this.sizeOf(record.getValueSize());
+            switch (record.getOp()) {
+                case GET:
+                    result.requests++;
+                    if (null != l1 && null != l1.getIfPresent(key)) {
+                        result.l1Hits++;
+                        return;
+                    }
+                    result.l2Ops++;
+                    if (null != l2.getIfPresent(key)) {
+                        result.l2Hits++;
+                    } else {
+                        // 未命中，加载后写入二级缓存
+                        result.misses++;
+                        result.l2Ops++;
+                        l2.put(key, size);
+                    }
+                    if (null != l1) {
+                        l1.put(key, size);
+                    }
+                    return;
+                case PUT:
+                    result.l2Ops++;
+                    l2.put(key, size);
+                    if (null != l1) {
+                        l1.put(key, size);
+                    }
+                    return;
+                case EVICT:
+                    result.l2Ops++;
+                    l2.invalidate(key);
+                    if (null != l1) {
+                        l1.invalidate(key);
+                    }
+                    return;
+                case CLEAR:
+                    result.l2Ops++;
+                    l2.invalidateAll();
+                    if (null != l1) {
+                        l1.invalidateAll();
+                    }
+                    return;
+                default:
+            }
+        }
+
+        /**
+         * 缓存值大小，未知时取已知大小的平均值
+         */
+        private int sizeOf(int valueSize) {
+            if (valueSize >= 0) {
+                knownSizeSum += valueSize;
+                knownSizeCount++;
+                return valueSize;
+            }
+            return knownSizeCount == 0 ? 0 : (int) (knownSizeSum / knownSizeCount);
+        }
+
+        private Cache<Long, Integer> getL1Cache(String cacheName) {
+            if (null == candidate.getL1Spec() || candidate.getL1Spec().isEmpty()) {
+                return null;
+            }
+            return l1Caches.computeIfAbsent(cacheName, key -> {
+                CustomCaffeineSpec spec = CustomCaffeineSpec.parse(candidate.getL1Spec());
+                Caffeine<Object, Object> builder = spec.toBuilder().ticker(ticker).executor(Runnable::run);
+                if (spec.isMaximumWeightSet()) {
+                    builder.weigher((k, v) -> (Integer) v);
+                }
+                Cache<Long, Integer> cache;
+                if (null != spec.getRefreshAfterWriteTimeUnit()) {
+                    // refreshAfterWrite 需要 LoadingCache，刷新时从二级缓存读取一次并保留原值
+                    cache = builder.build(new CacheLoader<Long, Integer>() {
+                        @Override
+                        public Integer load(Long k) {
+                            return null;
+                        }
+
+                        @Override
+                        public Integer reload(Long k, Integer oldValue) {
+                            result.l2Ops++;
+                            return oldValue;
+                        }
+                    });
+                } else {
+                    cache = builder.build();
+                }
+                this.scale(cache);
+                return cache;
+            });
+        }
+
+        private Cache<Long, Integer> getL2Cache(String cacheName) {
+            return l2Caches.computeIfAbsent(cacheName, key -> {
+                Caffeine<Object, Object> builder = Caffeine.newBuilder().ticker(ticker).executor(Runnable::run);
+                if (candidate.getL2MaxSize() > 0) {
+                    builder.maximumSize(candidate.getL2MaxSize());
+                }
+                if (candidate.getL2ExpireTime() > 0) {
+                    builder.expireAfterWrite(candidate.getL2ExpireTime(), TimeUnit.MILLISECONDS);
+                }
+                Cache<Long, Integer> cache = builder.build();
+                this.scale(cache);
+                return cache;
+            });
+        }
+
+        /**
+         * 按采样率缩小容量
+         */
+        private void scale(Cache<Long, Integer> cache) {
+            if (sampleRate >= 1) {
+                return;
+            }
+            cache.policy().eviction().ifPresent(eviction ->
+                    eviction.setMaximum(Math.max(1, Math.round(eviction.getMaximum() * sampleRate))));
+        }
+
+        private void sampleMemory() {
+            result.l1PeakBytes = Math.max(result.l1PeakBytes, (long) (this.bytesOf(l1Caches) / sampleRate));
+            result.l2PeakBytes = Math.max(result.l2PeakBytes, (long) (this.bytesOf(l2Caches) / sampleRate));
+        }
+
+        /**
+         * 估算的内存占用：缓存值序列化后的大小 + 每个缓存项 key 的 8 字节
+         */
+        private long bytesOf(Map<String, Cache<Long, Integer>> caches) {
+            long bytes = 0;
+            for (Cache<Long, Integer> cache : caches.values()) {
+                cache.cleanUp();
+                for (Integer size : cache.asMap().values()) {
+                    bytes += size + 8;
+                }
+            }
+            return bytes;
+        }
+    }
+}
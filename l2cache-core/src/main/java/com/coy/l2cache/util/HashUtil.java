@@ -0,0 +1,26 @@
+package com.coy.l2cache.util;
+
+/**
+ * hash 工具类
+ *
+ * @author chenck
+ * @date 2020/7/22 10:05
+ */
+public class HashUtil {
+
+    /**
+     * key的64位hash（FNV-1a 并混淆高位），基于key的字符串形式计算，保证不同进程中同一个key的hash一致
+     */
+    public static long hash64(Object key) {
+        String str = key.toString();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < str.length(); i++) {
+            hash ^= str.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
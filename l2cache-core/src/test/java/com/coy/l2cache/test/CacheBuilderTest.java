@@ -1,6 +1,7 @@
 package com.coy.l2cache.test;
 
 import com.coy.l2cache.Cache;
+import com.coy.l2cache.cache.Level2Cache;
 import com.coy.l2cache.consts.CacheType;
 import com.coy.l2cache.cache.expire.DefaultCacheExpiredListener;
 import com.coy.l2cache.CacheBuilder;
@@ -8,7 +9,11 @@ import com.coy.l2cache.builder.CaffeineCacheBuilder;
 import com.coy.l2cache.builder.CompositeCacheBuilder;
 import com.coy.l2cache.builder.RedisCacheBuilder;
 import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.spring.L2CacheCacheManager;
+import org.junit.Assert;
 import org.junit.Test;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.SerializationCodec;
 
 /**
  * @author chenck
@@ -136,4 +141,72 @@ public class CacheBuilderTest {
             Thread.sleep(1000);
         }
     }
+
+    /**
+     * 按缓存名称配置缓存类型及二级缓存配置
+     */
+    @Test
+    public void cacheSpecTest() {
+        CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setCacheType(CacheType.COMPOSITE.name())
+                .getRedis()
+                .setExpireTime(60000)
+                .setRedissonYamlConfig("redisson.yaml");
+        cacheConfig.getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumSize=200,expireAfterWrite=30s");
+        // 字典缓存只用一级缓存
+        cacheConfig.getCacheSpecs().put("dictCache", new CacheConfig.CacheSpec().setCacheType(CacheType.CAFFEINE.name()).setSync(false));
+        // 用户缓存只用二级缓存，使用独立的过期时间和编解码器
+        cacheConfig.getCacheSpecs().put("userCache", new CacheConfig.CacheSpec().setCacheType(CacheType.REDIS.name())
+                .setRedisExpireTime(10000L).setRedisCodec(SerializationCodec.class.getName()));
+
+        L2CacheCacheManager cacheManager = new L2CacheCacheManager(cacheConfig);
+        org.springframework.cache.Cache dictCache = cacheManager.getCache("dictCache");
+        org.springframework.cache.Cache userCache = cacheManager.getCache("userCache");
+        org.springframework.cache.Cache orderCache = cacheManager.getCache("orderCache");
+
+        System.out.println("dictCache " + ((Cache) dictCache.getNativeCache()).getCacheType());
+        System.out.println("userCache " + ((Cache) userCache.getNativeCache()).getCacheType() + ", expireTime="
+                + ((Level2Cache) userCache.getNativeCache()).getExpireTime());
+        System.out.println("orderCache " + ((Cache) orderCache.getNativeCache()).getCacheType() + ", redis expireTime="
+                + cacheConfig.getRedis("orderCache").getExpireTime());
+
+        userCache.put("key1", "value1");
+        System.out.println("userCache get " + userCache.get("key1", String.class));
+    }
+
+    @Test
+    public void tagEnabledValidateTest() {
+        CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setTagEnabled(true)
+                .setCacheType(CacheType.COMPOSITE.name())
+                .getComposite()
+                .setL1CacheType(CacheType.CAFFEINE.name())
+                .setL2CacheType(CacheType.NONE.name());
+        // 字典缓存使用 guava，没有标签索引，不支持标签
+        cacheConfig.getCacheSpecs().put("dictCache", new CacheConfig.CacheSpec().setCacheType(CacheType.GUAVA.name()));
+        try {
+            new L2CacheCacheManager(cacheConfig);
+            Assert.fail("guava cache should be rejected when tagEnabled");
+        } catch (IllegalArgumentException e) {
+            System.out.println("validate " + e.getMessage());
+        }
+
+        cacheConfig.getCacheSpecs().put("dictCache", new CacheConfig.CacheSpec().setCacheType(CacheType.CAFFEINE.name()));
+        new L2CacheCacheManager(cacheConfig);
+    }
+
+    @Test
+    public void codecValidateTest() {
+        CacheConfig cacheConfig = new CacheConfig();
+        // StringCodec 无法存储空值（NullValue），加载配置时拒绝
+        cacheConfig.getCacheSpecs().put("userCache", new CacheConfig.CacheSpec().setCacheType(CacheType.REDIS.name())
+                .setRedisCodec(StringCodec.class.getName()));
+        try {
+            new L2CacheCacheManager(cacheConfig);
+            Assert.fail("StringCodec should be rejected");
+        } catch (IllegalArgumentException e) {
+            System.out.println("validate " + e.getMessage());
+        }
+    }
 }
@@ -4,18 +4,30 @@ import com.coy.l2cache.CacheConfig;
 import com.coy.l2cache.CacheSyncPolicy;
 import com.coy.l2cache.builder.CaffeineCacheBuilder;
 import com.coy.l2cache.cache.CaffeineCache;
+import com.coy.l2cache.cache.CaffeineCacheOptions;
+import com.coy.l2cache.cache.expire.AsyncRemovalDispatcher;
+import com.coy.l2cache.cache.expire.BatchCacheExpiredListener;
+import com.coy.l2cache.cache.expire.CacheRemovalCause;
+import com.coy.l2cache.cache.expire.CacheRemovalEvent;
 import com.coy.l2cache.cache.expire.DefaultCacheExpiredListener;
 import com.coy.l2cache.consts.CacheSyncPolicyType;
 import com.coy.l2cache.consts.CacheType;
+import com.coy.l2cache.consts.WeigherType;
 import com.coy.l2cache.content.NullValue;
 import com.coy.l2cache.sync.CacheMessageListener;
 import com.coy.l2cache.sync.RedisCacheSyncPolicy;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.redisson.Redisson;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -249,4 +261,217 @@ public class CaffeineCacheTest {
         printAllCache();
     }
 
+    /**
+     * 按权重淘汰：maximumWeight=10KB，按序列化后的字节数计算权重
+     */
+    @Test
+    public void maximumWeightTest() throws InterruptedException {
+        CacheConfig weightConfig = new CacheConfig();
+        weightConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumWeight=10240,recordStats")
+                .setWeigher(WeigherType.SERIALIZED.name())
+                .setAutoRefreshExpireCache(false);
+
+        CaffeineCache weightCache = (CaffeineCache) new CaffeineCacheBuilder()
+                .setCacheConfig(weightConfig)
+                .build("weightCache");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append('v');
+        }
+        // 每个缓存项约1KB，写入50个后只能保留约10个
+        for (int i = 0; i < 50; i++) {
+            weightCache.put("key" + i, sb.toString());
+        }
+        weightCache.getActualCache().cleanUp();
+        Thread.sleep(500);
+        System.out.println("estimatedSize=" + weightCache.getActualCache().estimatedSize());
+        weightCache.getActualCache().policy().eviction().ifPresent(eviction ->
+                System.out.println("weightedSize=" + eviction.weightedSize().getAsLong() + ", maximum=" + eviction.getMaximum()));
+    }
+
+    /**
+     * 异步批量回调移除事件：只回调容量淘汰的缓存项
+     */
+    @Test
+    public void asyncRemovalTest() throws InterruptedException {
+        CacheConfig removalConfig = new CacheConfig();
+        removalConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumSize=10,recordStats")
+                .setAutoRefreshExpireCache(false);
+        removalConfig.getRemoval()
+                .setAsync(true)
+                .setBatchSize(20)
+                .setMaxWaitMillis(100)
+                .getCauses().retainAll(Collections.singletonList(CacheRemovalCause.SIZE.name()));
+
+        BatchCacheExpiredListener listener = new BatchCacheExpiredListener() {
+            @Override
+            public void onExpired(List<CacheRemovalEvent> events) {
+                System.out.println(Thread.currentThread().getName() + " batch size=" + events.size() + ", first=" + events.get(0));
+            }
+
+            @Override
+            public void onExpired(Object key, Object value) {
+                System.out.println("removed key=" + key);
+            }
+        };
+        CaffeineCache removalCache = (CaffeineCache) new CaffeineCacheBuilder()
+                .setCacheConfig(removalConfig)
+                .setExpiredListener(listener)
+                .build("removalCache");
+
+        for (int i = 0; i < 100; i++) {
+            removalCache.put("key" + i, "value" + i);
+        }
+        // 显式删除不会回调
+        removalCache.evict("key99");
+        Thread.sleep(1000);
+
+        // 停止后移除分发器，之后的事件在调用线程中回调
+        AsyncRemovalDispatcher dispatcher = AsyncRemovalDispatcher.getInstance(listener, removalConfig.getRemoval());
+        AsyncRemovalDispatcher.shutdown(listener);
+        Assert.assertTrue(dispatcher.isClosed());
+        removalCache.put("key100", "value100");
+        Assert.assertNotSame(dispatcher, AsyncRemovalDispatcher.getInstance(listener, removalConfig.getRemoval()));
+        AsyncRemovalDispatcher.shutdown(listener);
+    }
+
+    /**
+     * 概率提前刷新：越接近过期越可能在后台提前加载，读取线程始终返回旧值；过期时间带随机抖动
+     */
+    @Test
+    public void earlyRefreshTest() throws InterruptedException {
+        CacheConfig earlyConfig = new CacheConfig();
+        earlyConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumSize=200,expireAfterWrite=2s,recordStats")
+                .setAutoRefreshExpireCache(false)
+                .setEarlyRefreshBeta(1.0)
+                .setExpireJitterRatio(0.2);
+
+        CaffeineCache earlyCache = (CaffeineCache) new CaffeineCacheBuilder()
+                .setCacheConfig(earlyConfig)
+                .build("earlyRefreshCache");
+
+        Callable<String> slowLoader = () -> {
+            Thread.sleep(300);
+            String value = "value_" + System.currentTimeMillis();
+            System.out.println(Thread.currentThread().getName() + " load " + value);
+            return value;
+        };
+        for (int i = 0; i < 30; i++) {
+            System.out.println("get " + earlyCache.get("key1", slowLoader) + ", expiresAfter="
+                    + earlyCache.getActualCache().policy().expireVariably().get().getExpiresAfter("key1", TimeUnit.MILLISECONDS));
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * 按代清除：clear 直接替换为新的 caffeine 实例
+     */
+    @Test
+    public void generationClearTest() {
+        CacheConfig generationConfig = new CacheConfig();
+        generationConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumSize=2000000,recordStats")
+                .setAutoRefreshExpireCache(false)
+                .setGenerationClear(true);
+
+        CaffeineCache generationCache = (CaffeineCache) new CaffeineCacheBuilder()
+                .setCacheConfig(generationConfig)
+                .build("generationCache");
+        for (int i = 0; i < 1000000; i++) {
+            generationCache.putLocal("key" + i, "value" + i);
+        }
+        Object before = generationCache.getActualCache();
+        long start = System.nanoTime();
+        generationCache.clearLocalCache(null);
+        System.out.println("clear cost " + (System.nanoTime() - start) / 1000 + "us, replaced=" + (before != generationCache.getActualCache())
+                + ", size=" + generationCache.getActualCache().estimatedSize() + ", get(key1)=" + generationCache.getIfPresent("key1"));
+    }
+
+    /**
+     * 运行时修改 spec：只修改了容量、过期时间的值时原地调整，其他变更重建实例并迁移缓存项
+     */
+    @Test
+    public void applySpecTest() {
+        CacheConfig specConfig = new CacheConfig();
+        specConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumSize=200,expireAfterWrite=30s")
+                .setAutoRefreshExpireCache(false);
+
+        CaffeineCache specCache = (CaffeineCache) new CaffeineCacheBuilder()
+                .setCacheConfig(specConfig)
+                .build("specCache");
+        for (int i = 0; i < 100; i++) {
+            specCache.putLocal("key" + i, "value" + i);
+        }
+        Object before = specCache.getActualCache();
+
+        boolean inPlace = specCache.applySpec("initialCapacity=10,maximumSize=50,expireAfterWrite=10s");
+        specCache.getActualCache().cleanUp();
+        System.out.println("inPlace=" + inPlace + ", replaced=" + (before != specCache.getActualCache())
+                + ", maximum=" + specCache.getActualCache().policy().eviction().get().getMaximum()
+                + ", expireAfterWrite=" + specCache.getActualCache().policy().expireAfterWrite().get().getExpiresAfter(TimeUnit.SECONDS) + "s"
+                + ", size=" + specCache.getActualCache().estimatedSize());
+
+        // 新增 recordStats 无法原地调整，重建实例
+        inPlace = specCache.applySpec("initialCapacity=10,maximumSize=50,expireAfterWrite=10s,recordStats");
+        System.out.println("inPlace=" + inPlace + ", replaced=" + (before != specCache.getActualCache())
+                + ", recordingStats=" + specCache.getActualCache().policy().isRecordingStats()
+                + ", size=" + specCache.getActualCache().estimatedSize() + ", spec=" + specConfig.getCaffeine().getSpec("specCache"));
+    }
+
+    /**
+     * 运行时修改 spec 重建实例：开启可变过期时间时迁移的缓存项保留剩余存活时间，不按新实例的过期时间重新计时
+     */
+    @Test
+    public void applySpecKeepRemainingTest() throws InterruptedException {
+        CacheConfig specConfig = new CacheConfig();
+        specConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setDefaultSpec("maximumSize=200,expireAfterWrite=30s")
+                .setVariableExpiry(true)
+                .setAutoRefreshExpireCache(false);
+
+        CaffeineCache specCache = (CaffeineCache) new CaffeineCacheBuilder()
+                .setCacheConfig(specConfig)
+                .build("specKeepCache");
+        specCache.putLocal("key1", "value1");
+        Thread.sleep(2000);
+
+        boolean inPlace = specCache.applySpec("maximumSize=200,expireAfterWrite=30s,recordStats");
+        long remaining = specCache.getActualCache().policy().expireVariably().get()
+                .getExpiresAfter("key1", TimeUnit.SECONDS).getAsLong();
+        System.out.println("inPlace=" + inPlace + ", value=" + specCache.get("key1") + ", remaining=" + remaining + "s");
+    }
+
+    /**
+     * get(key, callable) 每次只查找一次：未命中记录一次 miss，命中记录一次 hit
+     */
+    @Test
+    public void getWithValueLoaderStatsTest() {
+        CacheConfig statsConfig = new CacheConfig();
+        statsConfig.setCacheType(CacheType.CAFFEINE.name())
+                .getCaffeine()
+                .setAutoRefreshExpireCache(false);
+
+        CaffeineCache statsCache = new CaffeineCache("statsCache", statsConfig, null, null,
+                Caffeine.newBuilder().maximumSize(200).recordStats().executor(Runnable::run).build(), new CaffeineCacheOptions());
+        AtomicInteger loadCount = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            statsCache.get("key1", () -> "value" + loadCount.incrementAndGet());
+        }
+        CacheStats stats = statsCache.getActualCache().stats();
+        System.out.println("loadCount=" + loadCount.get() + ", stats=" + stats);
+        Assert.assertEquals(1, loadCount.get());
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(2, stats.hitCount());
+    }
 }
@@ -139,4 +139,41 @@ public class CompositeCacheBuilderTest {
             System.out.println("get " + cache.get(key));
         }
     }
+
+    /**
+     * 多级组合缓存 CAFFEINE + OFFHEAP + NONE 测试
+     * <p>
+     * caffeine 按容量淘汰的缓存项降级到 offheap，offheap 命中后由一级缓存重新加载
+     */
+    @Test
+    public void compositeCacheBuilderTest3() throws InterruptedException {
+        CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setCacheType(CacheType.COMPOSITE.name())
+                .getComposite()
+                .setL1CacheType(CacheType.CAFFEINE.name())
+                .setL2CacheType(CacheType.NONE.name())
+                .getMiddleCacheTypes().add(CacheType.OFFHEAP.name());
+        cacheConfig.getCaffeine()
+                .setDefaultSpec("initialCapacity=10,maximumSize=5,recordStats");
+        cacheConfig.getOffHeap()
+                .setMaximumBytes(1024 * 1024)
+                .setSegments(4)
+                .setBlockSize(64);
+
+        Cache cache = new CompositeCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setExpiredListener(new DefaultCacheExpiredListener())
+                .setCacheSyncPolicy(null)
+                .build("tiered");
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        Thread.sleep(1000);// caffeine 异步淘汰，等待淘汰完成
+
+        // key0 已从 caffeine 中淘汰，从 offheap 中获取
+        for (int i = 0; i < 20; i++) {
+            System.out.println(String.format("get key%s, value=%s", i, cache.get("key" + i)));
+        }
+    }
 }
@@ -4,6 +4,7 @@ import com.coy.l2cache.consts.CacheType;
 import com.coy.l2cache.cache.CompositeCache;
 import com.coy.l2cache.cache.expire.DefaultCacheExpiredListener;
 import com.coy.l2cache.content.NullValue;
+import com.coy.l2cache.load.CacheWarmer;
 import com.coy.l2cache.builder.CompositeCacheBuilder;
 import com.coy.l2cache.CacheConfig;
 import com.github.benmanes.caffeine.cache.Cache;
@@ -11,9 +12,18 @@ import org.junit.Before;
 import org.junit.Test;
 import org.redisson.api.RMap;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -189,4 +199,104 @@ public class CompositeCacheTest {
         System.out.println("clear后：缓存中所有的元素");
         printAllCache();
     }
+
+    /**
+     * 批量加载器：并发的未命中合并为一次 loadAll 调用
+     */
+    @Test
+    public void batchLoaderTest() throws Exception {
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.setBatchLoader(keys -> {
+            System.out.println("loadAll " + keys.size() + " keys, times=" + loadCount.incrementAndGet());
+            Map<Object, Object> values = new HashMap<>();
+            for (Object key : keys) {
+                // 模拟 key_batch_9x 在数据库中不存在
+                if (!key.toString().startsWith("key_batch_9")) {
+                    values.put(key, "value_" + key);
+                }
+            }
+            return values;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String key = "key_batch_" + i;
+            futures.add(executor.submit(() -> cache.get(key, callable)));
+        }
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        System.out.println("get key_batch_1 " + cache.get("key_batch_1", callable));
+        System.out.println("get key_batch_95 " + cache.get("key_batch_95", callable));
+
+        System.out.println("getAll " + cache.getAll(Arrays.asList("key_batch_1", "key_batch_200", "key_batch_201")));
+        cache.setBatchLoader(null);
+    }
+
+    /**
+     * 按标签删除：put 及加载时打标签，evictByTag 删除L1、L2中该标签的所有缓存项
+     */
+    @Test
+    public void evictByTagTest() {
+        for (int i = 0; i < 10; i++) {
+            cache.put("key_tag_" + i, "value" + i, "tenant_" + (i % 2));
+        }
+        cache.get("key_tag_load", callable, "tenant_0", "sku_family_x");
+        System.out.println("evictByTag前：缓存中所有的元素");
+        printAllCache();
+
+        cache.evictByTag("tenant_0");
+        System.out.println("evictByTag(tenant_0)后：缓存中所有的元素");
+        printAllCache();
+    }
+
+    /**
+     * 可变过期时间：put 时指定过期时间，或通过 CacheExpiry 按缓存项计算，一级缓存的过期时间不超过二级缓存
+     */
+    @Test
+    public void putWithTtlTest() throws InterruptedException {
+        cacheConfig.getCaffeine().setVariableExpiry(true);
+        CompositeCache ttlCache = (CompositeCache) new CompositeCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setCacheSyncPolicy(null)
+                .build("compositeTtlCache");
+
+        // 价格缓存1s，商品信息使用默认的过期时间
+        ttlCache.put("price_1", "9.9", Duration.ofSeconds(1));
+        ttlCache.put("item_1", "item");
+        // 空值只缓存1s
+        ttlCache.setExpiry((key, value, expireTime) -> null == value ? 1000 : expireTime);
+        ttlCache.put("item_2", null);
+        System.out.println("price_1=" + ttlCache.get("price_1") + ", item_1=" + ttlCache.get("item_1")
+                + ", L1 size=" + ((Cache) ttlCache.getLevel1Cache().getActualCache()).estimatedSize());
+
+        Thread.sleep(1500);
+        Cache l1 = (Cache) ttlCache.getLevel1Cache().getActualCache();
+        System.out.println("L1 price_1=" + l1.getIfPresent("price_1") + ", L1 item_1=" + l1.getIfPresent("item_1")
+                + ", L1 item_2=" + l1.getIfPresent("item_2"));
+        cacheConfig.getCaffeine().setVariableExpiry(false);
+    }
+
+    /**
+     * 预热：通过 HSCAN 分批获取二级缓存的key，批量取值后并行写入一级缓存
+     */
+    @Test
+    public void warmupTest() throws InterruptedException {
+        cacheConfig.getWarmup()
+                .setBatchSize(50)
+                .setParallelism(2);
+        for (int i = 0; i < 200; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        // 模拟冷启动，一级缓存为空
+        cache.getLevel1Cache().clearLocalCache(null);
+        System.out.println("before warmup L1 size=" + ((Cache) cache.getLevel1Cache().getActualCache()).estimatedSize());
+
+        CacheWarmer.Progress progress = new CacheWarmer(cacheConfig, null).warmup(Collections.singletonList(cache));
+        boolean ready = progress.await(0.9, 5000);
+        System.out.println("ready=" + ready + ", percent=" + progress.getPercent() + ", loaded=" + progress.getLoaded()
+                + ", processed=" + progress.getProcessed() + "/" + progress.getTarget() + ", failed=" + progress.getFailed() + ", L1 size=" + ((Cache) cache.getLevel1Cache().getActualCache()).estimatedSize());
+    }
 }
@@ -0,0 +1,163 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.builder.DiskCacheBuilder;
+import com.coy.l2cache.cache.DiskCache;
+import com.coy.l2cache.cache.disk.DiskStore;
+import com.coy.l2cache.consts.CacheType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DiskCache 中各个方法的单元测试
+ *
+ * @author chenck
+ * @date 2020/7/16 14:20
+ */
+public class DiskCacheTest {
+
+    CacheConfig cacheConfig = new CacheConfig();
+    DiskCache cache;
+    Callable<String> callable;
+
+    @Before
+    public void before() {
+        // 段文件 64KB，最多 256KB，写入2s后过期
+        cacheConfig.setCacheType(CacheType.DISK.name())
+                .setAllowNullValues(true)
+                .getDisk()
+                .setDataDir(System.getProperty("java.io.tmpdir") + java.io.File.separator + "l2cache-disk-test")
+                .setSegmentBytes(64 * 1024)
+                .setMaximumBytes(256 * 1024)
+                .setExpireTime(2000);
+
+        cache = (DiskCache) new DiskCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .build("diskCache");
+
+        callable = new Callable<String>() {
+            AtomicInteger count = new AtomicInteger(1);
+
+            @Override
+            public String call() throws Exception {
+                String result = "loader_value" + count.getAndAdd(1);
+                System.out.println("loader value from valueLoader, return " + result);
+                return result;
+            }
+        };
+
+        System.out.println("cacheType: " + cache.getCacheType());
+        System.out.println("cacheName: " + cache.getCacheName());
+        System.out.println("actualCache: " + cache.getActualCache().getClass().getName());
+        System.out.println();
+    }
+
+    /**
+     * 释放数据目录的锁，下一个用例重新打开同一目录
+     */
+    @After
+    public void after() {
+        cache.getActualCache().close();
+    }
+
+    private void printStore(DiskStore store) {
+        System.out.println(String.format("size=%s, segments=%s, diskBytes=%s, liveBytes=%s, hit=%s, miss=%s, eviction=%s, compaction=%s",
+                store.size(), store.segmentCount(), store.diskBytes(), store.liveBytes(), store.hitCount(), store.missCount(),
+                store.evictionCount(), store.compactionCount()));
+        System.out.println();
+    }
+
+    @Test
+    public void putAndGetTest() {
+        String key = "key1";
+        cache.put(key, "value1");
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key)));
+
+        cache.put(key, null);
+        System.out.println(String.format("get null key=%s, value=%s", key, cache.get(key)));
+        printStore(cache.getActualCache());
+    }
+
+    @Test
+    public void getAndLoadTest() throws InterruptedException {
+        String key = "key_loader";
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key, callable)));
+        // 未过期，不会触发加载
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key, callable)));
+
+        Thread.sleep(2500);
+        // 已过期，重新加载
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key, callable)));
+        printStore(cache.getActualCache());
+    }
+
+    @Test
+    public void compactAndEvictTest() {
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        // 覆盖写入和删除产生垃圾数据
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                cache.evict("key" + i);
+            } else {
+                cache.put("key" + i, "new_value" + i);
+            }
+        }
+        printStore(cache.getActualCache());
+
+        cache.getActualCache().compact();
+        System.out.println("get key1 " + cache.get("key1"));
+        System.out.println("get key2 " + cache.get("key2"));
+        printStore(cache.getActualCache());
+
+        // 写入超出最大字节数的数据，淘汰最旧的段文件
+        for (int i = 0; i < 10000; i++) {
+            cache.put("big_key" + i, "value" + i);
+        }
+        System.out.println("get key1 " + cache.get("key1"));
+        printStore(cache.getActualCache());
+    }
+
+    /**
+     * 模拟应用重启：关闭后基于同一目录重新打开
+     */
+    @Test
+    public void recoverTest() {
+        cache.clear();
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        cache.evict("key1");
+        cache.getActualCache().close();
+
+        CacheConfig.Disk disk = cacheConfig.getDisk();
+        DiskStore store = new DiskStore(new java.io.File(disk.getDataDir(), "diskCache"), disk.getSegmentBytes(),
+                disk.getMaximumBytes(), disk.getExpireTime(), disk.getCompactionThreshold(), disk.isSyncOnWrite());
+        DiskCache recovered = new DiskCache("diskCache", cacheConfig, store);
+        System.out.println("get key0 " + recovered.get("key0"));
+        System.out.println("get key1 " + recovered.get("key1"));
+        printStore(store);
+        store.close();
+    }
+
+    /**
+     * 同一数据目录不能同时被多个实例使用
+     */
+    @Test
+    public void dirLockTest() {
+        CacheConfig.Disk disk = cacheConfig.getDisk();
+        try {
+            new DiskStore(new java.io.File(disk.getDataDir(), "diskCache"), disk.getSegmentBytes(),
+                    disk.getMaximumBytes(), disk.getExpireTime(), disk.getCompactionThreshold(), disk.isSyncOnWrite());
+            Assert.fail("directory should be locked");
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.sync.InterestFilter;
+import org.junit.Test;
+
+/**
+ * 缓存同步关注范围的布隆过滤器
+ */
+public class InterestFilterTest {
+
+    @Test
+    public void mightContainTest() {
+        for (int n : new int[]{10, 1000, 100000}) {
+            InterestFilter filter = new InterestFilter(n, 0.01);
+            for (int i = 0; i < n; i++) {
+                filter.put("key" + i);
+            }
+            int falseNegatives = 0;
+            for (int i = 0; i < n; i++) {
+                if (!filter.mightContain("key" + i)) {
+                    falseNegatives++;
+                }
+            }
+            int falsePositives = 0;
+            for (int i = 0; i < 100000; i++) {
+                if (filter.mightContain("other" + i)) {
+                    falsePositives++;
+                }
+            }
+            System.out.println("keys=" + n + ", bytes=" + filter.getBits().length * 8 + ", numHashes=" + filter.getNumHashes()
+                    + ", falseNegatives=" + falseNegatives + ", fpp=" + falsePositives / 100000.0);
+        }
+    }
+}
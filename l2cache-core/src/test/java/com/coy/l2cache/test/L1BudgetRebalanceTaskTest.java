@@ -0,0 +1,50 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.schedule.L1BudgetRebalanceTask;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Test;
+
+/**
+ * 一级缓存全局预算再平衡测试
+ *
+ * @author chenck
+ * @date 2020/7/17 16:10
+ */
+public class L1BudgetRebalanceTaskTest {
+
+    /**
+     * 热点缓存(hot)不断淘汰，冷缓存(cold)只使用了少量容量，再平衡后预算从cold转移到hot
+     */
+    @Test
+    public void rebalanceTest() {
+        CacheConfig.Budget budget = new CacheConfig.Budget()
+                .setMaximum(2000)
+                .setMinimumPerCache(100);
+        L1BudgetRebalanceTask task = new L1BudgetRebalanceTask(budget);
+
+        Cache<Object, Object> hot = Caffeine.newBuilder().maximumSize(1000).recordStats().executor(Runnable::run).build();
+        Cache<Object, Object> cold = Caffeine.newBuilder().maximumSize(1000).recordStats().executor(Runnable::run).build();
+        task.register("hot", hot);
+        task.register("cold", cold);
+        System.out.println("init allocations " + task.allocations());
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 1500; i++) {
+                if (null == hot.getIfPresent(i)) {
+                    hot.put(i, i);
+                }
+            }
+            for (int i = 0; i < 50; i++) {
+                if (null == cold.getIfPresent(i)) {
+                    cold.put(i, i);
+                }
+            }
+            hot.cleanUp();
+            cold.cleanUp();
+            task.rebalance();
+            System.out.println("round " + round + " allocations " + task.allocations());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.builder.CompositeCacheBuilder;
+import com.coy.l2cache.cache.CompositeCache;
+import com.coy.l2cache.cache.expire.DefaultCacheExpiredListener;
+import com.coy.l2cache.consts.CacheType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一级缓存命中路径的 JMH 基准测试，通过 GCProfiler（-prof gc）校验每次命中不产生对象分配
+ * 注：组合缓存的L2为 NONE，不依赖 redis
+ * 注：根 pom 默认跳过测试，通过 benchmark profile 执行并校验 0 B/op：mvn -B test -pl l2cache-core -am -Pbenchmark
+ *
+ * @author chenck
+ * @date 2020/7/25 18:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class L1HitBenchmarkTest {
+
+    private static final String KEY = "key1";
+
+    /**
+     * refreshAfterWrite 时L1为 LoadingCache，否则为 Cache
+     */
+    @Param({"maximumSize=1000,expireAfterWrite=60s", "maximumSize=1000,refreshAfterWrite=60s"})
+    String spec;
+
+    CompositeCache cache;
+    Callable<String> callable;
+
+    @Setup
+    public void setup() {
+        CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setCacheType(CacheType.COMPOSITE.name())
+                .setAllowNullValues(true)
+                .getComposite()
+                .setL1CacheType(CacheType.CAFFEINE.name())
+                .setL2CacheType(CacheType.NONE.name());
+        cacheConfig.getCaffeine().setDefaultSpec(spec);
+
+        cache = (CompositeCache) new CompositeCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setExpiredListener(new DefaultCacheExpiredListener())
+                .setCacheSyncPolicy(null)
+                .build("l1HitBenchmark");
+        callable = () -> "value1";
+        cache.get(KEY, callable);
+    }
+
+    @Benchmark
+    public Object get() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    public Object getWithCallable() {
+        return cache.get(KEY, callable);
+    }
+
+    /**
+     * 每次命中分配的字节数应为0
+     */
+    @Test
+    public void allocationTest() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(L1HitBenchmarkTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        for (RunResult result : results) {
+            String label = result.getParams().getBenchmark() + " " + result.getParams().getParam("spec");
+            for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+                if (!entry.getKey().endsWith("gc.alloc.rate.norm")) {
+                    continue;
+                }
+                double bytesPerOp = entry.getValue().getScore();
+                System.out.println(label + " alloc bytes/op: " + bytesPerOp);
+                // 允许 profiler 自身的测量误差
+                Assert.assertTrue(label + " allocated " + bytesPerOp + " bytes/op", bytesPerOp < 1.0);
+            }
+        }
+    }
+}
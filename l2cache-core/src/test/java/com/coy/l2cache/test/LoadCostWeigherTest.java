@@ -0,0 +1,85 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.cache.weigher.LoadCostWeigher;
+import com.coy.l2cache.load.LoadCost;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 按加载耗时调整权重与原生 W-TinyLFU 的模拟对比
+ * <p>
+ * 10000 个key按 zipf 分布访问，其中 10% 的key加载耗时为 300ms，其余为 1ms（与访问频率无关），
+ * 在相同容量下比较两种淘汰方式的命中率及累计的后端加载耗时。
+ */
+public class LoadCostWeigherTest {
+
+    static final int KEYS = 10000;
+    static final int CAPACITY = 500;
+    static final int REQUESTS = 500000;
+    static final int UNIT = 100;
+
+    @Test
+    public void simulateTest() {
+        long[] costs = new long[KEYS];
+        Random random = new Random(1);
+        for (int i = 0; i < KEYS; i++) {
+            costs[i] = random.nextInt(10) == 0 ? 300 : 1;
+        }
+        int[] trace = zipfTrace(KEYS, REQUESTS, 0.9, new Random(2));
+
+        // 原生 W-TinyLFU：按数量淘汰
+        Cache<Object, Object> plain = Caffeine.newBuilder()
+                .maximumSize(CAPACITY)
+                .executor(Runnable::run)
+                .build();
+        simulate("W-TinyLFU", plain, trace, costs);
+
+        // 按加载耗时调整权重：每个缓存项的基础权重为 UNIT，总权重与按数量淘汰时相同
+        LoadCostWeigher weigher = new LoadCostWeigher((key, value) -> UNIT, 10);
+        Cache<Object, Object> costAware = Caffeine.newBuilder()
+                .maximumWeight((long) CAPACITY * UNIT)
+                .weigher((key, value) -> weigher.weigh(key, value))
+                .executor(Runnable::run)
+                .build();
+        simulate("LoadCost", costAware, trace, costs);
+    }
+
+    private void simulate(String name, Cache<Object, Object> cache, int[] trace, long[] costs) {
+        long misses = 0;
+        long backendMillis = 0;
+        for (int key : trace) {
+            if (null == cache.getIfPresent(key)) {
+                misses++;
+                backendMillis += costs[key];
+                // 模拟 LoadFunction 记录加载耗时
+                LoadCost.record(key, costs[key] * 1_000_000L);
+                cache.put(key, key);
+            }
+        }
+        cache.cleanUp();
+        System.out.println(String.format("%-10s hitRate=%.4f, misses=%d, backendTime=%ds, size=%d", name,
+                1 - (double) misses / trace.length, misses, backendMillis / 1000, cache.estimatedSize()));
+    }
+
+    /**
+     * 生成 zipf 分布的访问序列
+     */
+    private static int[] zipfTrace(int keys, int requests, double skew, Random random) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        int[] trace = new int[requests];
+        for (int i = 0; i < requests; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = Math.min(keys - 1, index >= 0 ? index : -index - 1);
+        }
+        return trace;
+    }
+}
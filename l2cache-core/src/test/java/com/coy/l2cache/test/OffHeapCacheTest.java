@@ -0,0 +1,128 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.builder.OffHeapCacheBuilder;
+import com.coy.l2cache.cache.OffHeapCache;
+import com.coy.l2cache.cache.expire.DefaultCacheExpiredListener;
+import com.coy.l2cache.cache.offheap.OffHeapStore;
+import com.coy.l2cache.consts.CacheType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OffHeapCache 中各个方法的单元测试
+ *
+ * @author chenck
+ * @date 2020/7/14 14:02
+ */
+public class OffHeapCacheTest {
+
+    CacheConfig cacheConfig = new CacheConfig();
+    OffHeapCache cache;
+    Callable<String> callable;
+
+    @Before
+    public void before() {
+        // 堆外缓存 1MB，4个段，块大小64字节，写入2s后过期
+        cacheConfig.setCacheType(CacheType.OFFHEAP.name())
+                .setAllowNullValues(true)
+                .getOffHeap()
+                .setMaximumBytes(1024 * 1024)
+                .setSegments(4)
+                .setBlockSize(64)
+                .setExpireTime(2000);
+
+        cache = (OffHeapCache) new OffHeapCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setExpiredListener(new DefaultCacheExpiredListener())
+                .setCacheSyncPolicy(null)
+                .build("offHeapCache");
+
+        callable = new Callable<String>() {
+            AtomicInteger count = new AtomicInteger(1);
+
+            @Override
+            public String call() throws Exception {
+                String result = "loader_value" + count.getAndAdd(1);
+                System.out.println("loader value from valueLoader, return " + result);
+                return result;
+            }
+        };
+
+        System.out.println("cacheType: " + cache.getCacheType());
+        System.out.println("cacheName: " + cache.getCacheName());
+        System.out.println("actualCache: " + cache.getActualCache().getClass().getName());
+        System.out.println();
+    }
+
+    private void printStore() {
+        OffHeapStore store = cache.getActualCache();
+        System.out.println(String.format("size=%s, usedBytes=%s, capacityBytes=%s, hit=%s, miss=%s, eviction=%s",
+                store.size(), store.usedBytes(), store.capacityBytes(), store.hitCount(), store.missCount(), store.evictionCount()));
+        System.out.println();
+    }
+
+    @Test
+    public void putAndGetTest() {
+        String key = "key1";
+        cache.put(key, "value1");
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key)));
+
+        cache.put(key, null);
+        System.out.println(String.format("get null key=%s, value=%s", key, cache.get(key)));
+        printStore();
+    }
+
+    @Test
+    public void getAndLoadTest() throws InterruptedException {
+        String key = "key_loader";
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key, callable)));
+        // 未过期，不会触发加载
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key, callable)));
+
+        Thread.sleep(2500);
+        // 已过期，重新加载
+        System.out.println(String.format("get key=%s, value=%s", key, cache.get(key, callable)));
+        printStore();
+    }
+
+    @Test
+    public void evictByBytesTest() {
+        // 写入约4MB的数据，超出1MB的容量后按CLOCK淘汰
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append('v');
+        }
+        String value = sb.toString();
+        for (int i = 0; i < 4000; i++) {
+            cache.put("key" + i, value);
+            // 访问前100个key，使其在淘汰时获得第二次机会
+            if (i % 400 == 0) {
+                for (int j = 0; j < 100; j++) {
+                    cache.get("key" + j);
+                }
+            }
+        }
+        System.out.println("get key0 " + (cache.get("key0") != null));
+        System.out.println("get key1000 " + (cache.get("key1000") != null));
+        System.out.println("get key3999 " + (cache.get("key3999") != null));
+        printStore();
+    }
+
+    @Test
+    public void evictAndClearTest() {
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        printStore();
+
+        cache.evict("key1");
+        System.out.println("get key1 " + cache.get("key1"));
+
+        cache.clear();
+        printStore();
+    }
+}
@@ -0,0 +1,125 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.consts.CacheSyncPolicyType;
+import com.coy.l2cache.sync.AsyncMessagePublisher;
+import com.coy.l2cache.sync.CacheMessage;
+import com.coy.l2cache.sync.RedisCacheSyncPolicy;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 基于 redis pubsub 的同步策略：广播消息、异步批量发送消息
+ *
+ * @author chenck
+ * @date 2020/7/24 16:40
+ */
+public class RedisCacheSyncPolicyTest {
+
+    RedissonClient redissonClient;
+
+    @Before
+    public void before() {
+        redissonClient = Redisson.create();
+    }
+
+    private RedisCacheSyncPolicy createPolicy(String instanceId, Consumer<CacheConfig.CacheSyncPolicy> config, AtomicLong received) {
+        CacheConfig cacheConfig = new CacheConfig().setInstanceId(instanceId);
+        cacheConfig.getCacheSyncPolicy()
+                .setType(CacheSyncPolicyType.REDIS.name())
+                .setTopic("l2cache-sync-test");
+        config.accept(cacheConfig.getCacheSyncPolicy());
+        RedisCacheSyncPolicy policy = new RedisCacheSyncPolicy();
+        policy.setCacheConfig(cacheConfig)
+                .setCacheMessageListener(message -> received.incrementAndGet())
+                .setActualClient(redissonClient);
+        policy.connnect();
+        return policy;
+    }
+
+    @Test
+    public void asyncPublishTest() throws InterruptedException {
+        AtomicLong received = new AtomicLong();
+        RedisCacheSyncPolicy node1 = this.createPolicy("node1", config -> config.setAsync(true).setAsyncBufferSize(1000).setAsyncBatchSize(50),
+                new AtomicLong());
+        RedisCacheSyncPolicy node2 = this.createPolicy("node2", config -> {
+        }, received);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 2000; i++) {
+            node1.publish(new CacheMessage("node1", "caffeine", "userCache", "key" + i, CacheConsts.CACHE_REFRESH));
+        }
+        System.out.println("publish 2000 messages cost " + (System.currentTimeMillis() - start) + "ms");
+        Thread.sleep(2000);
+
+        AsyncMessagePublisher publisher = node1.getAsyncPublisher();
+        System.out.println("published=" + publisher.getPublishedCount() + ", dropped=" + publisher.getDroppedCount()
+                + ", failed=" + publisher.getFailedCount() + ", queueDepth=" + publisher.getQueueDepth()
+                + ", avgLatency=" + publisher.getAverageLatencyNanos() / 1000 + "us, maxLatency=" + publisher.getMaxLatencyNanos() / 1000 + "us");
+        System.out.println("node2 received=" + received.get());
+
+        node1.disconnect();
+        node2.disconnect();
+    }
+
+    /**
+     * DROP 策略下队列满时丢弃消息，并为该缓存补发一条清除消息
+     */
+    @Test
+    public void dropFallbackTest() throws InterruptedException {
+        List<CacheMessage> sent = new CopyOnWriteArrayList<>();
+        AsyncMessagePublisher publisher = new AsyncMessagePublisher("drop-test", 10, 10, AsyncMessagePublisher.OverflowPolicy.DROP,
+                messages -> {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    sent.addAll(messages);
+                });
+        for (int i = 0; i < 100; i++) {
+            publisher.offer(new CacheMessage("node1", "caffeine", "userCache", "key" + i, CacheConsts.CACHE_CLEAR));
+        }
+        Thread.sleep(1000);
+        publisher.shutdown();
+
+        CacheMessage clear = sent.stream().filter(message -> null == message.getKey()).findFirst().orElse(null);
+        System.out.println("sent=" + sent.size() + ", dropped=" + publisher.getDroppedCount() + ", clearFallback=" + publisher.getClearFallbackCount());
+        Assert.assertTrue(publisher.getDroppedCount() > 0);
+        Assert.assertEquals(1, publisher.getClearFallbackCount());
+        Assert.assertNotNull(clear);
+        Assert.assertEquals(CacheConsts.CACHE_CLEAR, clear.getOptType());
+        Assert.assertEquals("userCache", clear.getCacheName());
+    }
+
+    /**
+     * 一个节点发布的消息，订阅同一主题的其他节点都能收到
+     */
+    @Test
+    public void broadcastTest() throws InterruptedException {
+        AtomicLong received = new AtomicLong();
+        RedisCacheSyncPolicy node1 = this.createPolicy("node1", config -> {
+        }, new AtomicLong());
+        RedisCacheSyncPolicy node2 = this.createPolicy("node2", config -> {
+        }, received);
+
+        for (int i = 0; i < 100; i++) {
+            node1.publish(new CacheMessage("node1", "caffeine", "cache" + (i % 8), "key" + i, CacheConsts.CACHE_REFRESH));
+        }
+        Thread.sleep(1000);
+        System.out.println("node2 received=" + received.get());
+        Assert.assertEquals(100, received.get());
+
+        node1.disconnect();
+        node2.disconnect();
+    }
+}
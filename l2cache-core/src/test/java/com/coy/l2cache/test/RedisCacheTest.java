@@ -10,8 +10,14 @@ import org.junit.Test;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -167,4 +173,94 @@ public class RedisCacheTest {
         printAllCache();
     }
 
+    /**
+     * 合并并发的单key读取为批量读取
+     */
+    @Test
+    public void batchGetTest() throws Exception {
+        cacheConfig.getRedis()
+                .setBatchGet(true)
+                .setBatchWindowMicros(500)
+                .setBatchMaxSize(50);
+        RedissonCache batchCache = (RedissonCache) new RedisCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setActualCacheClient(Redisson.create(cacheConfig.getRedis().getRedissonConfig()))
+                .build("redisBatchCache");
+        for (int i = 0; i < 100; i++) {
+            batchCache.put("key" + i, "value" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<Object>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + (i % 120);
+            futures.add(executor.submit(() -> batchCache.get(key)));
+        }
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        System.out.println("1000 concurrent get cost " + (System.currentTimeMillis() - start) + "ms");
+        executor.shutdown();
+
+        System.out.println("batchGet " + batchCache.batchGet(Arrays.asList("key1", "key2", "key110")));
+    }
+
+    /**
+     * 按代清除：clear 后旧hash立即不可见，由 UNLINK 在后台释放；另一个节点定期获取代号后切换到新的hash
+     */
+    @Test
+    public void generationClearTest() throws InterruptedException {
+        cacheConfig.getRedis()
+                .setGenerationClear(true)
+                .setGenerationCheckPeriod(500);
+        RedissonClient redissonClient = Redisson.create(cacheConfig.getRedis().getRedissonConfig());
+        RedissonCache node1 = (RedissonCache) new RedisCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setActualCacheClient(redissonClient)
+                .build("redisGenerationCache");
+        RedissonCache node2 = (RedissonCache) new RedisCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setActualCacheClient(redissonClient)
+                .build("redisGenerationCache");
+        for (int i = 0; i < 10000; i++) {
+            node1.put("key" + i, "value" + i);
+        }
+        System.out.println("clear前 generation=" + node1.getCurrentGeneration() + ", map=" + node1.getActualCache().getName()
+                + ", node2.get(key1)=" + node2.get("key1"));
+
+        long start = System.nanoTime();
+        node1.clear();
+        System.out.println("clear cost " + (System.nanoTime() - start) / 1000 + "us, generation=" + node1.getCurrentGeneration()
+                + ", map=" + node1.getActualCache().getName() + ", node1.get(key1)=" + node1.get("key1"));
+
+        // 另一个节点在下一次获取代号之前读取的旧hash已被删除
+        System.out.println("node2 generation=" + node2.getCurrentGeneration() + ", node2.get(key1)=" + node2.get("key1"));
+        Thread.sleep(1000);
+        System.out.println("node2 generation=" + node2.getCurrentGeneration() + ", map=" + node2.getActualCache().getName()
+                + ", node2.get(key1)=" + node2.get("key1"));
+    }
+
+    /**
+     * 按缓存名称配置 redis spec，并按缓存项计算过期时间
+     */
+    @Test
+    public void specAndExpiryTest() throws InterruptedException {
+        cacheConfig.getRedis().getSpecs().put("redisSpecCache", "expireTime=30s,maxIdleTime=30s,maxSize=100");
+        RedissonCache specCache = (RedissonCache) new RedisCacheBuilder()
+                .setCacheConfig(cacheConfig)
+                .setActualCacheClient(Redisson.create(cacheConfig.getRedis().getRedissonConfig()))
+                .build("redisSpecCache");
+        System.out.println("redisSpecCache expireTime=" + specCache.getExpireTime() + ", redisCache2 expireTime=" + cache.getExpireTime());
+
+        // 空值只缓存1s
+        specCache.setExpiry((key, value, expireTime) -> null == value ? 1000 : expireTime);
+        specCache.put("key1", "value1");
+        specCache.put("key2", null);
+        System.out.println("contains key1=" + specCache.getActualCache().containsKey("key1") + ", contains key2="
+                + specCache.getActualCache().containsKey("key2"));
+        Thread.sleep(1500);
+        System.out.println("contains key1=" + specCache.getActualCache().containsKey("key1") + ", contains key2="
+                + specCache.getActualCache().containsKey("key2"));
+    }
 }
@@ -0,0 +1,67 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.consts.CacheConsts;
+import com.coy.l2cache.consts.CacheSyncPolicyType;
+import com.coy.l2cache.sync.CacheMessage;
+import com.coy.l2cache.sync.RedisStreamCacheSyncPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+
+/**
+ * 基于 redis stream 的同步策略：按序读取，序号不连续时清除该缓存的一级缓存
+ *
+ * @author chenck
+ * @date 2020/7/24 14:20
+ */
+public class RedisStreamCacheSyncPolicyTest {
+
+    RedissonClient redissonClient;
+
+    @Before
+    public void before() {
+        redissonClient = Redisson.create();
+    }
+
+    @After
+    public void after() {
+        redissonClient.shutdown();
+    }
+
+    private RedisStreamCacheSyncPolicy createPolicy(String instanceId) {
+        CacheConfig cacheConfig = new CacheConfig().setInstanceId(instanceId);
+        cacheConfig.getCacheSyncPolicy()
+                .setType(CacheSyncPolicyType.REDIS_STREAM.name())
+                .setTopic("l2cache-stream-test")
+                .setStreamMaxLen(1000)
+                .setStreamBatchSize(10);
+        RedisStreamCacheSyncPolicy policy = new RedisStreamCacheSyncPolicy();
+        policy.setCacheConfig(cacheConfig)
+                .setCacheMessageListener(message -> System.out.println(instanceId + " received " + message.getInstanceId()
+                        + " " + message.getCacheName() + " " + message.getOptType() + " key=" + message.getKey() + " seq=" + message.getSeq()))
+                .setActualClient(redissonClient);
+        policy.connnect();
+        return policy;
+    }
+
+    @Test
+    public void gapTest() throws InterruptedException {
+        RedisStreamCacheSyncPolicy node1 = this.createPolicy("node1");
+        RedisStreamCacheSyncPolicy node2 = this.createPolicy("node2");
+
+        for (int i = 0; i < 5; i++) {
+            node1.publish(new CacheMessage("node1", "caffeine", "userCache", "key" + i, CacheConsts.CACHE_REFRESH));
+        }
+        // 模拟 node1 发布失败丢失了 seq=6~9 的消息
+        redissonClient.getStream("l2cache-stream-test:stream").add("m",
+                new CacheMessage("node1", "caffeine", "userCache", "key9", CacheConsts.CACHE_REFRESH).setSeq(10));
+        Thread.sleep(2000);
+        System.out.println("node2 gapCount=" + node2.getGapCount());
+
+        node1.disconnect();
+        node2.disconnect();
+    }
+}
@@ -0,0 +1,58 @@
+package com.coy.l2cache.test;
+
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.trace.TraceOp;
+import com.coy.l2cache.trace.TraceRecorder;
+import com.coy.l2cache.trace.TraceSimulator;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 访问追踪记录及离线模拟
+ */
+public class TraceSimulatorTest {
+
+    @Test
+    public void recordAndSimulateTest() throws Exception {
+        File file = new File(System.getProperty("java.io.tmpdir"), "l2cache-trace-test.bin");
+        CacheConfig.Trace trace = new CacheConfig().getTrace()
+                .setEnabled(true)
+                .setFile(file.getAbsolutePath())
+                .setSampleRate(0.5);
+
+        // 模拟访问：热点key集中在前100个，偶尔更新和删除
+        TraceRecorder recorder = TraceRecorder.getInstance(trace);
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(10) < 8 ? random.nextInt(100) : random.nextInt(5000);
+            String cacheName = key % 2 == 0 ? "userCache" : "orderCache";
+            int op = random.nextInt(100);
+            if (op < 95) {
+                recorder.record(cacheName, "key" + key, TraceOp.GET, "value" + key);
+            } else if (op < 99) {
+                recorder.record(cacheName, "key" + key, TraceOp.PUT, "value" + key);
+            } else {
+                recorder.record(cacheName, "key" + key, TraceOp.EVICT, null);
+            }
+        }
+        recorder.close();
+        System.out.println("trace file=" + file.getAbsolutePath() + ", bytes=" + file.length() + ", records=" + recorder.getRecordedCount()
+                + ", dropped=" + recorder.getDroppedCount());
+
+        List<TraceSimulator.Candidate> candidates = Arrays.asList(
+                TraceSimulator.Candidate.parse("name=small;l1=maximumSize=50;l2=maxSize=1000", null),
+                TraceSimulator.Candidate.parse("name=medium;l1=maximumSize=200,expireAfterWrite=5m;l2=maxSize=5000", null),
+                TraceSimulator.Candidate.parse("name=weight;l1=maximumWeight=10000", null),
+                TraceSimulator.Candidate.parse("name=l2only;l2=maxSize=5000,expireTime=60000", null));
+        for (TraceSimulator.Result result : TraceSimulator.simulate(file, candidates)) {
+            System.out.println(String.format("%-8s requests=%d, l1HitRate=%.4f, l2HitRate=%.4f, hitRate=%.4f, l2Ops/s=%.1f, l1Memory=%dB, l2Memory=%dB",
+                    result.getName(), result.getRequests(), result.getL1HitRate(), result.getL2HitRate(), result.getHitRate(),
+                    result.getL2OpsPerSecond(), result.getL1PeakBytes(), result.getL2PeakBytes()));
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,420 @@
+package com.coy.l2cache.spring.actuate;
+
+import com.coy.l2cache.Cache;
+import com.coy.l2cache.CacheConfig;
+import com.coy.l2cache.CacheSyncPolicy;
+import com.coy.l2cache.cache.CaffeineCache;
+import com.coy.l2cache.cache.CompositeCache;
+import com.coy.l2cache.cache.Level1Cache;
+import com.coy.l2cache.cache.Level2Cache;
+import com.coy.l2cache.cache.disk.DiskStore;
+import com.coy.l2cache.cache.offheap.OffHeapStore;
+import com.coy.l2cache.content.CacheSupport;
+import com.coy.l2cache.load.CacheWarmer;
+import com.coy.l2cache.schedule.RefreshSupport;
+import com.coy.l2cache.spring.L2CacheCacheManager;
+import com.coy.l2cache.sync.AsyncMessagePublisher;
+import com.coy.l2cache.sync.RedisCacheSyncPolicy;
+import com.coy.l2cache.sync.RedisStreamCacheSyncPolicy;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.redisson.api.RMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * L2Cache 管理端点
+ * <p>
+ * GET    /actuator/l2cache              所有缓存的各级缓存大小、命中率、加载耗时、热点key、配置及同步延迟
+ * GET    /actuator/l2cache/{cacheName}  指定缓存的上述信息
+ * POST   /actuator/l2cache/{cacheName}  {"operation":"evict|clear|refresh|warmup|resize|spec","key":"...","maximumSize":1000,"spec":"..."}
+ * DELETE /actuator/l2cache/{cacheName}  删除指定key（key为空时清空缓存）
+ * <p>
+ * 注：变更操作提交到 RefreshSupport 的后台线程执行后立即返回，不阻塞请求线程；key 按字符串处理，warmup 的多个key以逗号分隔
+ * 注：redis 缓存的大小（HLEN）异步获取，返回的是最近一次获取到的值及其时间，不在请求线程上访问 redis
+ *
+ * @author chenck
+ * @date 2020/7/25 15:10
+ */
+@Endpoint(id = "l2cache")
+public class L2CacheEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(L2CacheEndpoint.class);
+
+    /**
+     * 返回的热点key数量
+     */
+    private static final int HOT_KEY_LIMIT = 10;
+
+    /**
+     * redis 缓存大小的刷新间隔，超过该间隔的读取会触发一次异步获取
+     */
+    private static final long REDIS_SIZE_REFRESH_MILLIS = 10000;
+
+    /**
+     * 最近一次获取到的 redis 缓存大小 <cacheName, RedisSize>
+     */
+    private final Map<String, RedisSize> redisSizes = new ConcurrentHashMap<>();
+
+    private final L2CacheCacheManager cacheManager;
+
+    private final CacheConfig cacheConfig;
+
+    public L2CacheEndpoint(L2CacheCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        this.cacheConfig = cacheManager.getCacheConfig();
+    }
+
+    @ReadOperation
+    public Map<String, Object> caches() {
+        Map<String, Object> caches = new LinkedHashMap<>();
+        for (Cache cache : CacheSupport.getCaches()) {
+            caches.put(cache.getCacheName(), this.describe(cache));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("instanceId", cacheConfig.getInstanceId());
+        result.put("sync", this.describeSync());
+        result.put("caches", caches);
+        return result;
+    }
+
+    /**
+     * 缓存不存在时返回null，对应 404
+     */
+    @ReadOperation
+    public Map<String, Object> cache(@Selector String cacheName) {
+        Cache cache = this.findCache(cacheName);
+        if (null == cache) {
+            return null;
+        }
+        return this.describe(cache);
+    }
+
+    @WriteOperation
+    public Map<String, Object> operate(@Selector String cacheName, String operation, @Nullable String key,
+                                       @Nullable Long maximumSize, @Nullable String spec) {
+        Cache cache = this.getRequiredCache(cacheName);
+        switch (operation) {
+            case "evict":
+                this.requireKey(operation, key);
+                return this.submit(cache, operation, () -> cache.evict(key));
+            case "clear":
+                return this.submit(cache, operation, cache::clear);
+            case "refresh":
+                this.requireKey(operation, key);
+                return this.submit(cache, operation, () -> this.refresh(cache, key));
+            case "warmup":
+                return this.submit(cache, operation, () -> this.warmup(cache, key));
+            case "resize":
+                if (null == maximumSize || maximumSize < 0) {
+                    throw new InvalidEndpointRequestException("maximumSize must be >= 0", "Invalid maximumSize");
+                }
+                Policy.Eviction<Object, Object> eviction = this.getEviction(cache);
+                if (null == eviction) {
+                    throw new InvalidEndpointRequestException("cache has no caffeine level1 cache with maximumSize or maximumWeight, cacheName=" + cacheName,
+                            "Resize not supported");
+                }
+                return this.submit(cache, operation, () -> eviction.setMaximum(maximumSize));
+            case "spec":
+                // 修改 caffeine spec 并通知其他节点
+                return this.submit(cache, operation, () -> cacheManager.updateSpec(cacheName, spec));
+            default:
+                throw new InvalidEndpointRequestException("unknown operation " + operation + ", supported: evict, clear, refresh, warmup, resize, spec",
+                        "Unknown operation");
+        }
+    }
+
+    @DeleteOperation
+    public Map<String, Object> evict(@Selector String cacheName, @Nullable String key) {
+        Cache cache = this.getRequiredCache(cacheName);
+        if (StringUtils.isEmpty(key)) {
+            return this.submit(cache, "clear", cache::clear);
+        }
+        return this.submit(cache, "evict", () -> cache.evict(key));
+    }
+
+    /**
+     * 提交到后台线程执行
+     */
+    private Map<String, Object> submit(Cache cache, String operation, Runnable task) {
+        ExecutorService executor = RefreshSupport.getInstance(cacheConfig.getCaffeine().getRefreshPoolSize());
+        executor.execute(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                task.run();
+                logger.info("[L2CacheEndpoint] operation done, cacheName={}, operation={}, cost={}ms", cache.getCacheName(),
+                        operation, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                logger.error("[L2CacheEndpoint] operation error, cacheName={}, operation={}", cache.getCacheName(), operation, e);
+            }
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cacheName", cache.getCacheName());
+        result.put("operation", operation);
+        result.put("status", "submitted");
+        return result;
+    }
+
+    /**
+     * 刷新指定key：一级缓存为 LoadingCache 时重新加载，否则清除本地缓存项后从二级缓存重新获取
+     */
+    private void refresh(Cache cache, String key) {
+        Level1Cache level1Cache = this.getLevel1Cache(cache);
+        if (null == level1Cache) {
+            logger.warn("[L2CacheEndpoint] cache has no level1 cache, skip refresh, cacheName={}", cache.getCacheName());
+            return;
+        }
+        if (level1Cache.isLoadingCache()) {
+            level1Cache.refresh(key);
+            return;
+        }
+        level1Cache.clearLocalCache(key);
+        if (cache instanceof CompositeCache) {
+            cache.get(key);
+        }
+    }
+
+    /**
+     * 预热：指定了key时逐个获取，将二级缓存中的缓存项加载到一级缓存；否则通过 CacheWarmer 从二级缓存批量预热，不支持时刷新一级缓存中的所有缓存项
+     */
+    private void warmup(Cache cache, String keys) {
+        if (StringUtils.hasText(keys)) {
+            for (String key : StringUtils.commaDelimitedListToStringArray(keys)) {
+                cache.get(key.trim());
+            }
+            return;
+        }
+        CacheWarmer cacheWarmer = cacheManager.getCacheWarmer();
+        if (null != cacheWarmer && cache instanceof CompositeCache) {
+            cacheWarmer.warmup(Collections.singletonList(cache));
+            return;
+        }
+        Level1Cache level1Cache = this.getLevel1Cache(cache);
+        if (null == level1Cache || !level1Cache.isLoadingCache()) {
+            logger.warn("[L2CacheEndpoint] level1 cache is not loading cache and no keys given, skip warmup, cacheName={}", cache.getCacheName());
+            return;
+        }
+        level1Cache.refreshAll();
+    }
+
+    private Map<String, Object> describe(Cache cache) {
+        String cacheName = cache.getCacheName();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cacheType", cache.getCacheType());
+        Map<String, Object> tiers = new LinkedHashMap<>();
+        if (cache instanceof CompositeCache) {
+            CompositeCache compositeCache = (CompositeCache) cache;
+            tiers.put("level1", this.describeTier(compositeCache.getLevel1Cache()));
+            List<Level1Cache> middleCaches = compositeCache.getMiddleCaches();
+            for (int i = 0; i < middleCaches.size(); i++) {
+                tiers.put("middle" + i, this.describeTier(middleCaches.get(i)));
+            }
+            tiers.put("level2", this.describeTier(compositeCache.getLevel2Cache()));
+        } else {
+            tiers.put(cache instanceof Level2Cache ? "level2" : "level1", this.describeTier(cache));
+        }
+        result.put("tiers", tiers);
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("cacheType", cacheConfig.getCacheType(cacheName));
+        config.put("caffeineSpec", cacheConfig.getCaffeine().getSpec(cacheName));
+        CacheConfig.Redis redis = cacheConfig.getRedis(cacheName);
+        config.put("redisExpireTime", redis.getExpireTime());
+        config.put("redisMaxIdleTime", redis.getMaxIdleTime());
+        config.put("redisMaxSize", redis.getMaxSize());
+        config.put("syncEnabled", cacheConfig.isSyncEnabled(cacheName));
+        result.put("config", config);
+        return result;
+    }
+
+    private Map<String, Object> describeTier(Cache tier) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cacheType", tier.getCacheType());
+        Object actualCache = tier.getActualCache();
+        if (actualCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeineCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) actualCache;
+            result.put("size", caffeineCache.estimatedSize());
+            Optional<Policy.Eviction<Object, Object>> eviction = caffeineCache.policy().eviction();
+            if (eviction.isPresent()) {
+                result.put("maximum", eviction.get().getMaximum());
+                eviction.get().weightedSize().ifPresent(weightedSize -> result.put("weightedSize", weightedSize));
+                // 按访问频率估算的热点key
+                List<String> hotKeys = new ArrayList<>();
+                for (Object key : eviction.get().hottest(HOT_KEY_LIMIT).keySet()) {
+                    hotKeys.add(String.valueOf(key));
+                }
+                result.put("hotKeys", hotKeys);
+            }
+            if (caffeineCache.policy().isRecordingStats()) {
+                CacheStats stats = caffeineCache.stats();
+                this.putStats(result, stats.hitCount(), stats.missCount(), stats.evictionCount());
+                result.put("loadCount", stats.loadCount());
+                result.put("averageLoadPenaltyMillis", stats.averageLoadPenalty() / 1000000);
+            }
+        } else if (actualCache instanceof com.google.common.cache.Cache) {
+            com.google.common.cache.Cache<Object, Object> guavaCache = (com.google.common.cache.Cache<Object, Object>) actualCache;
+            result.put("size", guavaCache.size());
+            com.google.common.cache.CacheStats stats = guavaCache.stats();
+            this.putStats(result, stats.hitCount(), stats.missCount(), stats.evictionCount());
+            result.put("loadCount", stats.loadCount());
+            result.put("averageLoadPenaltyMillis", stats.averageLoadPenalty() / 1000000);
+        } else if (actualCache instanceof OffHeapStore) {
+            OffHeapStore store = (OffHeapStore) actualCache;
+            result.put("size", store.size());
+            result.put("usedBytes", store.usedBytes());
+            result.put("capacityBytes", store.capacityBytes());
+            this.putStats(result, store.hitCount(), store.missCount(), store.evictionCount());
+        } else if (actualCache instanceof DiskStore) {
+            DiskStore store = (DiskStore) actualCache;
+            result.put("size", store.size());
+            result.put("diskBytes", store.diskBytes());
+            result.put("liveBytes", store.liveBytes());
+            this.putStats(result, store.hitCount(), store.missCount(), store.evictionCount());
+        } else if (actualCache instanceof RMap) {
+            this.putRedisSize(result, tier.getCacheName(), (RMap<Object, Object>) actualCache);
+            result.put("expireTime", ((Level2Cache) tier).getExpireTime());
+        }
+        return result;
+    }
+
+    /**
+     * 返回最近一次获取到的 redis 缓存大小，过期时通过 sizeAsync 在 redisson 的线程上刷新，请求线程不等待 redis 响应
+     * 注：首次访问时尚无数据，不返回 size
+     */
+    private void putRedisSize(Map<String, Object> result, String cacheName, RMap<Object, Object> map) {
+        RedisSize redisSize = redisSizes.computeIfAbsent(cacheName, name -> new RedisSize());
+        long now = System.currentTimeMillis();
+        if (now - redisSize.updateTime > REDIS_SIZE_REFRESH_MILLIS && redisSize.refreshing.compareAndSet(false, true)) {
+            try {
+                map.sizeAsync().onComplete((size, e) -> {
+                    if (null != e) {
+                        logger.warn("[L2CacheEndpoint] get redis size error, cacheName={}, error={}", cacheName, e.getMessage());
+                    } else {
+                        redisSize.size = size;
+                        redisSize.updateTime = System.currentTimeMillis();
+                    }
+                    redisSize.refreshing.set(false);
+                });
+            } catch (Exception e) {
+                redisSize.refreshing.set(false);
+                logger.warn("[L2CacheEndpoint] get redis size error, cacheName={}, error={}", cacheName, e.getMessage());
+            }
+        }
+        if (redisSize.updateTime > 0) {
+            result.put("size", redisSize.size);
+            result.put("sizeAgeMillis", now - redisSize.updateTime);
+        }
+    }
+
+    private void putStats(Map<String, Object> result, long hitCount, long missCount, long evictionCount) {
+        long requestCount = hitCount + missCount;
+        result.put("hitCount", hitCount);
+        result.put("missCount", missCount);
+        result.put("hitRatio", requestCount == 0 ? 1.0 : (double) hitCount / requestCount);
+        result.put("evictionCount", evictionCount);
+    }
+
+    /**
+     * 缓存同步的延迟：异步发送队列的积压及发送耗时，或 redis stream 检测到的消息丢失次数
+     */
+    private Map<String, Object> describeSync() {
+        CacheSyncPolicy cacheSyncPolicy = cacheManager.getCacheSyncPolicy();
+        if (null == cacheSyncPolicy) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("type", cacheConfig.getCacheSyncPolicy().getType());
+        result.put("topic", cacheConfig.getCacheSyncPolicy().getTopic());
+        if (cacheSyncPolicy instanceof RedisCacheSyncPolicy) {
+            AsyncMessagePublisher publisher = ((RedisCacheSyncPolicy) cacheSyncPolicy).getAsyncPublisher();
+            if (null != publisher) {
+                result.put("queueDepth", publisher.getQueueDepth());
+                result.put("publishedCount", publisher.getPublishedCount());
+                result.put("droppedCount", publisher.getDroppedCount());
+                result.put("clearFallbackCount", publisher.getClearFallbackCount());
+                result.put("failedCount", publisher.getFailedCount());
+                result.put("averageLatencyMicros", publisher.getAverageLatencyNanos() / 1000);
+                result.put("maxLatencyMicros", publisher.getMaxLatencyNanos() / 1000);
+            }
+        } else if (cacheSyncPolicy instanceof RedisStreamCacheSyncPolicy) {
+            result.put("gapCount", ((RedisStreamCacheSyncPolicy) cacheSyncPolicy).getGapCount());
+        }
+        return result;
+    }
+
+    /**
+     * 获取一级缓存的容量策略，用于运行时调整容量
+     * 注：配置了全局预算时，再平衡任务会在下个周期重新调整容量
+     */
+    private Policy.Eviction<Object, Object> getEviction(Cache cache) {
+        Level1Cache level1Cache = this.getLevel1Cache(cache);
+        if (!(level1Cache instanceof CaffeineCache)) {
+            return null;
+        }
+        return ((CaffeineCache) level1Cache).getActualCache().policy().eviction().orElse(null);
+    }
+
+    private Level1Cache getLevel1Cache(Cache cache) {
+        if (cache instanceof CompositeCache) {
+            return ((CompositeCache) cache).getLevel1Cache();
+        }
+        if (cache instanceof Level1Cache) {
+            return (Level1Cache) cache;
+        }
+        return null;
+    }
+
+    private Cache findCache(String cacheName) {
+        // 优先通过 CacheManager 获取，保证与 spring cache 使用的是同一个缓存实例
+        if (cacheManager.getCacheNames().contains(cacheName)) {
+            Cache cache = CacheSupport.getCache(cacheConfig.getCacheType(cacheName), cacheName);
+            if (null != cache) {
+                return cache;
+            }
+        }
+        for (Cache cache : CacheSupport.getCaches()) {
+            if (cache.getCacheName().equals(cacheName)) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    private Cache getRequiredCache(String cacheName) {
+        Cache cache = this.findCache(cacheName);
+        if (null == cache) {
+            throw new InvalidEndpointRequestException("cache not found, cacheName=" + cacheName, "Cache not found");
+        }
+        return cache;
+    }
+
+    private void requireKey(String operation, String key) {
+        if (StringUtils.isEmpty(key)) {
+            throw new InvalidEndpointRequestException("key must not be empty for operation " + operation, "Missing key");
+        }
+    }
+
+    private static class RedisSize {
+        volatile int size;
+        volatile long updateTime;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,33 @@
+package com.coy.l2cache.spring.actuate;
+
+import com.coy.l2cache.spring.L2CacheCacheManager;
+import com.coy.l2cache.spring.L2CacheConfiguration;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * L2Cache 管理端点 Configuration
+ * 注：引入 actuator 且通过 management.endpoints.web.exposure.include=l2cache 暴露后生效
+ *
+ * @author chenck
+ * @date 2020/7/25 15:10
+ */
+@Configuration
+@ConditionalOnClass(Endpoint.class)
+@AutoConfigureAfter(L2CacheConfiguration.class)
+public class L2CacheEndpointAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(L2CacheCacheManager.class)
+    @ConditionalOnAvailableEndpoint(endpoint = L2CacheEndpoint.class)
+    public L2CacheEndpoint l2CacheEndpoint(L2CacheCacheManager cacheManager) {
+        return new L2CacheEndpoint(cacheManager);
+    }
+}